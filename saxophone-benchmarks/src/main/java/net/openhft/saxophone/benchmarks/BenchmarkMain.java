@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of {@code benchmarks.jar}: the standard JMH command line, except that results
+ * are written in JSON to {@value #DEFAULT_RESULT} by default, to keep and compare between
+ * releases: <pre>{@code
+ * java -jar saxophone-benchmarks/target/benchmarks.jar -rff saxophone-1.0.5.json
+ * java -jar saxophone-benchmarks/target/benchmarks.jar JsonParserBenchmark -p corpus=NUMBERS
+ * }</pre>
+ *
+ * <p>Explicit {@code -rf} and {@code -rff} options take precedence.
+ */
+public final class BenchmarkMain {
+    static final String DEFAULT_RESULT = "saxophone-jmh-result.json";
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        if (!argList.contains("-rf")) {
+            argList.add("-rf");
+            argList.add("json");
+        }
+        if (!argList.contains("-rff")) {
+            argList.add("-rff");
+            argList.add(DEFAULT_RESULT);
+        }
+        Main.main(argList.toArray(new String[argList.size()]));
+    }
+}
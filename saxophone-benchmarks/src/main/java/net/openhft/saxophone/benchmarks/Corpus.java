@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generated JSON documents the benchmarks parse, each one of roughly {@link #TARGET_SIZE}
+ * bytes. Generation is seeded, so every run and every release parses the same bytes, and
+ * the results stay comparable.
+ */
+public enum Corpus {
+    /** an array of small flat order messages, the typical trading workload */
+    ORDERS {
+        @Override
+        void append(StringBuilder sb, Random random) {
+            sb.append('[');
+            for (int i = 0; sb.length() < TARGET_SIZE; i++) {
+                if (i > 0)
+                    sb.append(',');
+                appendOrder(sb, random);
+            }
+            sb.append(']');
+        }
+    },
+    /** objects and arrays nested {@link #NESTING_DEPTH} levels deep, with scalar leaves */
+    DEEP_NESTING {
+        @Override
+        void append(StringBuilder sb, Random random) {
+            sb.append('[');
+            for (int i = 0; sb.length() < TARGET_SIZE; i++) {
+                if (i > 0)
+                    sb.append(',');
+                for (int d = 0; d < NESTING_DEPTH; d++) {
+                    sb.append((d & 1) == 0 ? "{\"n\":" : "[");
+                }
+                sb.append(random.nextInt(1000));
+                for (int d = NESTING_DEPTH - 1; d >= 0; d--) {
+                    sb.append((d & 1) == 0 ? '}' : ']');
+                }
+            }
+            sb.append(']');
+        }
+    },
+    /** an array of strings of several kilobytes each, mostly ASCII, some multi-byte UTF-8 */
+    LONG_STRINGS {
+        @Override
+        void append(StringBuilder sb, Random random) {
+            sb.append('[');
+            for (int i = 0; sb.length() < TARGET_SIZE; i++) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append('"');
+                int length = 1024 + random.nextInt(4096);
+                for (int j = 0; j < length; j++) {
+                    int r = random.nextInt(64);
+                    // Greek and CJK letters, 2 and 3 bytes in UTF-8, or odd ASCII
+                    // chars, which are never a quote or a backslash
+                    sb.append(r == 0 ? (char) (0x3B1 + random.nextInt(24)) :
+                            r == 1 ? (char) (0x4E00 + random.nextInt(1024)) :
+                                    (char) (' ' + 1 + random.nextInt(32) * 2));
+                }
+                sb.append('"');
+            }
+            sb.append(']');
+        }
+    },
+    /** an array of integers and floating point numbers, in plain and exponent notation */
+    NUMBERS {
+        @Override
+        void append(StringBuilder sb, Random random) {
+            sb.append('[');
+            for (int i = 0; sb.length() < TARGET_SIZE; i++) {
+                if (i > 0)
+                    sb.append(',');
+                switch (random.nextInt(4)) {
+                    case 0:
+                        sb.append(random.nextInt());
+                        break;
+                    case 1:
+                        sb.append(random.nextLong());
+                        break;
+                    case 2:
+                        sb.append(random.nextInt(100000) / 100.0);
+                        break;
+                    default:
+                        sb.append(random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20));
+                }
+            }
+            sb.append(']');
+        }
+    },
+    /** an array of short strings where every few chars are escaped */
+    ESCAPES {
+        @Override
+        void append(StringBuilder sb, Random random) {
+            String[] escapes = {"\\\"", "\\\\", "\\/", "\\b", "\\f", "\\n", "\\r", "\\t",
+                    "\\u00e9", "\\u20ac", "\\ud83d\\ude00"};
+            sb.append('[');
+            for (int i = 0; sb.length() < TARGET_SIZE; i++) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append('"');
+                int length = 16 + random.nextInt(64);
+                for (int j = 0; j < length; j++) {
+                    if (random.nextInt(4) == 0) {
+                        sb.append(escapes[random.nextInt(escapes.length)]);
+                    } else {
+                        sb.append((char) ('a' + random.nextInt(26)));
+                    }
+                }
+                sb.append('"');
+            }
+            sb.append(']');
+        }
+    };
+
+    static final int TARGET_SIZE = 64 << 10;
+    static final int NESTING_DEPTH = 64;
+    private static final String[] SYMBOLS = {"AAPL", "MSFT", "GOOG", "EUR/USD", "VOD.L", "HPQ"};
+
+    abstract void append(StringBuilder sb, Random random);
+
+    /**
+     * Generates this corpus.
+     *
+     * @param seed the seed of the generator
+     * @return UTF-8 bytes of the document
+     */
+    public byte[] generate(long seed) {
+        StringBuilder sb = new StringBuilder(TARGET_SIZE + 8192);
+        append(sb, new Random(seed));
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Generates a single small order message, of the kind {@link #ORDERS} is made of.
+     *
+     * @param random the generator
+     * @return UTF-8 bytes of the message
+     */
+    public static byte[] order(Random random) {
+        StringBuilder sb = new StringBuilder(256);
+        appendOrder(sb, random);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void appendOrder(StringBuilder sb, Random random) {
+        sb.append("{\"msgType\":\"NewOrderSingle\",\"seq\":").append(random.nextInt(1 << 30))
+                .append(",\"clOrdId\":\"ORD").append(100000 + random.nextInt(900000))
+                .append("\",\"symbol\":\"").append(SYMBOLS[random.nextInt(SYMBOLS.length)])
+                .append("\",\"side\":\"").append(random.nextBoolean() ? "BUY" : "SELL")
+                .append("\",\"qty\":").append(100 * (1 + random.nextInt(100)))
+                .append(",\"price\":").append(random.nextInt(1000000) / 100.0)
+                .append(",\"ordType\":").append(1 + random.nextInt(2))
+                .append(",\"tif\":\"DAY\",\"account\":")
+                .append(random.nextInt(8) == 0 ? "null" : "\"ACC" + random.nextInt(100) + '"')
+                .append(",\"dma\":").append(random.nextBoolean())
+                .append(",\"sendingTime\":").append(1422000000000L + random.nextInt(1 << 30))
+                .append('}');
+    }
+}
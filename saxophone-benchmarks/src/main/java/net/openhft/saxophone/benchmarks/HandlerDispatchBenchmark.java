@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.benchmarks;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.json.JsonParser;
+import net.openhft.saxophone.json.handler.JsonHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link #PARSERS} parsers, taking turns to parse the same {@link Corpus}
+ * document, with handlers of a single class, or each of its own class. All parsers share
+ * the handler call sites of the parse loop, so with several handler classes the calls are
+ * megamorphic, and this benchmark shows what it costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class HandlerDispatchBenchmark {
+    static final int PARSERS = 4;
+
+    @Param({"ORDERS", "NUMBERS"})
+    public Corpus corpus;
+
+    @Param({"1", "4"})
+    public int handlerClasses;
+
+    private Bytes bytes;
+    private JsonParser[] parsers;
+    private Sink[] sinks;
+    private int next;
+
+    /** The same work as {@link Sinks.SaxophoneSink}, subclassed to get distinct classes. */
+    static class Sink implements JsonHandler {
+        long sum;
+
+        @Override
+        public boolean onObjectStart() {
+            sum++;
+            return true;
+        }
+
+        @Override
+        public boolean onObjectEnd() {
+            sum++;
+            return true;
+        }
+
+        @Override
+        public boolean onArrayStart() {
+            sum++;
+            return true;
+        }
+
+        @Override
+        public boolean onArrayEnd() {
+            sum++;
+            return true;
+        }
+
+        @Override
+        public boolean onObjectKey(CharSequence key) {
+            sum += key.length();
+            return true;
+        }
+
+        @Override
+        public boolean onStringValue(CharSequence value) {
+            sum += value.length();
+            return true;
+        }
+
+        @Override
+        public boolean onInteger(long value) {
+            sum += value;
+            return true;
+        }
+
+        @Override
+        public boolean onFloating(double value) {
+            sum += Double.doubleToRawLongBits(value);
+            return true;
+        }
+
+        @Override
+        public boolean onBoolean(boolean value) {
+            sum += value ? 1 : 0;
+            return true;
+        }
+
+        @Override
+        public boolean onNull() {
+            sum++;
+            return true;
+        }
+
+        @Override
+        public void onReset() {
+            sum = 0;
+        }
+    }
+
+    static final class Sink1 extends Sink {
+    }
+
+    static final class Sink2 extends Sink {
+    }
+
+    static final class Sink3 extends Sink {
+    }
+
+    @Setup
+    public void setUp() {
+        byte[] text = corpus.generate(JsonParserBenchmark.SEED);
+        bytes = Bytes.allocateElasticDirect(text.length);
+        bytes.write(text);
+        sinks = handlerClasses == 1 ? new Sink[] {new Sink(), new Sink(), new Sink(), new Sink()} :
+                new Sink[] {new Sink(), new Sink1(), new Sink2(), new Sink3()};
+        parsers = new JsonParser[PARSERS];
+        for (int i = 0; i < PARSERS; i++) {
+            parsers[i] = JsonParser.builder().handler(sinks[i]).build();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (JsonParser parser : parsers) {
+            parser.close();
+        }
+        bytes.release();
+    }
+
+    @Benchmark
+    public long parse() {
+        int i = next++ & (PARSERS - 1);
+        JsonParser parser = parsers[i];
+        parser.reset();
+        bytes.readPosition(0);
+        parser.parse(bytes);
+        parser.finish();
+        return sinks[i].sum;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.benchmarks;
+
+import com.google.gson.stream.JsonReader;
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.json.JsonParser;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of parsing whole {@link Corpus} documents, of about 64 KB each, by a reused
+ * {@code JsonParser} from off-heap {@code Bytes} and from a {@code byte[]}, and by the Gson
+ * streaming reader from a {@code byte[]}. Next to the score, the {@code bytes} secondary
+ * result is the parsed bytes per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class JsonParserBenchmark {
+    static final long SEED = 42;
+
+    @Param({"ORDERS", "DEEP_NESTING", "LONG_STRINGS", "NUMBERS", "ESCAPES"})
+    public Corpus corpus;
+
+    private byte[] text;
+    private Bytes bytes;
+    private Sinks.SaxophoneSink sink;
+    private JsonParser parser;
+
+    /** bytes parsed in the iteration, reported by JMH per second */
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class ParsedBytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        text = corpus.generate(SEED);
+        bytes = Bytes.allocateElasticDirect(text.length);
+        bytes.write(text);
+        sink = new Sinks.SaxophoneSink();
+        parser = JsonParser.builder().handler(sink).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        parser.close();
+        bytes.release();
+    }
+
+    @Benchmark
+    public long saxophoneBytes(ParsedBytes parsed) {
+        parsed.bytes += text.length;
+        parser.reset();
+        bytes.readPosition(0);
+        parser.parse(bytes);
+        parser.finish();
+        return sink.sum;
+    }
+
+    @Benchmark
+    public long saxophoneByteArray(ParsedBytes parsed) {
+        parsed.bytes += text.length;
+        parser.reset();
+        parser.parse(text, 0, text.length);
+        parser.finish();
+        return sink.sum;
+    }
+
+    @Benchmark
+    public long gsonStreaming(ParsedBytes parsed) throws IOException {
+        parsed.bytes += text.length;
+        JsonReader in = new JsonReader(new InputStreamReader(
+                new ByteArrayInputStream(text), StandardCharsets.UTF_8));
+        return Sinks.consume(in);
+    }
+}
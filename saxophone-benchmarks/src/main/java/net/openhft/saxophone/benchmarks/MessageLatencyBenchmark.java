@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.benchmarks;
+
+import com.google.gson.stream.JsonReader;
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.json.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of parsing a single small order message, see {@link
+ * Corpus#order(Random)}. The benchmarks cycle through {@link #MESSAGES} distinct messages,
+ * so the branch predictor doesn't learn a single one. The percentiles are in the results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class MessageLatencyBenchmark {
+    static final int MESSAGES = 1024;
+
+    private byte[][] texts;
+    private Bytes[] messages;
+    private int next;
+    private Sinks.SaxophoneSink sink;
+    private JsonParser parser;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(JsonParserBenchmark.SEED);
+        texts = new byte[MESSAGES][];
+        messages = new Bytes[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            texts[i] = Corpus.order(random);
+            messages[i] = Bytes.allocateElasticDirect(texts[i].length);
+            messages[i].write(texts[i]);
+        }
+        sink = new Sinks.SaxophoneSink();
+        parser = JsonParser.builder().handler(sink).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        parser.close();
+        for (Bytes message : messages) {
+            message.release();
+        }
+    }
+
+    @Benchmark
+    public long saxophone() {
+        Bytes message = messages[next++ & (MESSAGES - 1)];
+        message.readPosition(0);
+        parser.reset();
+        parser.parse(message);
+        parser.finish();
+        return sink.sum;
+    }
+
+    @Benchmark
+    public long gsonStreaming() throws IOException {
+        byte[] text = texts[next++ & (MESSAGES - 1)];
+        JsonReader in = new JsonReader(new InputStreamReader(
+                new ByteArrayInputStream(text), StandardCharsets.UTF_8));
+        return Sinks.consume(in);
+    }
+}
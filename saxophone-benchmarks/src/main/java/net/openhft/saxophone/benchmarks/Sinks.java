@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.benchmarks;
+
+import com.google.gson.stream.JsonReader;
+import net.openhft.saxophone.json.handler.JsonHandler;
+
+import java.io.IOException;
+
+/**
+ * Consumers of the parsed tokens, the same work for both parsers: every string and key is
+ * decoded (its length is taken), every number is converted to {@code long} or {@code double}.
+ * The results are folded into a checksum, which the benchmarks return, so the JIT can't
+ * eliminate the parsing.
+ */
+final class Sinks {
+
+    private Sinks() {
+    }
+
+    /** Handler of SAXophone {@code JsonParser}, the checksum is reset on parser reset. */
+    static final class SaxophoneSink implements JsonHandler {
+        long sum;
+
+        @Override
+        public boolean onObjectStart() {
+            sum++;
+            return true;
+        }
+
+        @Override
+        public boolean onObjectEnd() {
+            sum++;
+            return true;
+        }
+
+        @Override
+        public boolean onArrayStart() {
+            sum++;
+            return true;
+        }
+
+        @Override
+        public boolean onArrayEnd() {
+            sum++;
+            return true;
+        }
+
+        @Override
+        public boolean onObjectKey(CharSequence key) {
+            sum += key.length();
+            return true;
+        }
+
+        @Override
+        public boolean onStringValue(CharSequence value) {
+            sum += value.length();
+            return true;
+        }
+
+        @Override
+        public boolean onInteger(long value) {
+            sum += value;
+            return true;
+        }
+
+        @Override
+        public boolean onFloating(double value) {
+            sum += Double.doubleToRawLongBits(value);
+            return true;
+        }
+
+        @Override
+        public boolean onBoolean(boolean value) {
+            sum += value ? 1 : 0;
+            return true;
+        }
+
+        @Override
+        public boolean onNull() {
+            sum++;
+            return true;
+        }
+
+        @Override
+        public void onReset() {
+            sum = 0;
+        }
+    }
+
+    /** Reads a whole document with the Gson streaming reader, returns the checksum. */
+    static long consume(JsonReader in) throws IOException {
+        long sum = 0;
+        int depth = 0;
+        do {
+            switch (in.peek()) {
+                case BEGIN_OBJECT:
+                    in.beginObject();
+                    depth++;
+                    sum++;
+                    break;
+                case END_OBJECT:
+                    in.endObject();
+                    depth--;
+                    sum++;
+                    break;
+                case BEGIN_ARRAY:
+                    in.beginArray();
+                    depth++;
+                    sum++;
+                    break;
+                case END_ARRAY:
+                    in.endArray();
+                    depth--;
+                    sum++;
+                    break;
+                case NAME:
+                    sum += in.nextName().length();
+                    break;
+                case STRING:
+                    sum += in.nextString().length();
+                    break;
+                case NUMBER:
+                    // like SAXophone, tell integers from floating point numbers by the text
+                    String number = in.nextString();
+                    if (isInteger(number)) {
+                        sum += Long.parseLong(number);
+                    } else {
+                        sum += Double.doubleToRawLongBits(Double.parseDouble(number));
+                    }
+                    break;
+                case BOOLEAN:
+                    sum += in.nextBoolean() ? 1 : 0;
+                    break;
+                case NULL:
+                    in.nextNull();
+                    sum++;
+                    break;
+                default:
+                    throw new IllegalStateException("unexpected end of document");
+            }
+        } while (depth > 0);
+        return sum;
+    }
+
+    private static boolean isInteger(String number) {
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E')
+                return false;
+        }
+        return true;
+    }
+}
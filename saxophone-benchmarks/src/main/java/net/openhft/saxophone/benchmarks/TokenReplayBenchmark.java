@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.benchmarks;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.json.JsonParser;
+import net.openhft.saxophone.json.TokenRecorder;
+import net.openhft.saxophone.json.TokenReplayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of handling a {@link Corpus} document again: by replaying its {@link TokenRecorder}
+ * recording with a {@link TokenReplayer}, and by parsing the document again with
+ * a {@code JsonParser}. Both give the tokens to the same {@link Sinks.SaxophoneSink}, so every
+ * number is converted. The recording refers to the strings in the source.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class TokenReplayBenchmark {
+
+    @Param({"ORDERS", "NUMBERS", "ESCAPES"})
+    public Corpus corpus;
+
+    private Bytes bytes;
+    private Bytes recording;
+    private Sinks.SaxophoneSink sink;
+    private JsonParser parser;
+    private TokenReplayer replayer;
+
+    @Setup
+    public void setUp() {
+        byte[] text = corpus.generate(JsonParserBenchmark.SEED);
+        bytes = Bytes.allocateElasticDirect(text.length);
+        bytes.write(text);
+        recording = Bytes.allocateElasticDirect(text.length);
+        JsonParser recordingParser = JsonParser.builder()
+                .handler(new TokenRecorder(recording, bytes)).build();
+        recordingParser.parse(bytes);
+        recordingParser.finish();
+        recordingParser.close();
+        sink = new Sinks.SaxophoneSink();
+        parser = JsonParser.builder().handler(sink).build();
+        replayer = JsonParser.builder().handler(sink).buildReplayer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        parser.close();
+        recording.release();
+        bytes.release();
+    }
+
+    @Benchmark
+    public long replay() {
+        sink.sum = 0;
+        replayer.replay(recording, bytes);
+        return sink.sum;
+    }
+
+    @Benchmark
+    public long reparse() {
+        parser.reset();
+        bytes.readPosition(0);
+        parser.parse(bytes);
+        parser.finish();
+        return sink.sum;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of converting a single lexed number into a {@code double}, by {@link DoubleParser}
+ * from the significand and the exponent accumulated by the lexer, and by
+ * {@code Double.parseDouble}, both from a ready {@code String} and from the lexed bytes through
+ * {@code toString()}, as floating values were parsed before {@code DoubleParser}.
+ *
+ * <p>Each {@link #number} takes a different path of {@code DoubleParser}:
+ * <ul>
+ *     <li>{@code 123.45678}, a price with 5 decimals: Clinger's fast path;</li>
+ *     <li>{@code 2.2250738585072014e-308}: Eisel-Lemire;</li>
+ *     <li>{@code 1.00000000000000011102230246251565404236316680908203125}, the exact halfway
+ *     point between 1 and the next double, over 19 digits: the fallback to
+ *     {@code Double.parseDouble}.</li>
+ * </ul>
+ *
+ * <p>It is in the package of {@code DoubleParser}, which isn't public: <pre>{@code
+ * java -jar saxophone-benchmarks/target/benchmarks.jar DoubleParserBenchmark
+ * }</pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class DoubleParserBenchmark {
+
+    @Param({"123.45678", "2.2250738585072014e-308",
+            "1.00000000000000011102230246251565404236316680908203125"})
+    public String number;
+
+    private Bytes bytes;
+    private long offset;
+    private boolean negative;
+    private long mantissa;
+    private long exponent;
+    private boolean truncated;
+    private final Utf8CharSequence view = new Utf8CharSequence();
+
+    @Setup
+    public void setUp() {
+        bytes = Bytes.allocateElasticDirect(number.length() + 1);
+        // numbers are complete only when followed by something
+        bytes.append(number).append(' ');
+        offset = bytes.readPosition();
+        Lexer lexer = new Lexer(false, true, Long.MAX_VALUE);
+        if (lexer.lex(bytes) != TokenType.DOUBLE)
+            throw new IllegalStateException(number + " is not lexed as a floating value");
+        negative = lexer.outNegative;
+        mantissa = lexer.outMantissa;
+        exponent = lexer.outExponent;
+        truncated = lexer.outTruncated;
+        lexer.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        bytes.release();
+    }
+
+    @Benchmark
+    public double doubleParser() {
+        return DoubleParser.toDouble(negative, mantissa, exponent, truncated,
+                bytes, offset, number.length());
+    }
+
+    @Benchmark
+    public double parseDoubleString() {
+        return Double.parseDouble(number);
+    }
+
+    @Benchmark
+    public double parseDoubleBytes() {
+        return Double.parseDouble(view.set(bytes, offset, number.length()).toString());
+    }
+}
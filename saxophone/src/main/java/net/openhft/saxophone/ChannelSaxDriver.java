@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone;
+
+import net.openhft.chronicle.bytes.Bytes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Feeds a {@link BytesSaxParser} from a {@link ReadableByteChannel}, blocking or non-blocking,
+ * through a reusable direct buffer: bytes read from the channel are appended to the buffer,
+ * the parser is given everything unparsed, and the bytes the parser has left unconsumed (e. g.
+ * an incomplete FIX field) are moved to the start of the buffer with a single memory move,
+ * to be completed by the next read. <pre>{@code
+ * ChannelSaxDriver driver = new ChannelSaxDriver(new FixSaxParser(handler));
+ * while (driver.readAndParse(socketChannel) >= 0) {
+ *     // other work, if the channel is non-blocking
+ * }
+ * }</pre>
+ *
+ * <p>{@link net.openhft.saxophone.json.JsonParser} is driven through its {@link
+ * net.openhft.saxophone.json.JsonParser#asBytesSaxParser() adapter}. It consumes all input,
+ * carrying incomplete tokens over internally, so nothing is left for the driver to move.
+ * At the end of the channel call {@link net.openhft.saxophone.json.JsonParser#finish()}.
+ */
+public final class ChannelSaxDriver implements Closeable {
+
+    /** 64 KiB */
+    public static final int DEFAULT_CAPACITY = 64 << 10;
+
+    private final BytesSaxParser parser;
+    private ByteBuffer buffer;
+    private Bytes view;
+    /** unparsed bytes are between these offsets */
+    private int readOffset;
+    private int writeOffset;
+    private long bytesRead;
+    private long readCount;
+    private long parseCount;
+
+    /**
+     * Creates a driver with the buffer of {@link #DEFAULT_CAPACITY}.
+     *
+     * @param parser the parser to feed
+     */
+    public ChannelSaxDriver(BytesSaxParser parser) {
+        this(parser, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a driver.
+     *
+     * @param parser the parser to feed
+     * @param capacity the buffer capacity, should exceed the longest portion of input
+     *                 the parser could leave unconsumed, e. g. the longest FIX field
+     */
+    public ChannelSaxDriver(BytesSaxParser parser, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity should be positive: " + capacity);
+        this.parser = parser;
+        buffer = ByteBuffer.allocateDirect(capacity);
+        view = Bytes.wrapForRead(buffer);
+    }
+
+    /**
+     * Reads from the channel once, as much as fits into the buffer, and parses the read bytes,
+     * along with the bytes left unconsumed by the previous parse.
+     *
+     * @param channel the channel to read from
+     * @return the number of bytes read, possibly 0 if the channel is non-blocking,
+     *         or {@code -1} at the end of the channel
+     * @throws IOException if reading from the channel failed
+     * @throws IllegalStateException if the buffer is full of bytes unconsumed by the parser
+     */
+    public int readAndParse(ReadableByteChannel channel) throws IOException {
+        checkOpen();
+        if (writeOffset == buffer.capacity()) {
+            throw new IllegalStateException("the buffer of " + buffer.capacity() +
+                    " bytes is full of input, unconsumed by the parser");
+        }
+        buffer.limit(buffer.capacity()).position(writeOffset);
+        int read = channel.read(buffer);
+        if (read <= 0)
+            return read;
+        writeOffset += read;
+        bytesRead += read;
+        readCount++;
+
+        view.readLimit(writeOffset);
+        view.readPosition(readOffset);
+        parser.parse(view);
+        parseCount++;
+        readOffset = (int) view.readPosition();
+        compact();
+        return read;
+    }
+
+    /**
+     * Reads and parses until the end of the channel. For non-blocking channels spins while
+     * no bytes are available.
+     *
+     * @param channel the channel to read from
+     * @return the number of bytes read
+     * @throws IOException if reading from the channel failed
+     */
+    public long readAndParseAll(ReadableByteChannel channel) throws IOException {
+        long total = 0;
+        for (int read; (read = readAndParse(channel)) >= 0; ) {
+            total += read;
+        }
+        return total;
+    }
+
+    /** moves the bytes unconsumed by the parser to the start of the buffer */
+    private void compact() {
+        if (readOffset == 0)
+            return;
+        if (readOffset < writeOffset) {
+            buffer.limit(writeOffset).position(readOffset);
+            buffer.compact();
+        }
+        writeOffset -= readOffset;
+        readOffset = 0;
+    }
+
+    /**
+     * Returns the number of bytes left unconsumed by the parser, at the start of the buffer.
+     *
+     * @return the number of bytes left unconsumed by the parser
+     */
+    public int unconsumed() {
+        return writeOffset - readOffset;
+    }
+
+    /**
+     * Returns the total number of bytes read from channels.
+     *
+     * @return the total number of bytes read
+     */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the number of reads from channels, which returned some bytes.
+     *
+     * @return the number of non-empty reads
+     */
+    public long readCount() {
+        return readCount;
+    }
+
+    /**
+     * Returns the number of {@link BytesSaxParser#parse(Bytes)} calls.
+     *
+     * @return the number of parse calls
+     */
+    public long parseCount() {
+        return parseCount;
+    }
+
+    /**
+     * Discards unconsumed bytes, zeroes the counters and resets the parser.
+     */
+    public void reset() {
+        checkOpen();
+        readOffset = writeOffset = 0;
+        bytesRead = readCount = parseCount = 0;
+        parser.reset();
+    }
+
+    private void checkOpen() {
+        if (buffer == null)
+            throw new IllegalStateException("the driver is closed");
+    }
+
+    /**
+     * Releases the buffer. The driver is not usable after this call.
+     */
+    @Override
+    public void close() {
+        if (view != null) {
+            view.release();
+            view = null;
+            buffer = null;
+        }
+    }
+}
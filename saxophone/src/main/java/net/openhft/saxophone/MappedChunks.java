@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone;
+
+import net.openhft.chronicle.core.OS;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file through read-only memory mappings of consecutive chunks, so that files larger
+ * than RAM, or than the address space of a single mapping, are read without copying into
+ * the heap. Only one chunk is mapped at a time: it's unmapped before the next is mapped,
+ * so the pages of the already read chunks could be dropped by the OS at once, like with
+ * sequential access advice.
+ */
+public final class MappedChunks {
+
+    /** 64 MiB */
+    public static final long DEFAULT_CHUNK_SIZE = 64L << 20;
+
+    /**
+     * Receives the chunks of a file, see {@link #forEach(Path, long, ChunkHandler)}.
+     */
+    public interface ChunkHandler {
+        /**
+         * Called for each chunk of the file, in order.
+         *
+         * @param address the address of the mapped chunk, valid only during this call
+         * @param length the length of the chunk
+         * @return {@code true} to continue with the next chunk, {@code false} to stop
+         */
+        boolean onChunk(long address, long length);
+    }
+
+    /**
+     * Maps the file, chunk after chunk, and passes each chunk to the handler.
+     *
+     * @param file the file to read
+     * @param chunkSize the size of chunks, rounded up to the {@link OS#mapAlignment()
+     *                  mapping alignment}
+     * @param handler the chunk handler
+     * @return {@code true} if all chunks are handled, {@code false} if the handler stopped
+     * @throws IOException if the file couldn't be opened or mapped
+     */
+    public static boolean forEach(Path file, long chunkSize, ChunkHandler handler)
+            throws IOException {
+        return forEach(file, 0L, Long.MAX_VALUE, chunkSize, handler);
+    }
+
+    /**
+     * Maps the given range of the file, chunk after chunk, and passes each chunk to
+     * the handler. Chunks are mapped at the multiples of the chunk size, so the first and
+     * the last chunks passed to the handler could be shorter.
+     *
+     * @param file the file to read
+     * @param from the offset in the file to read from
+     * @param to the offset in the file to read to, exclusive, the end of the file if it's
+     *           beyond
+     * @param chunkSize the size of chunks, rounded up to the {@link OS#mapAlignment()
+     *                  mapping alignment}
+     * @param handler the chunk handler
+     * @return {@code true} if all chunks are handled, {@code false} if the handler stopped
+     * @throws IOException if the file couldn't be opened or mapped
+     * @throws IllegalArgumentException if the range is negative
+     */
+    public static boolean forEach(Path file, long from, long to, long chunkSize,
+                                  ChunkHandler handler) throws IOException {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunk size should be positive: " + chunkSize);
+        if (from < 0 || to < from)
+            throw new IllegalArgumentException("wrong range: " + from + ".." + to);
+        chunkSize = OS.mapAlign(chunkSize);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = Math.min(to, channel.size());
+            if (from >= end)
+                return true;
+            for (long position = from - from % chunkSize; position < end;
+                 position += chunkSize) {
+                long length = Math.min(chunkSize, end - position);
+                long address = OS.map(channel, FileChannel.MapMode.READ_ONLY,
+                        position, length);
+                try {
+                    long skip = Math.max(0L, from - position);
+                    if (!handler.onChunk(address + skip, length - skip))
+                        return false;
+                } finally {
+                    OS.unmap(address, length);
+                }
+            }
+        }
+        return true;
+    }
+
+    private MappedChunks() {}
+}
@@ -19,7 +19,13 @@
 package net.openhft.saxophone.fix;
 
 import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.PointerBytesStore;
+import net.openhft.chronicle.bytes.VanillaBytes;
 import net.openhft.saxophone.BytesSaxParser;
+import net.openhft.saxophone.MappedChunks;
+
+import java.io.IOException;
+import java.nio.file.Path;
 
 public class FixSaxParser implements BytesSaxParser {
     private static final byte FIELD_TERMINATOR = 1;
@@ -52,7 +58,7 @@ public class FixSaxParser implements BytesSaxParser {
             handler.completeMessage(bytes);
             handler.onField(fieldNum, bytes);
 
-            bytes.readLimit(limit);
+            bytes.readLimit(limit2);
             bytes.readPosition(end + 1);
         }
 
@@ -60,6 +66,50 @@ public class FixSaxParser implements BytesSaxParser {
         bytes.readPosition(limit2);
     }
 
+    public void parseFile(Path file) throws IOException {
+        parseFile(file, MappedChunks.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Parses the file through read-only memory mappings of consecutive chunks. A field spanning
+     * the chunk border is copied into a carry-over buffer. An incomplete last field is not
+     * parsed, like by {@link #parse(Bytes)}.
+     */
+    public void parseFile(Path file, long chunkSize) throws IOException {
+        final PointerBytesStore store = new PointerBytesStore();
+        final Bytes chunk = new VanillaBytes(store);
+        final Bytes carry = Bytes.allocateElasticDirect();
+        try {
+            MappedChunks.forEach(file, chunkSize, new MappedChunks.ChunkHandler() {
+                @Override
+                public boolean onChunk(long address, long length) {
+                    store.set(address, length);
+                    chunk.writeLimit(length);
+                    chunk.readLimit(length);
+                    chunk.readPosition(0);
+                    if (carry.readRemaining() > 0) {
+                        long end = 0;
+                        while (end < length && chunk.readByte(end) != FIELD_TERMINATOR)
+                            end++;
+                        if (end == length) {
+                            carry.write(chunk, 0, length);
+                            return true;
+                        }
+                        carry.write(chunk, 0, end + 1);
+                        parse(carry);
+                        carry.clear();
+                        chunk.readPosition(end + 1);
+                    }
+                    parse(chunk);
+                    carry.write(chunk, chunk.readPosition(), chunk.readRemaining());
+                    return true;
+                }
+            });
+        } finally {
+            carry.release();
+        }
+    }
+
     private void searchForTheEndOfField(Bytes bytes) {
         while (bytes.readByte() != FIELD_TERMINATOR) ;
     }
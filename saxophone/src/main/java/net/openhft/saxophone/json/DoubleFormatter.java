@@ -0,0 +1,324 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import java.math.BigInteger;
+
+import static net.openhft.saxophone.json.DoubleParser.unsignedMultiplyHigh;
+
+/**
+ * Formats {@code double} values into the shortest decimal, which parses back to the same
+ * value, with the Schubfach algorithm by Raffaello Giulietti ("The Schubfach way to render
+ * doubles"): the decimal is chosen among the candidates in the rounding interval of the value
+ * with a single 126-bit multiplication per bound, without loops over digits and without
+ * allocation. The format is the same as of {@link Double#toString(double)} since Java 19:
+ * plain notation for 10^-3 &lt;= |v| &lt; 10^7, "computerized scientific" notation otherwise,
+ * e. g. {@code 1.0E-5}. Unlike {@code Double.toString()} of Java 8, the result is always
+ * the shortest.
+ *
+ * <p>Formatted chars are written into the reused {@link #buf}.
+ */
+final class DoubleFormatter {
+    /** precision of double, in bits */
+    private static final int P = 53;
+    /** the smallest binary exponent of a double, as c * 2^q with integer c */
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final long T_MASK = C_MIN - 1;
+    private static final int BQ_MASK = 0x7FF;
+    /** subnormals below this significand are scaled by 10 to be formatted precisely enough */
+    private static final long C_TINY = 3;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    /** the number of decimal digits of the significands handed to toChars() */
+    private static final int H = 17;
+    private static final long MASK_63 = -1L >>> 1;
+    private static final int MASK_28 = (1 << 28) - 1;
+
+    private static final long[] POWERS_OF_TEN = new long[H + 1];
+
+    /**
+     * 126-bit approximations of 10^-k, k in [{@link #K_MIN}, {@link #K_MAX}]: floor of 10^-k
+     * normalized to [2^125, 2^126), plus 1, split into the high and the low 63 bits.
+     * Computed at class initialization.
+     */
+    private static final long[] G = g();
+
+    static {
+        long p = 1;
+        for (int i = 0; i <= H; i++, p *= 10) {
+            POWERS_OF_TEN[i] = p;
+        }
+    }
+
+    /** room for the longest format, e. g. -2.2250738585072014E-308 */
+    final byte[] buf = new byte[32];
+    private int index;
+
+    private static long[] g() {
+        long[] table = new long[2 * (K_MAX - K_MIN + 1)];
+        BigInteger ten = BigInteger.TEN;
+        int i = 0;
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int shift = 125 - flog2pow10(-k);
+            BigInteger g;
+            if (k <= 0) {
+                g = ten.pow(-k);
+                g = shift >= 0 ? g.shiftLeft(shift) : g.shiftRight(-shift);
+            } else {
+                g = BigInteger.ONE.shiftLeft(shift).divide(ten.pow(k));
+            }
+            g = g.add(BigInteger.ONE);
+            table[i++] = g.shiftRight(63).longValue();
+            table[i++] = g.longValue() & MASK_63;
+        }
+        return table;
+    }
+
+    /** floor(e * log10(2)) */
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    /** floor(e * log10(3/4 * 2)) */
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    /** floor(e * log2(10)) */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    /**
+     * Formats the given finite value into {@link #buf}.
+     *
+     * @return the number of formatted chars
+     * @throws IllegalArgumentException if the value is NaN or infinite
+     */
+    int format(double v) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+        if (bq == BQ_MASK)
+            throw new IllegalArgumentException(v + " is not allowed in JSON");
+        index = 0;
+        if (bits < 0)
+            append('-');
+        if (bq != 0) {
+            // normal value v = c * 2^q
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < P) {
+                long f = c >> mq;
+                if (f << mq == c) {
+                    // an integer
+                    toChars(f, 0);
+                    return index;
+                }
+            }
+            toDecimal(-mq, c, 0);
+        } else if (t != 0) {
+            // subnormal value
+            if (t < C_TINY) {
+                toDecimal(Q_MIN, 10 * t, -1);
+            } else {
+                toDecimal(Q_MIN, t, 0);
+            }
+        } else {
+            append('0');
+            append('.');
+            append('0');
+        }
+        return index;
+    }
+
+    private void toDecimal(int q, long c, int dk) {
+        // the rounding interval of v = c * 2^q is [cbl, cbr] * 2^(q - 2), even c includes
+        // the bounds
+        int out = (int) c & 1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            // the interval is asymmetric at powers of two
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+        int gi = (k - K_MIN) << 1;
+        long g1 = G[gi];
+        long g0 = G[gi + 1];
+        long vb = roundOdd(g1, g0, cb << h);
+        long vbl = roundOdd(g1, g0, cbl << h);
+        long vbr = roundOdd(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // try one digit less: sp10 and tp10 are the multiples of 10 around s
+            long sp10 = 10 * unsignedMultiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                toChars(upin ? sp10 : tp10, k);
+                return;
+            }
+        }
+        long tt = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (tt << 2) + out <= vbr;
+        if (uin != win) {
+            toChars(uin ? s : tt, k + dk);
+            return;
+        }
+        // both s and s + 1 are in the interval, pick the closest one, or the even one
+        long cmp = vb - (s + tt << 1);
+        toChars(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : tt, k + dk);
+    }
+
+    /** cp * g / 2^127, rounded to odd */
+    private static long roundOdd(long g1, long g0, long cp) {
+        long x1 = unsignedMultiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = unsignedMultiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /** formats f * 10^e */
+    private void toChars(long f, int e) {
+        // normalize f to H digits, so that v = 0.f * 10^e
+        int len = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+        if (f >= POWERS_OF_TEN[len])
+            len++;
+        f *= POWERS_OF_TEN[H - len];
+        e += len;
+
+        // split into the first digit, then 8 and 8 digits
+        long hm = unsignedMultiplyHigh(f, 193_428_131_138_340_668L) >>> 20;
+        int l = (int) (f - 100_000_000L * hm);
+        int h = (int) (hm * 1_441_151_881L >>> 57);
+        int m = (int) (hm - 100_000_000 * h);
+
+        if (0 < e && e <= 7) {
+            plainWithIntegerPart(h, m, l, e);
+        } else if (-3 < e && e <= 0) {
+            plainFraction(h, m, l, e);
+        } else {
+            scientific(h, m, l, e);
+        }
+    }
+
+    /** dd.ddd */
+    private void plainWithIntegerPart(int h, int m, int l, int e) {
+        appendDigit(h);
+        int y = y(m);
+        int i = 1;
+        for (; i < e; i++) {
+            int t = 10 * y;
+            appendDigit(t >>> 28);
+            y = t & MASK_28;
+        }
+        append('.');
+        for (; i <= 8; i++) {
+            int t = 10 * y;
+            appendDigit(t >>> 28);
+            y = t & MASK_28;
+        }
+        lowDigits(l);
+    }
+
+    /** 0.00ddd */
+    private void plainFraction(int h, int m, int l, int e) {
+        append('0');
+        append('.');
+        for (; e < 0; e++) {
+            append('0');
+        }
+        appendDigit(h);
+        append8Digits(m);
+        lowDigits(l);
+    }
+
+    /** d.dddE-dd */
+    private void scientific(int h, int m, int l, int e) {
+        appendDigit(h);
+        append('.');
+        append8Digits(m);
+        lowDigits(l);
+        e--;
+        append('E');
+        if (e < 0) {
+            append('-');
+            e = -e;
+        }
+        if (e < 10) {
+            appendDigit(e);
+            return;
+        }
+        if (e >= 100) {
+            int d = e * 1_311 >>> 17;
+            appendDigit(d);
+            e -= 100 * d;
+        }
+        int d = e * 103 >>> 10;
+        appendDigit(d);
+        appendDigit(e - 10 * d);
+    }
+
+    private void lowDigits(int l) {
+        if (l != 0)
+            append8Digits(l);
+        // remove trailing zeros, but keep one digit after the point
+        while (buf[index - 1] == '0') {
+            index--;
+        }
+        if (buf[index - 1] == '.')
+            index++;
+    }
+
+    private void append8Digits(int m) {
+        int y = y(m);
+        for (int i = 0; i < 8; i++) {
+            int t = 10 * y;
+            appendDigit(t >>> 28);
+            y = t & MASK_28;
+        }
+    }
+
+    /** m / 10^8 as a 28-bit fixed point fraction, so that digits are got by multiplying by 10 */
+    private static int y(int m) {
+        return (int) (unsignedMultiplyHigh((long) (m + 1) << 28, 193_428_131_138_340_668L)
+                >>> 20) - 1;
+    }
+
+    private void appendDigit(int d) {
+        buf[index++] = (byte) ('0' + d);
+    }
+
+    private void append(char c) {
+        buf[index++] = (byte) c;
+    }
+}
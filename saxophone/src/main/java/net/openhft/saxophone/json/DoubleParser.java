@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+
+import java.math.BigInteger;
+
+/**
+ * Correctly rounded conversion of JSON numbers into {@code double}s, right from the significand
+ * and the exponent accumulated by the lexer.
+ *
+ * <p>Porting note: the algorithm and the constants are those of the fast_float library
+ * (https://github.com/fastfloat/fast_float) by Daniel Lemire et al.:
+ * <ol>
+ *     <li>Clinger's fast path, if the decimal significand and the power of ten are both exactly
+ *     representable as {@code double}s;</li>
+ *     <li>the Eisel-Lemire algorithm, which computes the result from a 128-bit approximation
+ *     of the power of five;</li>
+ *     <li>if the significand has more than 19 digits and the truncated digits make
+ *     a difference, {@link Double#parseDouble(String)}. This is the only path which allocates,
+ *     but it is virtually never taken by real-world numbers.</li>
+ * </ol>
+ *
+ * <p>The number text is expected to be a valid JSON number, i. e. already checked by the lexer.
+ */
+final class DoubleParser {
+
+    private static final int SMALLEST_POWER_OF_TEN = -342;
+    private static final int LARGEST_POWER_OF_TEN = 308;
+    private static final int MANTISSA_EXPLICIT_BITS = 52;
+    private static final int MINIMUM_EXPONENT = -1023;
+    private static final int INFINITE_POWER = 0x7FF;
+    private static final int MIN_EXPONENT_ROUND_TO_EVEN = -4;
+    private static final int MAX_EXPONENT_ROUND_TO_EVEN = 23;
+    private static final long PRECISION_MASK = -1L >>> (MANTISSA_EXPLICIT_BITS + 3);
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * 128-bit approximations of 5^q, q in [{@link #SMALLEST_POWER_OF_TEN},
+     * {@link #LARGEST_POWER_OF_TEN}], normalized so that the highest bit is set, high 64 bits
+     * first. Same as fast_float's table, but computed at class initialization.
+     */
+    private static final long[] POWERS_OF_FIVE = powersOfFive();
+
+    private DoubleParser() {
+    }
+
+    private static long[] powersOfFive() {
+        long[] table = new long[2 * (LARGEST_POWER_OF_TEN - SMALLEST_POWER_OF_TEN + 1)];
+        BigInteger five = BigInteger.valueOf(5);
+        int i = 0;
+        for (int q = SMALLEST_POWER_OF_TEN; q <= LARGEST_POWER_OF_TEN; q++) {
+            BigInteger c;
+            if (q < 0) {
+                BigInteger power5 = five.pow(-q);
+                int z = power5.bitLength();
+                // for q >= -27 5^-q fits 64 bits, and the result is exact enough for round
+                // to even, for the rest the approximation is truncated to 128 bits below
+                int b = q >= -27 ? z + 127 : 2 * z + 2 * 64;
+                c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+            } else {
+                c = five.pow(q);
+            }
+            c = c.bitLength() > 128 ? c.shiftRight(c.bitLength() - 128) :
+                    c.shiftLeft(128 - c.bitLength());
+            table[i++] = c.shiftRight(64).longValue();
+            table[i++] = c.longValue();
+        }
+        return table;
+    }
+
+    /**
+     * Returns the {@code double} closest to (negative ? -1 : 1) * w * 10^exponent, w treated as
+     * unsigned, as accumulated by {@link Lexer#lexNumber(Bytes)}. If {@code truncated}, w holds
+     * only the first 19 significant digits and the number text of the given length at
+     * the given offset of the given bytes is parsed if they don't suffice. Never allocates
+     * otherwise.
+     *
+     * @return the closest {@code double} to the number, or infinity if it is beyond
+     * {@link Double#MAX_VALUE}, just like {@link Double#parseDouble(String)}
+     */
+    static double toDouble(boolean negative, long w, long exponent, boolean truncated,
+                           Bytes s, long off, long len) {
+        double value;
+        if (w == 0L) {
+            value = 0.0;
+        } else if (!truncated && exponent >= -22 && exponent <= 22 &&
+                w >= 0L && w <= 1L << 53) {
+            value = (double) w;
+            value = exponent < 0 ? value / POWERS_OF_TEN[(int) -exponent] :
+                    value * POWERS_OF_TEN[(int) exponent];
+        } else {
+            int q = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, exponent));
+            long bits = computeFloat(q, w);
+            if (truncated && bits != computeFloat(q, w + 1))
+                return parseDoubleFallback(s, off, len);
+            value = Double.longBitsToDouble(bits);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Eisel-Lemire: returns the bits of the positive {@code double} closest to w * 10^q,
+     * w treated as unsigned.
+     */
+    private static long computeFloat(int q, long w) {
+        if (w == 0L || q < SMALLEST_POWER_OF_TEN)
+            return 0L;
+        if (q > LARGEST_POWER_OF_TEN)
+            return (long) INFINITE_POWER << MANTISSA_EXPLICIT_BITS;
+
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+
+        // compute_product_approximation()
+        int index = 2 * (q - SMALLEST_POWER_OF_TEN);
+        long high = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index]);
+        long low = w * POWERS_OF_FIVE[index];
+        if ((high & PRECISION_MASK) == PRECISION_MASK) {
+            long secondHigh = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index + 1]);
+            low += secondHigh;
+            if (Long.compareUnsigned(secondHigh, low) > 0)
+                high++;
+        }
+
+        int upperBit = (int) (high >>> 63);
+        int shift = upperBit + 64 - MANTISSA_EXPLICIT_BITS - 3;
+        long mantissa = high >>> shift;
+        int power2 = power(q) + upperBit - lz - MINIMUM_EXPONENT;
+        if (power2 <= 0) {
+            // subnormal
+            if (-power2 + 1 >= 64)
+                return 0L;
+            mantissa >>>= -power2 + 1;
+            mantissa += mantissa & 1;
+            mantissa >>>= 1;
+            // might be rounded up to the smallest normal
+            power2 = mantissa < (1L << MANTISSA_EXPLICIT_BITS) ? 0 : 1;
+            return ((long) power2 << MANTISSA_EXPLICIT_BITS) |
+                    (mantissa & ~(1L << MANTISSA_EXPLICIT_BITS));
+        }
+
+        // usually we round up, but if we are right in between and the mantissa is even,
+        // round down. This is possible only when 5^q fits in 64 bits
+        if (Long.compareUnsigned(low, 1L) <= 0 &&
+                q >= MIN_EXPONENT_ROUND_TO_EVEN && q <= MAX_EXPONENT_ROUND_TO_EVEN &&
+                (mantissa & 3) == 1) {
+            if ((mantissa << shift) == high)
+                mantissa &= ~1L;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= (2L << MANTISSA_EXPLICIT_BITS)) {
+            mantissa = 1L << MANTISSA_EXPLICIT_BITS;
+            power2++;
+        }
+        mantissa &= ~(1L << MANTISSA_EXPLICIT_BITS);
+        if (power2 >= INFINITE_POWER)
+            return (long) INFINITE_POWER << MANTISSA_EXPLICIT_BITS;
+        return ((long) power2 << MANTISSA_EXPLICIT_BITS) | mantissa;
+    }
+
+    /** floor(log2(5^q)) + 63, for q in [-1233, 1233] */
+    private static int power(int q) {
+        return (((152170 + 65536) * q) >> 16) + 63;
+    }
+
+    /** high 64 bits of the unsigned 128-bit product, Math.multiplyHigh() is Java 9+ */
+    static long unsignedMultiplyHigh(long x, long y) {
+        long x0 = x & 0xFFFFFFFFL, x1 = x >>> 32;
+        long y0 = y & 0xFFFFFFFFL, y1 = y >>> 32;
+        long p01 = x0 * y1;
+        long middle = x1 * y0 + ((x0 * y0) >>> 32) + (p01 & 0xFFFFFFFFL);
+        return x1 * y1 + (middle >>> 32) + (p01 >>> 32);
+    }
+
+    private static double parseDoubleFallback(Bytes s, long off, long len) {
+        char[] chars = new char[(int) len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = (char) s.readUnsignedByte(off + i);
+        }
+        return Double.parseDouble(new String(chars));
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.ParseException;
+
+/**
+ * Forward-only "on demand" reader of fields of a JSON object, for extracting a few values from
+ * a small message without a handler or a DOM: <pre>{@code
+ * JsonCursor cursor = new JsonCursor(); // reusable
+ * cursor.reset(message);
+ * long seq = cursor.getLong("seq");
+ * CharSequence sym = cursor.getString("sym");
+ * double px = cursor.getDouble("px");
+ * }</pre>
+ *
+ * <p>Each getter lexes the document from the current position up to the requested field:
+ * the keys of other fields are compared with the requested name, their values are skipped
+ * by a bracket and quote balancing scan, without lexing or conversion. Getters don't allocate.
+ *
+ * <p>The cursor never goes back, so fields should be requested in the order they appear in
+ * the document. If the requested field is not found before the end of the object, {@code
+ * IllegalStateException} is thrown: the field is either absent, or already passed. Skipped
+ * values are not validated. The cursor is not configured by {@link JsonParserBuilder}, so its
+ * {@link JsonParserBuilder#maxDepth(int) limits} don't apply: the whole document is given
+ * at once and the cursor keeps no stack, so only the document size bounds the work.
+ *
+ * <p>The cursor advances the read position of the given {@code Bytes}. {@code JsonCursor} is
+ * not thread-safe.
+ */
+public final class JsonCursor {
+
+    private final Lexer lexer = new Lexer(false, true, 64L);
+    private final ValueSkipper skipper = new ValueSkipper();
+    private final Utf8CharSequence keyView = new Utf8CharSequence();
+    private final Utf8CharSequence valueView = new Utf8CharSequence();
+    private Bytes json;
+    private Bytes finishSpace;
+    /** depth of the current object, 0 if there is no document */
+    private int depth;
+    /** if a field of the current object is already read, so a comma is expected before a key */
+    private boolean afterField;
+    /** if the closing bracket of the current object is already read */
+    private boolean ended;
+    /** the token of the last found value */
+    private TokenType valueToken;
+
+    /**
+     * Starts reading the given document, which should be a JSON object between the read position
+     * and the read limit of the given {@code Bytes}. The opening bracket is read.
+     *
+     * @param json the JSON document
+     * @return a reference to this cursor
+     * @throws ParseException if the document doesn't start with an object
+     */
+    public JsonCursor reset(Bytes json) {
+        this.json = json;
+        lexer.reset();
+        skipper.reset();
+        depth = 0;
+        if (lex() != TokenType.LEFT_BRACKET)
+            throw new ParseException("JSON object expected");
+        depth = 1;
+        afterField = false;
+        ended = false;
+        return this;
+    }
+
+    /**
+     * Returns the value of the integer field with the given name.
+     *
+     * @param name the field name
+     * @return the field value
+     * @throws IllegalStateException if the field is absent or already passed, or is not
+     *         an integer
+     * @throws NumberFormatException if the value is out of {@code long} range
+     */
+    public long getLong(CharSequence name) {
+        if (findField(name) != TokenType.INTEGER)
+            throw typeMismatch(name, "an integer");
+        return lexer.outLongValue();
+    }
+
+    /**
+     * Returns the value of the number field with the given name, correctly rounded to {@code
+     * double}.
+     *
+     * @param name the field name
+     * @return the field value
+     * @throws IllegalStateException if the field is absent or already passed, or is not a number
+     */
+    public double getDouble(CharSequence name) {
+        TokenType tok = findField(name);
+        if (tok != TokenType.DOUBLE && tok != TokenType.INTEGER)
+            throw typeMismatch(name, "a number");
+        return DoubleParser.toDouble(lexer.outNegative, lexer.outMantissa, lexer.outExponent,
+                lexer.outTruncated, lexer.outBuf, lexer.outPos, lexer.outLen);
+    }
+
+    /**
+     * Returns the value of the boolean field with the given name.
+     *
+     * @param name the field name
+     * @return the field value
+     * @throws IllegalStateException if the field is absent or already passed, or is not
+     *         a boolean
+     */
+    public boolean getBoolean(CharSequence name) {
+        if (findField(name) != TokenType.BOOL)
+            throw typeMismatch(name, "a boolean");
+        return lexer.outBuf.readUnsignedByte(lexer.outPos) == 't';
+    }
+
+    /**
+     * Returns the value of the string field with the given name. The returned {@code
+     * CharSequence} is a view, valid until the next call of this method, or until the document
+     * is modified.
+     *
+     * @param name the field name
+     * @return the field value
+     * @throws IllegalStateException if the field is absent or already passed, or is not a string
+     */
+    public CharSequence getString(CharSequence name) {
+        TokenType tok = findField(name);
+        if (tok == TokenType.STRING)
+            return valueView.set(lexer.outBuf, lexer.outPos, lexer.outLen);
+        if (tok == TokenType.STRING_WITH_ESCAPES)
+            return valueView.setEscaped(lexer.outBuf, lexer.outPos, lexer.outLen);
+        throw typeMismatch(name, "a string");
+    }
+
+    /**
+     * Reads the field with the given name, and returns {@code true} if its value is
+     * {@code null}. Otherwise the value is skipped.
+     *
+     * @param name the field name
+     * @return if the field value is {@code null}
+     * @throws IllegalStateException if the field is absent or already passed
+     */
+    public boolean isNull(CharSequence name) {
+        seekValue(name);
+        if (ValueSkipper.peek(json) == 'n') {
+            lex();
+            return true;
+        }
+        skipValue();
+        return false;
+    }
+
+    /**
+     * Enters the object field with the given name: the following calls read the fields of
+     * the nested object, until {@link #exitObject()}.
+     *
+     * @param name the field name
+     * @return a reference to this cursor
+     * @throws IllegalStateException if the field is absent or already passed, or is not
+     *         an object
+     */
+    public JsonCursor enterObject(CharSequence name) {
+        if (findField(name) != TokenType.LEFT_BRACKET)
+            throw typeMismatch(name, "an object");
+        depth++;
+        afterField = false;
+        return this;
+    }
+
+    /**
+     * Skips the remaining fields of the current nested object, and continues reading
+     * the enclosing object after it.
+     *
+     * @return a reference to this cursor
+     * @throws IllegalStateException if the current object is the document itself
+     */
+    public JsonCursor exitObject() {
+        if (depth <= 1)
+            throw new IllegalStateException("not in a nested object");
+        if (!ended) {
+            if (afterField) {
+                skipper.startRestAfterEntry();
+            } else {
+                skipper.startRest();
+            }
+            skip();
+            if (lex() != TokenType.RIGHT_BRACKET)
+                throw new ParseException("unallowed token at this point in JSON text");
+        }
+        depth--;
+        afterField = true;
+        ended = false;
+        return this;
+    }
+
+    /** moves to the value of the field with the given name */
+    private void seekValue(CharSequence name) {
+        if (depth == 0)
+            throw new IllegalStateException("no document, reset the cursor first");
+        if (ended)
+            throw notFound(name);
+        while (true) {
+            TokenType tok = lex();
+            if (tok == TokenType.RIGHT_BRACKET) {
+                ended = true;
+                throw notFound(name);
+            }
+            if (afterField) {
+                if (tok != TokenType.COMMA)
+                    throw new ParseException("unallowed token at this point in JSON text");
+                tok = lex();
+            }
+            if (tok != TokenType.STRING && tok != TokenType.STRING_WITH_ESCAPES)
+                throw new ParseException("invalid object key (must be a string)");
+            boolean found = (tok == TokenType.STRING ?
+                    keyView.set(lexer.outBuf, lexer.outPos, lexer.outLen) :
+                    keyView.setEscaped(lexer.outBuf, lexer.outPos, lexer.outLen))
+                    .contentEquals(name);
+            keyView.clear();
+            if (lex() != TokenType.COLON)
+                throw new ParseException("unallowed token at this point in JSON text");
+            afterField = true;
+            if (found)
+                return;
+            skipValue();
+        }
+    }
+
+    /** moves to the value of the field with the given name, and lexes the value token */
+    private TokenType findField(CharSequence name) {
+        seekValue(name);
+        return valueToken = lex();
+    }
+
+    private void skipValue() {
+        skipper.startValue();
+        if (!skipper.skip(json) && !skipper.skip(finishSpace()))
+            throw new ParseException("premature EOF");
+        checkSkippedValue();
+    }
+
+    private void skip() {
+        if (!skipper.skip(json))
+            throw new ParseException("premature EOF");
+        checkSkippedValue();
+    }
+
+    private void checkSkippedValue() {
+        if (skipper.missingValue())
+            throw new ParseException("unallowed token at this point in JSON text");
+    }
+
+    private Bytes finishSpace() {
+        if (finishSpace == null)
+            finishSpace = Bytes.from(" ");
+        finishSpace.readPosition(0);
+        return finishSpace;
+    }
+
+    private TokenType lex() {
+        TokenType tok = lexer.lex(json);
+        if (tok == TokenType.EOF)
+            throw new ParseException("premature EOF");
+        if (tok == TokenType.ERROR)
+            throw new ParseException("lexical error: " + lexer.error);
+        return tok;
+    }
+
+    private static IllegalStateException notFound(CharSequence name) {
+        return new IllegalStateException("field " + name + " not found before the end of " +
+                "the object: it's either absent, or already passed, the cursor is forward-only");
+    }
+
+    /** skips the rest of the mismatched value, if it's an object or an array */
+    private IllegalStateException typeMismatch(CharSequence name, String expected) {
+        if (valueToken == TokenType.LEFT_BRACKET || valueToken == TokenType.LEFT_BRACE) {
+            skipper.startRest();
+            skip();
+            lex();
+        }
+        return new IllegalStateException("field " + name + " is not " + expected);
+    }
+}
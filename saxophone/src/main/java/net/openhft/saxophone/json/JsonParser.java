@@ -19,11 +19,23 @@
 package net.openhft.saxophone.json;
 
 import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.HeapBytesStore;
+import net.openhft.chronicle.bytes.NativeBytesStore;
+import net.openhft.chronicle.bytes.PointerBytesStore;
+import net.openhft.chronicle.bytes.UncheckedBytes;
+import net.openhft.chronicle.bytes.VanillaBytes;
+import net.openhft.saxophone.BytesSaxParser;
+import net.openhft.saxophone.MappedChunks;
 import net.openhft.saxophone.ParseException;
 import net.openhft.saxophone.json.handler.*;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.EnumSet;
 
 import static net.openhft.saxophone.json.JsonParserOption.*;
@@ -32,6 +44,7 @@ import static net.openhft.saxophone.json.JsonParserTopLevelStrategy.ALLOW_TRAILI
 import static net.openhft.saxophone.json.ParserState.*;
 import static net.openhft.saxophone.json.TokenType.EOF;
 import static net.openhft.saxophone.json.TokenType.STRING;
+import static net.openhft.saxophone.json.TokenType.STRING_WITH_ESCAPES;
 
 /**
  * A pull JSON parser, accepts chunks of JSON as {@link Bytes}.
@@ -96,7 +109,7 @@ import static net.openhft.saxophone.json.TokenType.STRING;
  *
  * @see #builder()
  */
-public final class JsonParser {
+public final class JsonParser implements Closeable {
 
     /**
      * Porting note: this class approximately corresponds to src/yajl_parser.c, src/yajl_parser.h
@@ -105,12 +118,14 @@ public final class JsonParser {
      * I tried to preserve method order and names to ease side-to-side comparison.
      */
     private final Lexer lexer;
-    /** temporary storage for decoded strings */
-    private final StringBuilder decodeBuf = new StringBuilder();
+    /** reusable view of strings and numbers */
+    private final Utf8CharSequence utf8View = new Utf8CharSequence();
     private final ParserState.Stack stateStack;
     private final EnumSet<JsonParserOption> flags;
     private final JsonParserTopLevelStrategy topLevelStrategy;
     private final boolean eachTokenMustBeHandled;
+    private final int maxDepth;
+    private final long maxValueSize;
     @Nullable
     private final ObjectStartHandler objectStartHandler;
     @Nullable private final ObjectEndHandler objectEndHandler;
@@ -119,23 +134,54 @@ public final class JsonParser {
     @Nullable private final BooleanHandler booleanHandler;
     @Nullable private final NullHandler nullHandler;
     @Nullable private final StringValueHandler stringValueHandler;
+    @Nullable private final RawStringValueHandler rawStringValueHandler;
     @Nullable private final ObjectKeyHandler objectKeyHandler;
+    @Nullable private final RawObjectKeyHandler rawObjectKeyHandler;
+    @Nullable private final KnownKeyHandler knownKeyHandler;
+    @Nullable private final KeyDictionary keyDictionary;
     @Nullable private final NumberHandler numberHandler;
+    /** the number handler, if it is a recorder, which takes the number right from the lexer */
+    @Nullable private final TokenRecorder numberRecorder;
     @Nullable private final IntegerHandler integerHandler;
     @Nullable private final FloatingHandler floatingHandler;
     @Nullable private final ResetHook resetHook;
-    private final OnString onString = new OnString();
-    private final OnEscapedString onEscapedString = new OnEscapedString();
-    private final OnKey onKey = new OnKey();
-    private final OnEscapedKey onEscapedKey = new OnEscapedKey();
-    private final OnNumber onNumber = new OnNumber();
-    private final OnFloating onFloating = new OnFloating();
+    @Nullable private final Projection projection;
+    @Nullable private final JsonParserMetrics metrics;
+    private final ValueSkipper skipper = new ValueSkipper();
+    /** projection node of each object and array, indexed by the state stack depth */
+    private Projection.Node[] nodeStack = new Projection.Node[16];
+    /** projection node of the value after the last object key */
+    private Projection.Node keyNode;
+    /** projection node of the value being lexed */
+    private Projection.Node valueNode;
     String parseError;
+    /**
+     * offset of the current top-level value in the portion being parsed, negative if
+     * the value started in one of the previous portions
+     */
+    private long valueStart;
+    /** bytes of the current top-level value in the previous portions */
+    private long valueBytesBefore;
+    /** set by {@link #pause()}, parsing stops after the current handler returns */
+    private boolean paused;
     private Bytes finishSpace;
+    /** reusable unchecked views of the input given as a byte array or a native memory range */
+    private HeapBytesStore heapStore;
+    private Bytes heapView;
+    private PointerBytesStore nativeStore;
+    private Bytes nativeView;
+    /** takes addresses of direct buffers */
+    private NativeBytesStore<ByteBuffer> directStore;
+    /** copy of a read-only heap buffer */
+    private byte[] inputCopy;
 
     JsonParser(EnumSet<JsonParserOption> flags,
                JsonParserTopLevelStrategy topLevelStrategy,
                boolean eachTokenMustBeHandled,
+               long carryOverRetainedCapacity,
+               int maxDepth,
+               long maxTokenLength,
+               long maxValueSize,
                @Nullable ObjectStartHandler objectStartHandler,
                @Nullable ObjectEndHandler objectEndHandler,
                @Nullable ArrayStartHandler arrayStartHandler,
@@ -143,14 +189,22 @@ public final class JsonParser {
                @Nullable BooleanHandler booleanHandler,
                @Nullable NullHandler nullHandler,
                @Nullable StringValueHandler stringValueHandler,
+               @Nullable RawStringValueHandler rawStringValueHandler,
                @Nullable ObjectKeyHandler objectKeyHandler,
+               @Nullable RawObjectKeyHandler rawObjectKeyHandler,
+               @Nullable KnownKeyHandler knownKeyHandler,
+               @Nullable KeyDictionary keyDictionary,
                @Nullable NumberHandler numberHandler,
                @Nullable IntegerHandler integerHandler,
                @Nullable FloatingHandler floatingHandler,
-               @Nullable ResetHook resetHook) {
+               @Nullable ResetHook resetHook,
+               @Nullable Projection projection,
+               @Nullable JsonParserMetrics metrics) {
         this.flags = flags;
         this.topLevelStrategy = topLevelStrategy;
         this.eachTokenMustBeHandled = eachTokenMustBeHandled;
+        this.maxDepth = maxDepth;
+        this.maxValueSize = maxValueSize;
         this.objectStartHandler = objectStartHandler;
         this.objectEndHandler = objectEndHandler;
         this.arrayStartHandler = arrayStartHandler;
@@ -158,13 +212,23 @@ public final class JsonParser {
         this.booleanHandler = booleanHandler;
         this.nullHandler = nullHandler;
         this.stringValueHandler = stringValueHandler;
+        this.rawStringValueHandler = rawStringValueHandler;
         this.objectKeyHandler = objectKeyHandler;
+        this.rawObjectKeyHandler = rawObjectKeyHandler;
+        this.knownKeyHandler = knownKeyHandler;
+        this.keyDictionary = keyDictionary;
         this.numberHandler = numberHandler;
+        this.numberRecorder = numberHandler instanceof TokenRecorder ?
+                (TokenRecorder) numberHandler : null;
         this.integerHandler = integerHandler;
         this.floatingHandler = floatingHandler;
         this.resetHook = resetHook;
+        this.projection = projection;
+        this.metrics = metrics;
 
-        lexer = new Lexer(flags.contains(ALLOW_COMMENTS), !flags.contains(DONT_VALIDATE_STRINGS));
+        lexer = new Lexer(flags.contains(ALLOW_COMMENTS), !flags.contains(DONT_VALIDATE_STRINGS),
+                carryOverRetainedCapacity);
+        lexer.maxTokenLength = maxTokenLength;
         stateStack = new Stack();
         reset();
     }
@@ -182,11 +246,6 @@ public final class JsonParser {
         return new JsonParserBuilder();
     }
 
-    private boolean applyKey(CharSequence key) throws IOException {
-        assert objectKeyHandler != null;
-        return objectKeyHandler.onObjectKey(key);
-    }
-
     /**
      * Resets the parser to clear "just like after construction" state.
      *
@@ -200,43 +259,26 @@ public final class JsonParser {
         lexer.reset();
         stateStack.clear();
         stateStack.push(START);
+        skipper.reset();
         parseError = null;
+        paused = false;
+        valueBytesBefore = 0;
         if (resetHook != null)
             resetHook.onReset();
     }
 
-    private long parseInteger(Bytes s, long off, long len) {
-        long lim = off + len;
-        boolean neg = false;
-        int cutLim = (int) ((Long.MAX_VALUE) % 10);
-        int first;
-        long ret = (first = s.readByte(off)) - '0';
-        if (ret < 0) {
-            assert first == '-';
-            neg = true;
-            cutLim += 1;
-            off++;
-            ret = s.readByte(off) - '0';
-
-        } else if (ret == 0) {
-            assert len == 1;
-            return 0;
-
-        } else {
-            assert ret > 0 && ret <= 9;
-        }
-        off++;
-        ret = -ret;
-        long cutoff = (-Long.MAX_VALUE) / 10;
-        while (off < lim) {
-            int c = s.readByte(off++) - '0';
-            assert(0 <= c && c <= 9);
-            if (ret < cutoff || (ret == cutoff && c > cutLim)) {
-                throw new NumberFormatException();
-            }
-            ret = 10 * ret - c;
-        }
-        return !neg ? -ret : ret;
+    /**
+     * Resets the parser (see {@link #reset()}) and releases the off-heap memory it holds:
+     * the buffer for tokens spanning several portions of JSON, see
+     * {@link JsonParserBuilder#carryOverRetainedCapacity(long)}.
+     *
+     * <p>The parser is still usable after this call, the memory is allocated again on demand.
+     */
+    @Override
+    public void close() {
+        lexer.close();
+        inputCopy = null;
+        reset();
     }
 
     /**
@@ -263,6 +305,8 @@ public final class JsonParser {
      */
     public boolean finish() {
         if (!parse(finishSpace())) return false;
+        // only the last token could be handled, there is nothing left to resume
+        paused = false;
 
         switch(stateStack.current()) {
             case PARSE_ERROR:
@@ -321,24 +365,127 @@ public final class JsonParser {
      * @throws IllegalStateException if parsing was cancelled or any exception was thrown
      *         in this method after the previous {@link #reset()} call or parser construction,
      *         or if the input JSON contains a token without corresponding handler assigned,
-     *         and {@link JsonParserBuilder#eachTokenMustBeHandled()} is set to {@code true}.
+     *         and {@link JsonParserBuilder#eachTokenMustBeHandled()} is set to {@code true},
+     *         or if parsing is {@link #pause() paused}
      */
     public boolean parse(Bytes jsonText) {
+        if (paused)
+            throw new IllegalStateException("parsing is paused, call resume()");
+        return parse0(jsonText);
+    }
+
+    /**
+     * Requests to pause parsing, to be called from a handler. After the handler returns,
+     * {@link #parse(Bytes)} returns {@code true} right away, leaving the input position just
+     * after the handled token and the parser state intact. {@link #resume(Bytes)} continues
+     * parsing from the next token, e. g. when an event loop gets to this document again, so
+     * a single thread could interleave many large documents without buffering them whole.
+     *
+     * <p>Unlike a handler returning {@code false}, which cancels parsing for good, pausing is
+     * not an error. If the handler of the last token, processed by {@link #finish()}, pauses,
+     * the request is ignored, as there is nothing left to parse.
+     *
+     * <p>Inputs given to {@link #parse(byte[], int, int)} and {@link #parse(long, long)} don't
+     * report how far they were parsed, so to resume from the exact token they should be
+     * given as {@code Bytes} or {@code ByteBuffer}.
+     *
+     * <p>Drivers which parse the whole input themselves, {@link #parseFile(Path, long)},
+     * {@link #asBytesSaxParser()} and {@link NdjsonParallelParser}, couldn't return control to
+     * the caller to resume, so pausing there is rejected with {@code IllegalStateException}.
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * Returns {@code true} if parsing is {@link #pause() paused} and should be continued by
+     * {@link #resume(Bytes)}.
+     *
+     * @return if parsing is paused
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Continues {@link #pause() paused} parsing with the rest of the input: the same
+     * {@code Bytes} as was given to the paused call, from its current read position, and
+     * possibly with more bytes appended. Otherwise works just like {@link #parse(Bytes)},
+     * and so might pause again.
+     *
+     * @param jsonText the rest of the input
+     * @return {@code true} if the parsing wasn't cancelled by handlers
+     * @throws IllegalStateException if parsing is not paused
+     * @see #parse(Bytes)
+     */
+    public boolean resume(Bytes jsonText) {
+        checkPaused();
+        return parse0(jsonText);
+    }
+
+    /**
+     * Continues {@link #pause() paused} parsing with the rest of the input from the buffer's
+     * position, like {@link #resume(Bytes)}. The buffer position is moved past the parsed
+     * bytes, like by {@link #parse(ByteBuffer)}.
+     *
+     * @param jsonText the rest of the input
+     * @return {@code true} if the parsing wasn't cancelled by handlers
+     * @throws IllegalStateException if parsing is not paused
+     * @see #parse(ByteBuffer)
+     */
+    public boolean resume(ByteBuffer jsonText) {
+        checkPaused();
+        return parse(jsonText);
+    }
+
+    private void checkPaused() {
+        if (!paused)
+            throw new IllegalStateException("parsing is not paused");
+        paused = false;
+    }
+
+    private boolean parse0(Bytes jsonText) {
+        long start = jsonText.readPosition();
+        // the padding given by finish() is not a part of the value
+        valueStart = (jsonText == finishSpace ? start + 1 : start) - valueBytesBefore;
+        try {
+            return parseTokens(jsonText);
+        } finally {
+            long end = jsonText.readPosition();
+            valueBytesBefore = end - valueStart;
+            if (metrics != null && jsonText != finishSpace)
+                metrics.bytesConsumed += end - start;
+        }
+    }
+
+    private TokenType lex(Bytes jsonText) {
+        TokenType tok = lexer.lex(jsonText);
+        if (jsonText.readPosition() - valueStart > maxValueSize)
+            valueTooLarge();
+        if (metrics != null && tok != EOF)
+            metrics.tokens[tok.ordinal()]++;
+        return tok;
+    }
+
+    private boolean parseTokens(Bytes jsonText) {
         TokenType tok;
 
         long startOffset = jsonText.readPosition();
 
         around_again:
         while (true) {
+            if (paused)
+                return true;
             switch (stateStack.current()) {
                 case PARSE_COMPLETE:
                     if (topLevelStrategy == ALLOW_MULTIPLE_VALUES) {
                         stateStack.set(GOT_VALUE);
+                        valueStart = jsonText.readPosition();
                         continue around_again;
                     }
                     if (topLevelStrategy != ALLOW_TRAILING_GARBAGE) {
                         if (jsonText.readRemaining() > 0) {
-                            tok = lexer.lex(jsonText);
+                            tok = lex(jsonText);
                             if (tok != EOF) {
                                 return parseError("trailing garbage");
                             }
@@ -366,7 +513,17 @@ public final class JsonParser {
                      * than state_start */
                     byte stateToPush = START;
 
-                    tok = lexer.lex(jsonText);
+                    if (projection != null) {
+                        int projected = project(jsonText);
+                        if (projected == NEED_MORE)
+                            return true;
+                        if (projected == SKIPPED) {
+                            gotValue();
+                            continue around_again;
+                        }
+                    }
+
+                    tok = lex(jsonText);
 
                     switch (tok) {
                         case EOF:
@@ -374,24 +531,10 @@ public final class JsonParser {
                         case ERROR:
                             lexicalError();
                         case STRING:
-                            if (stringValueHandler != null) {
-                                try {
-                                    if (!onString.on()) {
-                                        stateStack.set(HANDLER_CANCEL);
-                                        return false;
-                                    }
-                                } catch (Exception e) {
-                                    return handlerError(e);
-                                }
-                            } else {
-                                checkTokenCouldBePassed(tok);
-                            }
-                            break;
-
                         case STRING_WITH_ESCAPES:
-                            if (stringValueHandler != null) {
+                            if (stringValueHandler != null || rawStringValueHandler != null) {
                                 try {
-                                    if (!onEscapedString.on()) {
+                                    if (!onString(tok == STRING_WITH_ESCAPES)) {
                                         stateStack.set(HANDLER_CANCEL);
                                         return false;
                                     }
@@ -469,7 +612,7 @@ public final class JsonParser {
                         case INTEGER:
                             if (numberHandler != null) {
                                 try {
-                                    if (!onNumber.on()) {
+                                    if (!onNumber(false)) {
                                         stateStack.set(HANDLER_CANCEL);
                                         return false;
                                     }
@@ -478,7 +621,7 @@ public final class JsonParser {
                                 }
                             } else if (integerHandler != null) {
                                 try {
-                                    long i = parseInteger(lexer.outBuf, lexer.outPos, lexer.outLen);
+                                    long i = lexer.outLongValue();
                                     if (!integerHandler.onInteger(i)) {
                                         stateStack.set(HANDLER_CANCEL);
                                         return false;
@@ -497,7 +640,7 @@ public final class JsonParser {
                         case DOUBLE:
                             if (numberHandler != null) {
                                 try {
-                                    if (!onNumber.on()) {
+                                    if (!onNumber(true)) {
                                         stateStack.set(HANDLER_CANCEL);
                                         return false;
                                     }
@@ -506,13 +649,14 @@ public final class JsonParser {
                                 }
                             } else if (floatingHandler != null) {
                                 try {
-                                    if (!onFloating.on()) {
+                                    double d = DoubleParser.toDouble(lexer.outNegative,
+                                            lexer.outMantissa, lexer.outExponent,
+                                            lexer.outTruncated,
+                                            lexer.outBuf, lexer.outPos, lexer.outLen);
+                                    if (!floatingHandler.onFloating(d)) {
                                         stateStack.set(HANDLER_CANCEL);
                                         return false;
                                     }
-                                } catch (NumberFormatException e) {
-                                    tryRestoreErrorEffect(jsonText, startOffset);
-                                    return parseError("numeric (floating point) overflow", e);
                                 } catch (Exception e) {
                                     return handlerError(e);
                                 }
@@ -548,21 +692,16 @@ public final class JsonParser {
                         default:
                             return parseError("invalid token, internal error");
                     }
-                    /* got a value.  transition depends on the state we're in. */
-                    {
-                        byte s = stateStack.current();
-                        if (s == START || s == GOT_VALUE) {
-                            stateStack.set(PARSE_COMPLETE);
-
-                        } else if (s == MAP_NEED_VAL) {
-                            stateStack.set(MAP_GOT_VAL);
-
-                        } else {
-                            stateStack.set(ARRAY_GOT_VAL);
-                        }
-                    }
+                    gotValue();
                     if (stateToPush != START) {
+                        // the depth of the pushed object or array is the current stack size
+                        if (stateStack.size() > maxDepth)
+                            return depthLimitExceeded();
                         stateStack.push(stateToPush);
+                        if (metrics != null)
+                            metrics.onDepth(stateStack.size() - 1);
+                        if (projection != null)
+                            pushNode();
                     }
 
                     continue around_again;
@@ -573,20 +712,26 @@ public final class JsonParser {
                     /* only difference between these two states is that in
                      * start '}' is valid, whereas in need_key, we've parsed
                      * a comma, and a string key _must_ follow */
-                    tok = lexer.lex(jsonText);
-                    OnString onKey = this.onKey;
+                    lexer.hashNextString = keyDictionary != null;
+                    tok = lex(jsonText);
                     switch (tok) {
                         case EOF:
                             return true;
                         case ERROR:
                             lexicalError();
                         case STRING_WITH_ESCAPES:
-                            onKey = onEscapedKey;
-                            /* intentional fall-through */
                         case STRING:
-                            if (objectKeyHandler != null) {
+                            if (metrics != null)
+                                metrics.keys++;
+                            if (projection != null && !projectKey(tok == STRING_WITH_ESCAPES)) {
+                                // the value will be skipped, the key is not reported
+                                stateStack.set(MAP_SEP);
+                                continue around_again;
+                            }
+                            if (objectKeyHandler != null || rawObjectKeyHandler != null ||
+                                    knownKeyHandler != null) {
                                 try {
-                                    if (!onKey.on()) {
+                                    if (!onKey(tok == STRING_WITH_ESCAPES)) {
                                         stateStack.set(HANDLER_CANCEL);
                                         return false;
                                     }
@@ -622,7 +767,7 @@ public final class JsonParser {
                 }
 
                 case MAP_SEP: {
-                    tok = lexer.lex(jsonText);
+                    tok = lex(jsonText);
                     switch (tok) {
                         case COLON:
                             stateStack.set(MAP_NEED_VAL);
@@ -638,7 +783,7 @@ public final class JsonParser {
                 }
 
                 case MAP_GOT_VAL: {
-                    tok = lexer.lex(jsonText);
+                    tok = lex(jsonText);
                     switch (tok) {
                         case RIGHT_BRACKET:
                             if (objectEndHandler != null) {
@@ -670,7 +815,7 @@ public final class JsonParser {
                 }
 
                 case ARRAY_GOT_VAL: {
-                    tok = lexer.lex(jsonText);
+                    tok = lex(jsonText);
                     switch (tok) {
                         case RIGHT_BRACE:
                             if (arrayEndHandler != null) {
@@ -702,6 +847,202 @@ public final class JsonParser {
         }
     }
 
+    /**
+     * Returns a snapshot of the parser counters, see {@link JsonParserMetrics}. Could be called
+     * from any thread, e. g. the one collecting metrics.
+     *
+     * @return a snapshot of the parser counters
+     * @throws IllegalStateException if the parser is built without
+     *         {@link JsonParserBuilder#collectMetrics(boolean) metrics}
+     */
+    public JsonParserMetrics metrics() {
+        if (metrics == null)
+            throw new IllegalStateException("the parser is built without metrics");
+        return metrics.snapshot(lexer);
+    }
+
+    /**
+     * Returns a view of this parser as {@link BytesSaxParser}, e. g. to be driven by
+     * {@link net.openhft.saxophone.ChannelSaxDriver}: {@code parse(Bytes)} delegates to
+     * {@link #parse(Bytes)}, {@code reset()} to {@link #reset()}. As {@code BytesSaxParser}
+     * doesn't return the cancellation flag, parsing cancelled by a handler is reported by
+     * {@code IllegalStateException} from the next {@code parse(Bytes)} call. Handlers
+     * shouldn't {@link #pause()} parsing: the view throws {@code IllegalStateException} then.
+     *
+     * @return a view of this parser as {@code BytesSaxParser}
+     */
+    public BytesSaxParser asBytesSaxParser() {
+        return new BytesSaxParser() {
+            @Override
+            public void reset() {
+                JsonParser.this.reset();
+            }
+
+            @Override
+            public void parse(Bytes bytes) {
+                JsonParser.this.parse(bytes);
+                rejectPause("BytesSaxParser view");
+            }
+        };
+    }
+
+    /**
+     * Parses a portion of JSON from the given range of the byte array, just like
+     * {@link #parse(Bytes)}, but without wrapping the array into a new {@code Bytes} and
+     * bounds-checking each read: the range is checked once, and then read through a view
+     * reused across calls.
+     *
+     * @param jsonText the array with a portion of JSON to parse
+     * @param offset the offset of the portion in the array
+     * @param length the length of the portion
+     * @return {@code true} if the parsing wasn't cancelled by handlers
+     * @throws IndexOutOfBoundsException if the range is out of the array bounds
+     * @see #parse(Bytes)
+     */
+    public boolean parse(byte[] jsonText, int offset, int length) {
+        if ((offset | length) < 0 || offset > jsonText.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length +
+                    ", array length: " + jsonText.length);
+        }
+        return parse(heapView(jsonText, offset, length));
+    }
+
+    /**
+     * Parses a portion of JSON from the given buffer's {@link ByteBuffer#position() position}
+     * to {@link ByteBuffer#limit() limit}, just like {@link #parse(Bytes)}. The buffer position
+     * is moved past the parsed bytes.
+     *
+     * <p>Direct buffers and buffers backed by an accessible array are read through views reused
+     * across calls, without wrapping them into a new {@code Bytes} and bounds-checking
+     * each read. Read-only heap buffers are copied.
+     *
+     * @param jsonText a portion of JSON to parse
+     * @return {@code true} if the parsing wasn't cancelled by handlers
+     * @see #parse(Bytes)
+     */
+    public boolean parse(ByteBuffer jsonText) {
+        int position = jsonText.position();
+        int length = jsonText.remaining();
+        Bytes view;
+        if (jsonText.isDirect()) {
+            if (directStore == null)
+                directStore = NativeBytesStore.uninitialized();
+            directStore.init(jsonText, false);
+            long address = directStore.address(position);
+            // don't retain the buffer, it's reachable from the caller while parsing
+            directStore.uninit();
+            view = nativeView(address, length);
+        } else if (jsonText.hasArray()) {
+            view = heapView(jsonText.array(), jsonText.arrayOffset() + position, length);
+        } else {
+            // read-only heap buffer, its array is not accessible
+            if (inputCopy == null || inputCopy.length < length)
+                inputCopy = new byte[Math.max(length, 256)];
+            jsonText.get(inputCopy, 0, length);
+            jsonText.position(position);
+            view = heapView(inputCopy, 0, length);
+        }
+        long start = view.readPosition();
+        try {
+            return parse(view);
+        } finally {
+            jsonText.position(position + (int) (view.readPosition() - start));
+        }
+    }
+
+    /**
+     * Parses a portion of JSON from the given native memory range, just like
+     * {@link #parse(Bytes)}, but without wrapping the memory into a new {@code Bytes} and
+     * bounds-checking each read. The memory is read through a view reused across calls.
+     *
+     * @param address the address of the portion of JSON to parse
+     * @param length the length of the portion
+     * @return {@code true} if the parsing wasn't cancelled by handlers
+     * @throws IllegalArgumentException if the length is negative
+     * @see #parse(Bytes)
+     */
+    public boolean parse(long address, long length) {
+        if (length < 0)
+            throw new IllegalArgumentException("negative length: " + length);
+        return parse(nativeView(address, length));
+    }
+
+    /**
+     * Parses the whole file, read through memory mappings of {@link
+     * MappedChunks#DEFAULT_CHUNK_SIZE 64 MiB} chunks, and then calls {@link #finish()}.
+     *
+     * @param file the JSON file
+     * @return {@code true} if the parsing wasn't cancelled by handlers
+     * @throws IOException if the file couldn't be read
+     * @see #parseFile(Path, long)
+     */
+    public boolean parseFile(Path file) throws IOException {
+        return parseFile(file, MappedChunks.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Parses the whole file and then calls {@link #finish()}. The file is read through
+     * read-only memory mappings of consecutive chunks, one chunk at a time, and each chunk is
+     * parsed like by {@link #parse(long, long)}, so files larger than RAM are parsed without
+     * copying into the heap. Tokens spanning chunk borders are carried over by the parser, as
+     * usual. Handlers shouldn't {@link #pause()} parsing, as the chunk is unmapped right after
+     * it's parsed.
+     *
+     * @param file the JSON file
+     * @param chunkSize the size of mapped chunks, rounded up to the mapping alignment
+     * @return {@code true} if the parsing wasn't cancelled by handlers
+     * @throws IOException if the file couldn't be read
+     * @throws IllegalStateException if a handler pauses parsing
+     * @see MappedChunks#forEach(Path, long, MappedChunks.ChunkHandler)
+     */
+    public boolean parseFile(Path file, long chunkSize) throws IOException {
+        return MappedChunks.forEach(file, chunkSize, (address, length) -> {
+            boolean result = parse(address, length);
+            rejectPause("parseFile()");
+            return result;
+        }) && finish();
+    }
+
+    /**
+     * Throws {@code IllegalStateException}, if a handler has paused parsing driven by
+     * the given driver, which parses the whole input and so couldn't resume.
+     */
+    void rejectPause(String driver) {
+        if (paused) {
+            paused = false;
+            stateStack.set(PARSE_ERROR);
+            parseError = "pause() is not supported by " + driver +
+                    ", parse with parse(Bytes) or parse(ByteBuffer) to pause and resume";
+            throw new IllegalStateException(parseError);
+        }
+    }
+
+    private Bytes heapView(byte[] array, int offset, int length) {
+        if (heapView == null) {
+            heapStore = BytesStore.wrap(array);
+            heapView = new UncheckedBytes(new VanillaBytes(heapStore));
+        } else {
+            heapStore.init(array);
+        }
+        return view(heapView, offset, length);
+    }
+
+    private Bytes nativeView(long address, long length) {
+        if (nativeView == null) {
+            nativeStore = new PointerBytesStore();
+            nativeView = new UncheckedBytes(new VanillaBytes(nativeStore));
+        }
+        nativeStore.set(address, length);
+        return view(nativeView, 0, length);
+    }
+
+    private static Bytes view(Bytes view, long offset, long length) {
+        view.writeLimit(offset + length);
+        view.readLimit(offset + length);
+        view.readPosition(offset);
+        return view;
+    }
+
     private boolean handlerError(Exception e) {
         stateStack.set(HANDLER_EXCEPTION);
         if (e instanceof RuntimeException) throw (RuntimeException) e;
@@ -722,10 +1063,29 @@ public final class JsonParser {
 
     private boolean lexicalError() {
         stateStack.set(LEXICAL_ERROR);
+        if (lexer.error == LexError.TOKEN_TOO_LONG) {
+            TokenTooLongException e = new TokenTooLongException(lexer.maxTokenLength);
+            parseError = e.getMessage();
+            throw e;
+        }
         parseError = "lexical error: " + lexer.error;
         throw new ParseException(parseError);
     }
 
+    private boolean depthLimitExceeded() {
+        stateStack.set(PARSE_ERROR);
+        DepthLimitExceededException e = new DepthLimitExceededException(maxDepth);
+        parseError = e.getMessage();
+        throw e;
+    }
+
+    private void valueTooLarge() {
+        stateStack.set(PARSE_ERROR);
+        ValueTooLargeException e = new ValueTooLargeException(maxValueSize);
+        parseError = e.getMessage();
+        throw e;
+    }
+
     private void checkTokenCouldBePassed(TokenType token) {
         if (eachTokenMustBeHandled) {
             stateStack.set(PARSE_ERROR);
@@ -745,77 +1105,147 @@ public final class JsonParser {
         }
     }
 
-    private class OnString {
-        boolean on() throws IOException {
-            Bytes buf = lexer.outBuf;
-            long bufPos = lexer.outPos;
-            long bufLen = lexer.outLen;
-            boolean borrowBuf = buf.readPosition() != bufPos ||
-                    buf.readRemaining() != bufLen;
-            long pos = 0, lim = 0;
-            if (borrowBuf) {
-                pos = buf.readPosition();
-                lim = buf.readLimit();
-                //buf.clear();
-                buf.readLimit(bufPos + bufLen);
-                buf.readPosition(bufPos);
-            }
-            boolean go = apply(value(buf));
-            if (borrowBuf) {
-                //buf.clear();
-                buf.readLimit(lim);
-                buf.readPosition(pos);
-            }
-            return go;
-        }
+    /* got a value.  transition depends on the state we're in. */
+    private void gotValue() {
+        byte s = stateStack.current();
+        if (s == START || s == GOT_VALUE) {
+            stateStack.set(PARSE_COMPLETE);
 
-        CharSequence value(Bytes buf) {
-            return buf;
-        }
+        } else if (s == MAP_NEED_VAL) {
+            stateStack.set(MAP_GOT_VAL);
 
-        boolean apply(CharSequence value) throws IOException {
-            assert stringValueHandler != null;
-            return stringValueHandler.onStringValue(value);
+        } else {
+            stateStack.set(ARRAY_GOT_VAL);
         }
     }
 
-    private class OnEscapedString extends OnString {
-        @Override
-        CharSequence value(Bytes buf) {
-            decodeBuf.setLength(0);
-            Unescaper.decode(decodeBuf, buf);
-            return decodeBuf;
+    private static final int DISPATCH = 0;
+    private static final int SKIPPED = 1;
+    private static final int NEED_MORE = 2;
+
+    /**
+     * Decides if the value, expected in the current state, is in the projection.
+     *
+     * @return {@code DISPATCH} if the next token should be lexed and dispatched as usual,
+     * {@code SKIPPED} if the value is skipped, {@code NEED_MORE} if the skip or the decision
+     * needs more input
+     */
+    private int project(Bytes jsonText) {
+        assert projection != null;
+        if (!skipper.active()) {
+            byte s = stateStack.current();
+            Projection.Node node;
+            if (s == START || s == GOT_VALUE) {
+                node = projection.root;
+            } else if (s == MAP_NEED_VAL) {
+                node = keyNode;
+            } else {
+                node = nodeStack[stateStack.size() - 1].element();
+            }
+            if (node != null && !node.selected) {
+                // only an object or an array could lead to the selected values
+                int c = ValueSkipper.peek(jsonText);
+                if (c < 0)
+                    return NEED_MORE;
+                if (c != '{' && c != '[')
+                    node = null;
+            }
+            if (node != null) {
+                valueNode = node;
+                return DISPATCH;
+            }
+            if (s == ARRAY_START && nodeStack[stateStack.size() - 1].element() == null) {
+                // none of the elements is in the projection, skip up to the closing bracket
+                skipper.startRest();
+            } else {
+                skipper.startValue();
+            }
         }
+        if (!skipper.skip(jsonText))
+            return NEED_MORE;
+        if (skipper.missingValue())
+            parseError("unallowed token at this point in JSON text");
+        // the closing bracket after the skipped elements is lexed as usual
+        return skipper.wasRest() ? DISPATCH : SKIPPED;
     }
 
-    private class OnKey extends OnString {
-        @Override
-        boolean apply(CharSequence key) throws IOException {
-            return applyKey(key);
+    private void pushNode() {
+        int depth = stateStack.size() - 1;
+        if (depth == nodeStack.length)
+            nodeStack = Arrays.copyOf(nodeStack, depth * 2);
+        nodeStack[depth] = valueNode;
+    }
+
+    /** Returns {@code true} if the value after the just lexed key is in the projection. */
+    private boolean projectKey(boolean escaped) {
+        Projection.Node object = nodeStack[stateStack.size() - 1];
+        try {
+            keyNode = object.field(lexer.outBuf, lexer.outPos, lexer.outLen,
+                    escaped && !object.selected ? stringValue(true) : null);
+        } finally {
+            utf8View.clear();
         }
+        return keyNode != null;
     }
 
-    private class OnEscapedKey extends OnEscapedString {
-        @Override
-        boolean apply(CharSequence key) throws IOException {
-            return applyKey(key);
+    private CharSequence stringValue(boolean escaped) {
+        return escaped ? utf8View.setEscaped(lexer.outBuf, lexer.outPos, lexer.outLen) :
+                utf8View.set(lexer.outBuf, lexer.outPos, lexer.outLen);
+    }
+
+    private boolean onString(boolean escaped) throws IOException {
+        if (rawStringValueHandler != null) {
+            return rawStringValueHandler.onRawStringValue(
+                    lexer.outBuf, lexer.outPos, lexer.outLen, escaped);
+        }
+        assert stringValueHandler != null;
+        try {
+            return stringValueHandler.onStringValue(stringValue(escaped));
+        } finally {
+            utf8View.clear();
         }
     }
 
-    private class OnNumber extends OnString {
-        @Override
-        boolean apply(CharSequence number) {
-            assert numberHandler != null;
-            return numberHandler.onNumber(number);
+    private boolean onKey(boolean escaped) throws IOException {
+        if (knownKeyHandler != null) {
+            assert keyDictionary != null;
+            try {
+                int id;
+                CharSequence key = null;
+                if (escaped) {
+                    id = keyDictionary.find(key = stringValue(true));
+                } else if (lexer.outKeyHashed) {
+                    id = keyDictionary.find(lexer.outKeyHash,
+                            lexer.outBuf, lexer.outPos, lexer.outLen);
+                } else {
+                    id = keyDictionary.find(lexer.outBuf, lexer.outPos, lexer.outLen);
+                }
+                return id >= 0 ? knownKeyHandler.onKnownKey(id) :
+                        knownKeyHandler.onUnknownKey(key != null ? key : stringValue(false));
+            } finally {
+                utf8View.clear();
+            }
+        }
+        if (rawObjectKeyHandler != null) {
+            return rawObjectKeyHandler.onRawObjectKey(
+                    lexer.outBuf, lexer.outPos, lexer.outLen, escaped);
+        }
+        assert objectKeyHandler != null;
+        try {
+            return objectKeyHandler.onObjectKey(stringValue(escaped));
+        } finally {
+            utf8View.clear();
         }
     }
 
-    private class OnFloating extends OnString {
-        @Override
-        boolean apply(CharSequence number) throws IOException {
-            assert floatingHandler != null;
-            // TODO optimize, get rid of toString() conversion
-            return floatingHandler.onFloating(Double.parseDouble(number.toString()));
+    private boolean onNumber(boolean floating) {
+        assert numberHandler != null;
+        if (numberRecorder != null)
+            return numberRecorder.onNumber(lexer, floating);
+        try {
+            return numberHandler.onNumber(stringValue(false));
+        } finally {
+            utf8View.clear();
         }
     }
 }
@@ -18,13 +18,18 @@
 
 package net.openhft.saxophone.json;
 
+import net.openhft.chronicle.bytes.BytesStore;
 import net.openhft.saxophone.json.handler.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static net.openhft.saxophone.json.JsonParserTopLevelStrategy.ALLOW_JUST_A_SINGLE_OBJECT;
@@ -177,6 +182,12 @@ public final class JsonParserBuilder {
     @NotNull
     private JsonParserTopLevelStrategy topLevelStrategy = ALLOW_JUST_A_SINGLE_OBJECT;
     private boolean eachTokenMustBeHandled = true;
+    private long carryOverRetainedCapacity = 64 << 10;
+    private int maxDepth = Integer.MAX_VALUE;
+    private long maxTokenLength = Long.MAX_VALUE;
+    private long maxValueSize = Long.MAX_VALUE;
+    private boolean collectMetrics = false;
+    private int handlerTimeSampling = 0;
     @Nullable
     private ObjectStartHandler objectStartHandler = null;
     @Nullable
@@ -192,8 +203,18 @@ public final class JsonParserBuilder {
     @Nullable
     private StringValueHandler stringValueHandler = null;
     @Nullable
+    private RawStringValueHandler rawStringValueHandler = null;
+    @Nullable
     private ObjectKeyHandler objectKeyHandler = null;
     @Nullable
+    private RawObjectKeyHandler rawObjectKeyHandler = null;
+    @Nullable
+    private KnownKeyHandler knownKeyHandler = null;
+    @NotNull
+    private List<String> knownKeys = Collections.emptyList();
+    @NotNull
+    private List<String> projection = Collections.emptyList();
+    @Nullable
     private NumberHandler numberHandler = null;
     @Nullable
     private IntegerHandler integerHandler = null;
@@ -205,6 +226,22 @@ public final class JsonParserBuilder {
     JsonParserBuilder() {
     }
 
+    /** copies the configuration of the given builder, but not its handlers */
+    JsonParserBuilder(JsonParserBuilder b) {
+        options = EnumSet.copyOf(b.options);
+        topLevelStrategy = b.topLevelStrategy;
+        eachTokenMustBeHandled = b.eachTokenMustBeHandled;
+        carryOverRetainedCapacity = b.carryOverRetainedCapacity;
+        maxDepth = b.maxDepth;
+        maxTokenLength = b.maxTokenLength;
+        maxValueSize = b.maxValueSize;
+        collectMetrics = b.collectMetrics;
+        handlerTimeSampling = b.handlerTimeSampling;
+        // unmodifiable copies
+        knownKeys = b.knownKeys;
+        projection = b.projection;
+    }
+
     /**
      * Builds and returns a new {@code JsonParser} with the configured options and handlers.
      *
@@ -215,13 +252,116 @@ public final class JsonParserBuilder {
      */
     public JsonParser build() {
         checkAnyTokenHandlerNonNull();
-        return new JsonParser(options, topLevelStrategy, eachTokenMustBeHandled,
+        checkConfiguration();
+        return build(knownKeyHandler != null ? new KeyDictionary(knownKeys) : null,
+                projection.isEmpty() ? null : new Projection(projection));
+    }
+
+    /**
+     * Builds a parser with the given key dictionary and projection, compiled from {@link
+     * #knownKeys()} and {@link #projection()}. They are immutable, so {@link JsonParserFactory}
+     * shares them between parsers.
+     */
+    JsonParser build(@Nullable KeyDictionary keyDictionary,
+                     @Nullable Projection compiledProjection) {
+        if (knownKeyHandler == null)
+            keyDictionary = null;
+        JsonParserMetrics metrics =
+                collectMetrics ? new JsonParserMetrics(handlerTimeSampling) : null;
+        if (handlerTimeSampling == 0) {
+            return new JsonParser(options, topLevelStrategy, eachTokenMustBeHandled,
+                    carryOverRetainedCapacity,
+                    maxDepth, maxTokenLength, maxValueSize,
+                    objectStartHandler, objectEndHandler, arrayStartHandler, arrayEndHandler,
+                    booleanHandler, nullHandler, stringValueHandler, rawStringValueHandler,
+                    objectKeyHandler, rawObjectKeyHandler, knownKeyHandler, keyDictionary,
+                    numberHandler, integerHandler, floatingHandler, resetHook,
+                    compiledProjection, metrics);
+        }
+        TimedHandler t = new TimedHandler(metrics,
                 objectStartHandler, objectEndHandler, arrayStartHandler, arrayEndHandler,
-                booleanHandler, nullHandler, stringValueHandler, objectKeyHandler, numberHandler,
-                integerHandler, floatingHandler, resetHook);
+                booleanHandler, nullHandler, stringValueHandler, rawStringValueHandler,
+                objectKeyHandler, rawObjectKeyHandler, knownKeyHandler,
+                numberHandler, integerHandler, floatingHandler);
+        return new JsonParser(options, topLevelStrategy, eachTokenMustBeHandled,
+                carryOverRetainedCapacity,
+                maxDepth, maxTokenLength, maxValueSize,
+                t.timed(objectStartHandler), t.timed(objectEndHandler),
+                t.timed(arrayStartHandler), t.timed(arrayEndHandler),
+                t.timed(booleanHandler), t.timed(nullHandler),
+                t.timed(stringValueHandler), t.timed(rawStringValueHandler),
+                t.timed(objectKeyHandler), t.timed(rawObjectKeyHandler),
+                t.timed(knownKeyHandler), keyDictionary,
+                t.timed(numberHandler), t.timed(integerHandler), t.timed(floatingHandler),
+                resetHook, compiledProjection, metrics);
     }
 
-    private void checkAnyTokenHandlerNonNull() {
+    /** checks the combination of options, independent of handlers */
+    private void checkConfiguration() {
+        if (!projection.isEmpty() && options.contains(JsonParserOption.ALLOW_COMMENTS)) {
+            throw new IllegalStateException(
+                    "projection couldn't be used with ALLOW_COMMENTS option");
+        }
+        if (handlerTimeSampling > 0 && !collectMetrics) {
+            throw new IllegalStateException(
+                    "handler time sampling couldn't be used without collecting metrics");
+        }
+    }
+
+    /**
+     * Builds and returns a new {@code JsonParserFactory} with the configured options, limits,
+     * metrics settings, {@link #knownKeys(List) known keys} and {@link #projection(List)
+     * projection}. Handlers are not used by the factory and so are ignored, they are given
+     * to each parser the factory creates.
+     *
+     * @return a newly built {@code JsonParserFactory}
+     * @throws IllegalStateException if the configured options are incompatible
+     */
+    public JsonParserFactory buildFactory() {
+        checkConfiguration();
+        return new JsonParserFactory(new JsonParserBuilder(this));
+    }
+
+    /**
+     * Builds and returns a new pull {@code JsonReader} with the configured
+     * {@link #options() options}, {@link #topLevelStrategy() top-level strategy},
+     * {@link #carryOverRetainedCapacity() carry-over retained capacity} and the
+     * {@link #maxDepth() depth}, {@link #maxTokenLength() token length} and
+     * {@link #maxValueSize() value size} limits. The reader throws the same exceptions as
+     * the parser when a limit is exceeded. Without
+     * {@link JsonParserOption#ALLOW_COMMENTS} containers skipped by
+     * {@link JsonReader#skipChildren()} are not lexed, so only the value size limit applies
+     * inside them. Handlers are not used by the reader and so are ignored.
+     *
+     * @return a newly built {@code JsonReader}
+     * @throws IllegalStateException if a {@link #projection() projection} is configured,
+     *         the reader doesn't support it
+     */
+    public JsonReader buildReader() {
+        if (!projection.isEmpty())
+            throw new IllegalStateException("projection couldn't be used with JsonReader");
+        return new JsonReader(options, topLevelStrategy, carryOverRetainedCapacity, maxDepth,
+                maxTokenLength, maxValueSize);
+    }
+
+    /**
+     * Builds and returns a new {@code TokenReplayer}, which replays recorded tokens to
+     * the configured handlers, see {@link TokenRecorder}. Options and the reset hook are not
+     * used by the replayer.
+     *
+     * @return a newly built {@code TokenReplayer}
+     * @throws IllegalStateException if no handler is configured
+     */
+    public TokenReplayer buildReplayer() {
+        checkAnyTokenHandlerNonNull();
+        return new TokenReplayer(objectStartHandler, objectEndHandler,
+                arrayStartHandler, arrayEndHandler, booleanHandler, nullHandler,
+                stringValueHandler, rawStringValueHandler, objectKeyHandler, rawObjectKeyHandler,
+                knownKeyHandler, knownKeyHandler != null ? new KeyDictionary(knownKeys) : null,
+                numberHandler, integerHandler, floatingHandler);
+    }
+
+    void checkAnyTokenHandlerNonNull() {
         if (objectStartHandler != null) return;
         if (objectEndHandler != null) return;
         if (arrayStartHandler != null) return;
@@ -229,7 +369,10 @@ public final class JsonParserBuilder {
         if (booleanHandler != null) return;
         if (nullHandler != null) return;
         if (stringValueHandler != null) return;
+        if (rawStringValueHandler != null) return;
         if (objectKeyHandler != null) return;
+        if (rawObjectKeyHandler != null) return;
+        if (knownKeyHandler != null) return;
         if (numberHandler != null) return;
         if (integerHandler != null) return;
         if (floatingHandler != null) return;
@@ -324,6 +467,177 @@ public final class JsonParserBuilder {
         return this;
     }
 
+    /**
+     * Returns the greatest capacity of the carry-over buffer, which the parser retains between
+     * tokens, 64 KiB by default.
+     *
+     * @return the greatest retained capacity of the carry-over buffer, in bytes
+     */
+    public long carryOverRetainedCapacity() {
+        return carryOverRetainedCapacity;
+    }
+
+    /**
+     * Sets the greatest capacity of the carry-over buffer, which the parser retains between
+     * tokens. The carry-over buffer (off-heap memory) keeps the head of the token, which
+     * spans several portions of JSON given to {@link JsonParser#parse(
+     * net.openhft.chronicle.bytes.Bytes)}, and grows with the longest such token. If after
+     * the token is handled, the buffer is larger than this capacity, the buffer is released.
+     *
+     * <p>Pass {@code 0} to release the buffer after each carried over token, or
+     * {@code Long.MAX_VALUE} to never release it until {@link JsonParser#close()}.
+     *
+     * @param carryOverRetainedCapacity the greatest retained capacity of the carry-over buffer,
+     *        in bytes
+     * @return a reference to this builder
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public JsonParserBuilder carryOverRetainedCapacity(long carryOverRetainedCapacity) {
+        if (carryOverRetainedCapacity < 0) {
+            throw new IllegalArgumentException(
+                    "negative capacity: " + carryOverRetainedCapacity);
+        }
+        this.carryOverRetainedCapacity = carryOverRetainedCapacity;
+        return this;
+    }
+
+    /**
+     * Returns the greatest allowed nesting depth of objects and arrays, unlimited
+     * ({@code Integer.MAX_VALUE}) by default.
+     *
+     * @return the greatest allowed nesting depth
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Sets the greatest allowed nesting depth of objects and arrays: the top-level object or
+     * array is at depth 1, the ones directly in it at depth 2, and so on. A deeper one makes
+     * the parser throw {@link DepthLimitExceededException}, so the parser state stack doesn't
+     * grow without bound.
+     *
+     * @param maxDepth the greatest allowed nesting depth
+     * @return a reference to this builder
+     * @throws IllegalArgumentException if the depth is not positive
+     */
+    public JsonParserBuilder maxDepth(int maxDepth) {
+        if (maxDepth <= 0)
+            throw new IllegalArgumentException("non-positive depth: " + maxDepth);
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Returns the greatest allowed length of a string or a number, unlimited
+     * ({@code Long.MAX_VALUE}) by default.
+     *
+     * @return the greatest allowed length of a string or a number, in bytes
+     */
+    public long maxTokenLength() {
+        return maxTokenLength;
+    }
+
+    /**
+     * Sets the greatest allowed length of a string (between the quotes, with escapes not
+     * decoded) or a number. A longer one makes the parser throw {@link TokenTooLongException}.
+     * If the token spans several portions of JSON, the parser throws as soon as the head to be
+     * kept in the carry-over buffer exceeds the limit, so the buffer doesn't grow without bound.
+     * With {@link JsonParserOption#ALLOW_COMMENTS}, the limit applies to a comment spanning
+     * several portions as well.
+     *
+     * @param maxTokenLength the greatest allowed length of a string or a number, in bytes
+     * @return a reference to this builder
+     * @throws IllegalArgumentException if the length is not positive
+     */
+    public JsonParserBuilder maxTokenLength(long maxTokenLength) {
+        if (maxTokenLength <= 0)
+            throw new IllegalArgumentException("non-positive length: " + maxTokenLength);
+        this.maxTokenLength = maxTokenLength;
+        return this;
+    }
+
+    /**
+     * Returns the greatest allowed size of a top-level value, unlimited ({@code Long.MAX_VALUE})
+     * by default.
+     *
+     * @return the greatest allowed size of a top-level value, in bytes
+     */
+    public long maxValueSize() {
+        return maxValueSize;
+    }
+
+    /**
+     * Sets the greatest allowed size of a top-level value, including the whitespace before it,
+     * counted over all the portions of JSON it spans. With
+     * {@link JsonParserTopLevelStrategy#ALLOW_MULTIPLE_VALUES} each value is limited separately.
+     * The size is checked after each token, and if it is exceeded, the parser throws
+     * {@link ValueTooLargeException}.
+     *
+     * @param maxValueSize the greatest allowed size of a top-level value, in bytes
+     * @return a reference to this builder
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    public JsonParserBuilder maxValueSize(long maxValueSize) {
+        if (maxValueSize <= 0)
+            throw new IllegalArgumentException("non-positive size: " + maxValueSize);
+        this.maxValueSize = maxValueSize;
+        return this;
+    }
+
+    /**
+     * Returns if the parser collects metrics, {@code false} by default.
+     *
+     * @return if the parser collects metrics
+     */
+    public boolean collectMetrics() {
+        return collectMetrics;
+    }
+
+    /**
+     * Sets if the parser should collect metrics: consumed bytes, tokens by kind, the greatest
+     * nesting depth, copies into the carry-over buffer, see {@link JsonParserMetrics}. The
+     * counters are plain fields, updated by the parsing thread without synchronization, and
+     * read with {@link JsonParser#metrics()}.
+     *
+     * @param collectMetrics if the parser should collect metrics
+     * @return a reference to this builder
+     */
+    public JsonParserBuilder collectMetrics(boolean collectMetrics) {
+        this.collectMetrics = collectMetrics;
+        return this;
+    }
+
+    /**
+     * Returns the handler time sampling period, {@code 0} (handlers are not timed) by default.
+     *
+     * @return the handler time sampling period
+     */
+    public int handlerTimeSampling() {
+        return handlerTimeSampling;
+    }
+
+    /**
+     * Sets how often the parser measures the time spent in handlers: {@code 1} to time each
+     * handler call, {@code n} to time each n-th call, {@code 0} not to time handlers. Each
+     * timed call costs two {@link System#nanoTime()} calls, and a timing parser calls its
+     * handlers through a decorator, so the period of at least a few dozen calls is advised
+     * in production. Requires {@link #collectMetrics(boolean) collecting metrics}.
+     *
+     * @param handlerTimeSampling the handler time sampling period
+     * @return a reference to this builder
+     * @throws IllegalArgumentException if the period is negative
+     * @see JsonParserMetrics#estimatedHandlerNanos()
+     */
+    public JsonParserBuilder handlerTimeSampling(int handlerTimeSampling) {
+        if (handlerTimeSampling < 0) {
+            throw new IllegalArgumentException(
+                    "negative sampling period: " + handlerTimeSampling);
+        }
+        this.handlerTimeSampling = handlerTimeSampling;
+        return this;
+    }
+
     /**
      * Convenient method to apply the adapter which implements several handler interfaces in one call.
      *
@@ -335,12 +649,17 @@ public final class JsonParserBuilder {
      * // ... the same job for the rest handler interfaces
      * }</pre>
      *
+     * <p>If the adapter is a {@link JsonHandler}, this call is equivalent to
+     * {@link #handler(JsonHandler)}.
+     *
      * @param a the adapter - an object, implementing some of concrete handler interfaces
      * @return a reference to this builder
      * @throws java.lang.IllegalArgumentException if the adapter doesn't implement any of concrete handler
      *                                            interfaces
      */
     public JsonParserBuilder applyAdapter(JsonHandlerBase a) {
+        if (a instanceof JsonHandler)
+            return handler((JsonHandler) a);
         boolean applied = false;
         if (a instanceof ObjectStartHandler) {
             objectStartHandler((ObjectStartHandler) a);
@@ -370,10 +689,22 @@ public final class JsonParserBuilder {
             stringValueHandler((StringValueHandler) a);
             applied = true;
         }
+        if (a instanceof RawStringValueHandler) {
+            rawStringValueHandler((RawStringValueHandler) a);
+            applied = true;
+        }
         if (a instanceof ObjectKeyHandler) {
             objectKeyHandler((ObjectKeyHandler) a);
             applied = true;
         }
+        if (a instanceof RawObjectKeyHandler) {
+            rawObjectKeyHandler((RawObjectKeyHandler) a);
+            applied = true;
+        }
+        if (a instanceof KnownKeyHandler) {
+            knownKeyHandler((KnownKeyHandler) a);
+            applied = true;
+        }
         if (a instanceof NumberHandler) {
             numberHandler((NumberHandler) a);
             applied = true;
@@ -395,6 +726,85 @@ public final class JsonParserBuilder {
         return this;
     }
 
+    /**
+     * Sets the callbacks, which the given handler overrides, as the parser's handlers, and
+     * removes all the other handlers and the reset hook. For example, if the handler overrides
+     * only {@link JsonHandler#onInteger(long)} and {@link JsonHandler#onObjectKey(CharSequence)},
+     * this call is equivalent to <pre>{@code
+     * builder.objectStartHandler(null).objectEndHandler(null) // ... null for all the rest
+     *         .integerHandler(handler).objectKeyHandler(handler);
+     * }</pre>
+     *
+     * <p>Thus the parser dispatches the tokens only to the overridden callbacks, each directly
+     * to the single handler class.
+     *
+     * @param handler the handler, overriding some of {@code JsonHandler} callbacks
+     * @return a reference to this builder
+     * @throws java.lang.IllegalStateException if the handler overrides conflicting callbacks,
+     *                                         e. g. {@link JsonHandler#onNumber(CharSequence)}
+     *                                         and {@link JsonHandler#onInteger(long)}
+     */
+    public JsonParserBuilder handler(JsonHandler handler) {
+        objectStartHandler = null;
+        objectEndHandler = null;
+        arrayStartHandler = null;
+        arrayEndHandler = null;
+        booleanHandler = null;
+        nullHandler = null;
+        stringValueHandler = null;
+        rawStringValueHandler = null;
+        objectKeyHandler = null;
+        rawObjectKeyHandler = null;
+        knownKeyHandler = null;
+        numberHandler = null;
+        integerHandler = null;
+        floatingHandler = null;
+        resetHook = null;
+        if (overrides(handler, "onObjectStart"))
+            objectStartHandler(handler);
+        if (overrides(handler, "onObjectEnd"))
+            objectEndHandler(handler);
+        if (overrides(handler, "onArrayStart"))
+            arrayStartHandler(handler);
+        if (overrides(handler, "onArrayEnd"))
+            arrayEndHandler(handler);
+        if (overrides(handler, "onBoolean", boolean.class))
+            booleanHandler(handler);
+        if (overrides(handler, "onNull"))
+            nullHandler(handler);
+        if (overrides(handler, "onStringValue", CharSequence.class))
+            stringValueHandler(handler);
+        if (overrides(handler, "onRawStringValue",
+                BytesStore.class, long.class, long.class, boolean.class))
+            rawStringValueHandler(handler);
+        if (overrides(handler, "onObjectKey", CharSequence.class))
+            objectKeyHandler(handler);
+        if (overrides(handler, "onRawObjectKey",
+                BytesStore.class, long.class, long.class, boolean.class))
+            rawObjectKeyHandler(handler);
+        if (overrides(handler, "onKnownKey", int.class) ||
+                overrides(handler, "onUnknownKey", CharSequence.class))
+            knownKeyHandler(handler);
+        if (overrides(handler, "onNumber", CharSequence.class))
+            numberHandler(handler);
+        if (overrides(handler, "onInteger", long.class))
+            integerHandler(handler);
+        if (overrides(handler, "onFloating", double.class))
+            floatingHandler(handler);
+        if (overrides(handler, "onReset"))
+            resetHook(handler);
+        return this;
+    }
+
+    private static boolean overrides(JsonHandler handler, String name, Class<?>... params) {
+        try {
+            return handler.getClass().getMethod(name, params).getDeclaringClass() !=
+                    JsonHandler.class;
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     /**
      * Returns the parser's object start handler, or {@code null} if the handler is not set.
      *
@@ -543,12 +953,43 @@ public final class JsonParserBuilder {
      * @param stringValueHandler a new string value handler. {@code null} means there shouldn't be a string
      *                           value handler in the built parser.
      * @return a reference to this builder
+     * @throws java.lang.IllegalStateException if {@link #rawStringValueHandler()} is already set
      */
     public JsonParserBuilder stringValueHandler(@Nullable StringValueHandler stringValueHandler) {
+        checkNoConflict(stringValueHandler, "string value", rawStringValueHandler,
+                "raw string value");
         this.stringValueHandler = stringValueHandler;
         return this;
     }
 
+    /**
+     * Returns the parser's raw string value handler, or {@code null} if the handler is not set.
+     *
+     * @return the parser's raw string value handler, or {@code null} if the handler is not set
+     */
+    @Nullable
+    public RawStringValueHandler rawStringValueHandler() {
+        return rawStringValueHandler;
+    }
+
+    /**
+     * Sets the parser's raw string value handler, or removes it if {@code null} is passed.
+     * The raw handler receives the undecoded UTF-8 bytes of string values right from the input,
+     * without copying them and without moving any cursors.
+     *
+     * @param rawStringValueHandler a new raw string value handler. {@code null} means there
+     *                              shouldn't be a raw string value handler in the built parser.
+     * @return a reference to this builder
+     * @throws java.lang.IllegalStateException if {@link #stringValueHandler()} is already set
+     */
+    public JsonParserBuilder rawStringValueHandler(
+            @Nullable RawStringValueHandler rawStringValueHandler) {
+        checkNoConflict(stringValueHandler, "string value", rawStringValueHandler,
+                "raw string value");
+        this.rawStringValueHandler = rawStringValueHandler;
+        return this;
+    }
+
     /**
      * Returns the parser's object key handler, or {@code null} if the handler is not set.
      *
@@ -565,12 +1006,156 @@ public final class JsonParserBuilder {
      * @param objectKeyHandler a new object key handler. {@code null} means there shouldn't be an object key
      *                         handler in the built parser.
      * @return a reference to this builder
+     * @throws java.lang.IllegalStateException if {@link #rawObjectKeyHandler()} is already set
      */
     public JsonParserBuilder objectKeyHandler(@Nullable ObjectKeyHandler objectKeyHandler) {
+        checkNoConflict(objectKeyHandler, "object key", rawObjectKeyHandler, "raw object key");
         this.objectKeyHandler = objectKeyHandler;
         return this;
     }
 
+    /**
+     * Returns the parser's raw object key handler, or {@code null} if the handler is not set.
+     *
+     * @return the parser's raw object key handler, or {@code null} if the handler is not set
+     */
+    @Nullable
+    public RawObjectKeyHandler rawObjectKeyHandler() {
+        return rawObjectKeyHandler;
+    }
+
+    /**
+     * Sets the parser's raw object key handler, or removes it if {@code null} is passed.
+     * The raw handler receives the undecoded UTF-8 bytes of object keys right from the input,
+     * without copying them and without moving any cursors.
+     *
+     * @param rawObjectKeyHandler a new raw object key handler. {@code null} means there
+     *                            shouldn't be a raw object key handler in the built parser.
+     * @return a reference to this builder
+     * @throws java.lang.IllegalStateException if {@link #objectKeyHandler()} is already set
+     */
+    public JsonParserBuilder rawObjectKeyHandler(
+            @Nullable RawObjectKeyHandler rawObjectKeyHandler) {
+        checkNoConflict(objectKeyHandler, "object key", rawObjectKeyHandler, "raw object key");
+        this.rawObjectKeyHandler = rawObjectKeyHandler;
+        return this;
+    }
+
+    /**
+     * Returns the parser's known key handler, or {@code null} if the handler is not set.
+     *
+     * @return the parser's known key handler, or {@code null} if the handler is not set
+     */
+    @Nullable
+    public KnownKeyHandler knownKeyHandler() {
+        return knownKeyHandler;
+    }
+
+    /**
+     * Sets the parser's known key handler, or removes it if {@code null} is passed. If set,
+     * object keys are looked up in the {@link #knownKeys(List) known keys} and passed to this
+     * handler as integer ids, instead of the {@link #objectKeyHandler(ObjectKeyHandler) object key
+     * handler} or the {@link #rawObjectKeyHandler(RawObjectKeyHandler) raw object key handler}.
+     *
+     * @param knownKeyHandler a new known key handler. {@code null} means there shouldn't be a known
+     *                        key handler in the built parser.
+     * @return a reference to this builder
+     */
+    public JsonParserBuilder knownKeyHandler(@Nullable KnownKeyHandler knownKeyHandler) {
+        this.knownKeyHandler = knownKeyHandler;
+        return this;
+    }
+
+    /**
+     * Returns the expected object keys as read-only list. Initially the list is empty.
+     *
+     * @return the expected object keys as read-only list
+     */
+    public List<String> knownKeys() {
+        return knownKeys;
+    }
+
+    /**
+     * Sets the expected object keys. The previous keys, if any, are discarded. The index of a key
+     * in the list is the id passed to {@link KnownKeyHandler#onKnownKey(int)}.
+     *
+     * <p>The keys are compiled into a perfect hash table, and the hash of an object key is computed
+     * while the key is lexed, so the known key handler gets the id without comparing the key with
+     * each of the expected keys.
+     *
+     * @param knownKeys the expected object keys, without duplicates
+     * @return a reference to this builder
+     * @throws IllegalArgumentException if there are duplicate keys
+     */
+    public JsonParserBuilder knownKeys(List<String> knownKeys) {
+        if (new HashSet<>(knownKeys).size() != knownKeys.size())
+            throw new IllegalArgumentException("duplicate keys: " + knownKeys);
+        this.knownKeys = Collections.unmodifiableList(new ArrayList<>(knownKeys));
+        return this;
+    }
+
+    /**
+     * Sets the expected object keys. The previous keys, if any, are discarded.
+     *
+     * @param knownKeys the expected object keys, without duplicates
+     * @return a reference to this builder
+     * @throws IllegalArgumentException if there are duplicate keys
+     * @see #knownKeys(List)
+     */
+    public JsonParserBuilder knownKeys(String... knownKeys) {
+        return knownKeys(Arrays.asList(knownKeys));
+    }
+
+    /**
+     * Returns the projected JSON paths as read-only list. Initially the list is empty, i. e.
+     * the whole JSON is reported.
+     *
+     * @return the projected JSON paths as read-only list
+     */
+    public List<String> projection() {
+        return projection;
+    }
+
+    /**
+     * Sets the projected JSON paths, e. g. {@code $.data.bids}, {@code $.ts} or
+     * {@code $.orders[*].px}: {@code $} denotes the root value, {@code .name} an object field
+     * and {@code [*]} any array element. The previous paths, if any, are discarded, an empty list
+     * turns the projection off.
+     *
+     * <p>If the projection is on, the parser reports only the values at the given paths, with
+     * everything inside them, and the starts and ends of the objects and arrays enclosing them,
+     * with the keys leading to them. All other values are skipped with a bracket and quote
+     * balancing scan, without lexing, escape decoding or number conversion. Skipped values are not
+     * validated. A key on a path is reported before the value is checked, so it is reported even
+     * if the value turns out to be a string, a number or a literal, while a container is expected
+     * at the path.
+     *
+     * <p>The projection couldn't be used with {@link JsonParserOption#ALLOW_COMMENTS} option.
+     *
+     * @param paths the projected JSON paths
+     * @return a reference to this builder
+     * @throws IllegalArgumentException if some path is malformed
+     */
+    public JsonParserBuilder projection(List<String> paths) {
+        for (String path : paths) {
+            Projection.parse(path);
+        }
+        this.projection = Collections.unmodifiableList(new ArrayList<>(paths));
+        return this;
+    }
+
+    /**
+     * Sets the projected JSON paths. The previous paths, if any, are discarded.
+     *
+     * @param paths the projected JSON paths
+     * @return a reference to this builder
+     * @throws IllegalArgumentException if some path is malformed
+     * @see #projection(List)
+     */
+    public JsonParserBuilder projection(String... paths) {
+        return projection(Arrays.asList(paths));
+    }
+
     /**
      * Returns the parser's number value handler, or {@code null} if the handler is not set.
      *
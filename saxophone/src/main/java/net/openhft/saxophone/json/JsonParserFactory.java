@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.saxophone.json;
+
+import net.openhft.saxophone.json.handler.JsonHandlerBase;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * Creates {@code JsonParser}s of the same configuration for different handlers, built by
+ * {@link JsonParserBuilder#buildFactory()}. The factory is immutable and thread-safe:
+ * {@link JsonParserBuilder#knownKeys(java.util.List) known keys} and
+ * {@link JsonParserBuilder#projection(java.util.List) projection} are compiled once, when
+ * the factory is built, and shared by all its parsers.
+ *
+ * <p>Parsers themselves are not thread-safe. To reuse them between threads, e. g. one per
+ * request of a server, see {@link #newPool(int, Supplier, boolean)}.
+ */
+public final class JsonParserFactory {
+
+    /** never modified, has no handlers */
+    private final JsonParserBuilder template;
+    private final KeyDictionary keyDictionary;
+    @Nullable
+    private final Projection projection;
+
+    JsonParserFactory(JsonParserBuilder template) {
+        this.template = template;
+        keyDictionary = new KeyDictionary(template.knownKeys());
+        projection = template.projection().isEmpty() ? null :
+                new Projection(template.projection());
+    }
+
+    /**
+     * Returns a new parser with the configuration of this factory and the given handler,
+     * applied as by {@link JsonParserBuilder#applyAdapter(JsonHandlerBase)}.
+     *
+     * @param handler the handler of the new parser
+     * @return a new {@code JsonParser}
+     * @throws IllegalArgumentException if the handler doesn't implement any of concrete handler
+     *                                  interfaces
+     * @throws IllegalStateException if the handler has no JSON token callbacks
+     */
+    public JsonParser newParser(JsonHandlerBase handler) {
+        JsonParserBuilder builder = new JsonParserBuilder(template).applyAdapter(handler);
+        builder.checkAnyTokenHandlerNonNull();
+        return builder.build(keyDictionary, projection);
+    }
+
+    /**
+     * Returns a new, initially empty pool of parsers created by this factory, each with its
+     * own handler.
+     *
+     * @param capacity the maximum number of idle parsers kept by the pool
+     * @param handlers supplies the handler of each new parser of the pool
+     * @param threadAffinity whether a thread should preferably get back the parser it released
+     *                       last, otherwise all threads prefer the same parsers
+     * @param <H> the type of the handlers
+     * @return a new {@code JsonParserPool}
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public <H extends JsonHandlerBase> JsonParserPool<H> newPool(
+            int capacity, Supplier<? extends H> handlers, boolean threadAffinity) {
+        return new JsonParserPool<>(this, capacity, handlers, threadAffinity);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.saxophone.json;
+
+/**
+ * Counters of a {@code JsonParser}, built with {@link JsonParserBuilder#collectMetrics(boolean)
+ * collectMetrics(true)}, to see which feeds are worth optimizing.
+ *
+ * <p>The parser keeps its counters in plain fields of an instance of this class, updated
+ * without any synchronization by the parsing thread. {@link JsonParser#metrics()} copies them
+ * into a new instance, which is an immutable snapshot: it could be called from a metrics
+ * thread, but the snapshot could then miss the latest updates, and on 32-bit platforms
+ * a {@code long} counter could even be torn. The counters are never cleared, including on
+ * parser {@link JsonParser#reset() reset}, so the rates are computed from the difference of
+ * two snapshots.
+ *
+ * <p>Tokens of the values skipped by a {@link JsonParserBuilder#projection(java.util.List)
+ * projection} are not counted, their bytes are.
+ */
+public final class JsonParserMetrics {
+
+    final long[] tokens = new long[TokenType.values().length];
+    long keys;
+    long bytesConsumed;
+    int maxDepth;
+    long carryOverCopies;
+    long carryOverBytes;
+    /** 0 if handlers are not timed, otherwise each n-th handler call is timed */
+    final int handlerTimeSampling;
+    private int callsUntilSample;
+    long sampledHandlerCalls;
+    long sampledHandlerNanos;
+
+    JsonParserMetrics(int handlerTimeSampling) {
+        this.handlerTimeSampling = handlerTimeSampling;
+        this.callsUntilSample = 1;
+    }
+
+    /** copies the counters of the parser and its lexer */
+    JsonParserMetrics snapshot(Lexer lexer) {
+        JsonParserMetrics s = new JsonParserMetrics(handlerTimeSampling);
+        System.arraycopy(tokens, 0, s.tokens, 0, tokens.length);
+        s.keys = keys;
+        s.bytesConsumed = bytesConsumed;
+        s.maxDepth = maxDepth;
+        s.carryOverCopies = lexer.carryOverCopies;
+        s.carryOverBytes = lexer.carryOverBytes;
+        s.sampledHandlerCalls = sampledHandlerCalls;
+        s.sampledHandlerNanos = sampledHandlerNanos;
+        return s;
+    }
+
+    void onDepth(int depth) {
+        if (depth > maxDepth)
+            maxDepth = depth;
+    }
+
+    /** Returns {@code true} if the next handler call should be timed. */
+    boolean sampleHandlerCall() {
+        if (--callsUntilSample > 0)
+            return false;
+        callsUntilSample = handlerTimeSampling;
+        return true;
+    }
+
+    void onHandlerTime(long nanos) {
+        sampledHandlerCalls++;
+        sampledHandlerNanos += nanos;
+    }
+
+    /**
+     * Returns the number of bytes the parser consumed from the given portions of JSON. Bytes of
+     * a token spanning several portions are counted as they are consumed, possibly before
+     * the token is complete.
+     *
+     * @return the number of consumed bytes
+     */
+    public long bytesConsumed() {
+        return bytesConsumed;
+    }
+
+    /**
+     * Returns the number of the given tokens the parser lexed.
+     *
+     * @param token the token kind
+     * @return the number of tokens of the given kind
+     * @throws IllegalArgumentException if the token is {@link JsonToken#NEED_MORE_INPUT} or
+     *         {@link JsonToken#END_OF_INPUT}, which are not in JSON text
+     */
+    public long tokens(JsonToken token) {
+        switch (token) {
+            case START_OBJECT: return tokens[TokenType.LEFT_BRACKET.ordinal()];
+            case END_OBJECT: return tokens[TokenType.RIGHT_BRACKET.ordinal()];
+            case START_ARRAY: return tokens[TokenType.LEFT_BRACE.ordinal()];
+            case END_ARRAY: return tokens[TokenType.RIGHT_BRACE.ordinal()];
+            case KEY: return keys;
+            case STRING: return tokens[TokenType.STRING.ordinal()] +
+                    tokens[TokenType.STRING_WITH_ESCAPES.ordinal()] - keys;
+            case INTEGER: return tokens[TokenType.INTEGER.ordinal()];
+            case FLOATING: return tokens[TokenType.DOUBLE.ordinal()];
+            case BOOLEAN: return tokens[TokenType.BOOL.ordinal()];
+            case NULL: return tokens[TokenType.NULL.ordinal()];
+            default:
+                throw new IllegalArgumentException(token + " is not a token of JSON text");
+        }
+    }
+
+    /**
+     * Returns the number of strings, values and keys, which contain escapes and so are
+     * decoded char by char.
+     *
+     * @return the number of strings with escapes
+     */
+    public long escapedStrings() {
+        return tokens[TokenType.STRING_WITH_ESCAPES.ordinal()];
+    }
+
+    /**
+     * Returns the greatest nesting depth of objects and arrays the parser reached, {@code 0} if
+     * only scalar top-level values were parsed.
+     *
+     * @return the greatest nesting depth
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns how many times a part of a token spanning several portions of JSON was copied into
+     * the carry-over buffer. Frequent copies suggest the portions are too small.
+     *
+     * @return the number of copies into the carry-over buffer
+     */
+    public long carryOverCopies() {
+        return carryOverCopies;
+    }
+
+    /**
+     * Returns the number of bytes copied into the carry-over buffer.
+     *
+     * @return the number of bytes copied into the carry-over buffer
+     * @see #carryOverCopies()
+     */
+    public long carryOverBytes() {
+        return carryOverBytes;
+    }
+
+    /**
+     * Returns the handler time sampling period, see
+     * {@link JsonParserBuilder#handlerTimeSampling(int)}, {@code 0} if handlers are not timed.
+     *
+     * @return the handler time sampling period
+     */
+    public int handlerTimeSampling() {
+        return handlerTimeSampling;
+    }
+
+    /**
+     * Returns the number of timed handler calls.
+     *
+     * @return the number of timed handler calls
+     */
+    public long sampledHandlerCalls() {
+        return sampledHandlerCalls;
+    }
+
+    /**
+     * Returns the time spent in the timed handler calls.
+     *
+     * @return the time spent in the timed handler calls, in nanoseconds
+     */
+    public long sampledHandlerNanos() {
+        return sampledHandlerNanos;
+    }
+
+    /**
+     * Returns the estimate of the time spent in all handler calls: the time of the timed calls,
+     * multiplied by the sampling period.
+     *
+     * @return the estimate of the time spent in handlers, in nanoseconds
+     */
+    public long estimatedHandlerNanos() {
+        return sampledHandlerNanos * handlerTimeSampling;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("JsonParserMetrics{bytesConsumed=")
+                .append(bytesConsumed);
+        for (JsonToken token : JsonToken.values()) {
+            if (token == JsonToken.NEED_MORE_INPUT || token == JsonToken.END_OF_INPUT)
+                continue;
+            sb.append(", ").append(token).append('=').append(tokens(token));
+        }
+        sb.append(", escapedStrings=").append(escapedStrings())
+                .append(", maxDepth=").append(maxDepth)
+                .append(", carryOverCopies=").append(carryOverCopies)
+                .append(", carryOverBytes=").append(carryOverBytes);
+        if (handlerTimeSampling > 0) {
+            sb.append(", handlerTimeSampling=").append(handlerTimeSampling)
+                    .append(", sampledHandlerCalls=").append(sampledHandlerCalls)
+                    .append(", sampledHandlerNanos=").append(sampledHandlerNanos);
+        }
+        return sb.append('}').toString();
+    }
+}
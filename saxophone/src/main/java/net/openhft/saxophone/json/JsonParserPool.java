@@ -0,0 +1,208 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.saxophone.json;
+
+import net.openhft.saxophone.json.handler.JsonHandlerBase;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, lock-free pool of parsers of a {@link JsonParserFactory}, each bound to its own
+ * handler, so that once the pool is warmed up, parsing on any thread creates no parser
+ * garbage: <pre>{@code
+ * JsonParserPool<OrderHandler> pool = JsonParser.builder()
+ *         .knownKeys("id", "price", "quantity")
+ *         .buildFactory()
+ *         .newPool(64, OrderHandler::new, true);
+ * ...
+ * try (JsonParserPool.Lease<OrderHandler> lease = pool.acquire()) {
+ *     lease.parser().parse(request);
+ *     lease.parser().finish();
+ *     respond(lease.handler().order());
+ * }
+ * }</pre>
+ *
+ * <p>Parsers are {@link JsonParser#reset() reset} when they are released, so a handler
+ * implementing {@link net.openhft.saxophone.json.handler.ResetHook ResetHook} clears its
+ * per-request state then. If all the idle parsers are taken, {@link #acquire()} creates
+ * a new one; if the pool is full, a released parser is {@link JsonParser#close() closed}
+ * and dropped.
+ *
+ * @param <H> the type of the handlers
+ * @see JsonParserFactory#newPool(int, Supplier, boolean)
+ */
+public final class JsonParserPool<H extends JsonHandlerBase> implements AutoCloseable {
+
+    private final JsonParserFactory factory;
+    private final Supplier<? extends H> handlers;
+    private final boolean threadAffinity;
+    /** idle leases, null in empty slots */
+    private final AtomicReferenceArray<Lease<H>> slots;
+    private final AtomicLong created = new AtomicLong();
+    private volatile boolean closed = false;
+
+    JsonParserPool(JsonParserFactory factory, int capacity, Supplier<? extends H> handlers,
+                   boolean threadAffinity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("non-positive capacity: " + capacity);
+        this.factory = factory;
+        this.handlers = handlers;
+        this.threadAffinity = threadAffinity;
+        slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Takes an idle parser from the pool, or creates a new one, if there are no idle parsers.
+     * The parser is in "just like after construction" state. The lease should be {@link
+     * Lease#close() closed} when the parser is no longer used, to return it to the pool.
+     *
+     * @return the lease of a parser with its handler
+     */
+    public Lease<H> acquire() {
+        int capacity = slots.length();
+        int start = firstSlot(capacity);
+        for (int i = 0, index = start; i < capacity; i++, index = next(index, capacity)) {
+            Lease<H> lease = slots.get(index);
+            if (lease != null && slots.compareAndSet(index, lease, null)) {
+                lease.leased = true;
+                return lease;
+            }
+        }
+        H handler = handlers.get();
+        Lease<H> lease = new Lease<>(this, factory.newParser(handler), handler);
+        created.incrementAndGet();
+        return lease;
+    }
+
+    void release(Lease<H> lease) {
+        lease.parser.reset();
+        if (!closed) {
+            int capacity = slots.length();
+            int start = firstSlot(capacity);
+            for (int i = 0, index = start; i < capacity; i++, index = next(index, capacity)) {
+                if (slots.get(index) == null && slots.compareAndSet(index, null, lease)) {
+                    // close() could have swept the slots before the lease was put
+                    if (closed) {
+                        Lease<H> idle = slots.getAndSet(index, null);
+                        if (idle != null)
+                            idle.parser.close();
+                    }
+                    return;
+                }
+            }
+        }
+        lease.parser.close();
+    }
+
+    private int firstSlot(int capacity) {
+        return threadAffinity ? (int) (Thread.currentThread().getId() % capacity) : 0;
+    }
+
+    private static int next(int index, int capacity) {
+        return ++index == capacity ? 0 : index;
+    }
+
+    /**
+     * Returns the number of parsers created by this pool so far. If it keeps growing under
+     * steady load, the pool capacity is less than the number of concurrently leased parsers.
+     *
+     * @return the number of parsers created by this pool
+     */
+    public long created() {
+        return created.get();
+    }
+
+    /** the number of idle parsers in the pool */
+    int idle() {
+        int idle = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null)
+                idle++;
+        }
+        return idle;
+    }
+
+    /**
+     * Closes the idle parsers and stops pooling: the parsers leased at the moment are closed
+     * when released. Further {@link #acquire()} calls create new parsers.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (int i = 0; i < slots.length(); i++) {
+            Lease<H> lease = slots.getAndSet(i, null);
+            if (lease != null)
+                lease.parser.close();
+        }
+    }
+
+    /**
+     * A parser with its handler, taken from a {@link JsonParserPool} by a single thread.
+     *
+     * @param <H> the type of the handler
+     */
+    public static final class Lease<H extends JsonHandlerBase> implements AutoCloseable {
+        private final JsonParserPool<H> pool;
+        private final JsonParser parser;
+        private final H handler;
+        /** accessed only by the thread holding the lease, published via the pool slots */
+        boolean leased = true;
+
+        Lease(JsonParserPool<H> pool, JsonParser parser, H handler) {
+            this.pool = pool;
+            this.parser = parser;
+            this.handler = handler;
+        }
+
+        /**
+         * Returns the leased parser.
+         *
+         * @return the leased parser
+         */
+        public JsonParser parser() {
+            return parser;
+        }
+
+        /**
+         * Returns the handler the leased parser is built with.
+         *
+         * @return the handler of the leased parser
+         */
+        public H handler() {
+            return handler;
+        }
+
+        /**
+         * Resets the parser and returns it to the pool. Neither the parser nor the handler
+         * should be used after this call.
+         *
+         * @throws IllegalStateException if the lease is already closed
+         */
+        @Override
+        public void close() {
+            if (!leased)
+                throw new IllegalStateException("the lease is already closed");
+            leased = false;
+            pool.release(this);
+        }
+    }
+}
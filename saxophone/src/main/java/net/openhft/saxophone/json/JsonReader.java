@@ -0,0 +1,592 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.ParseException;
+
+import java.io.Closeable;
+import java.util.EnumSet;
+
+import static net.openhft.saxophone.json.JsonParserOption.ALLOW_COMMENTS;
+import static net.openhft.saxophone.json.JsonParserOption.ALLOW_PARTIAL_VALUES;
+import static net.openhft.saxophone.json.JsonParserOption.DONT_VALIDATE_STRINGS;
+import static net.openhft.saxophone.json.JsonParserTopLevelStrategy.ALLOW_MULTIPLE_VALUES;
+import static net.openhft.saxophone.json.JsonParserTopLevelStrategy.ALLOW_TRAILING_GARBAGE;
+import static net.openhft.saxophone.json.ParserState.*;
+
+/**
+ * Pull ("StAX-style") JSON reader, for recursive-descent binders which keep their state on
+ * the call stack rather than in handler fields: <pre>{@code
+ * JsonReader reader = JsonParser.builder().buildReader(); // reusable
+ * reader.feed(json);
+ * reader.endOfInput();
+ * reader.nextToken(); // START_OBJECT
+ * while (reader.nextToken() == JsonToken.KEY) {
+ *     if (reader.keyEquals("px")) {
+ *         reader.nextToken();
+ *         px = reader.doubleValue();
+ *     } else {
+ *         reader.nextToken();
+ *         reader.skipChildren();
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>The reader shares the lexer and the state machine with {@link JsonParser}, so it accepts
+ * exactly the same JSON with the same {@link JsonParserBuilder#options() options} and
+ * {@link JsonParserBuilder#topLevelStrategy() top-level strategy}. It is incremental: if the
+ * input portion given to {@link #feed(Bytes)} is read up to the end, {@link #nextToken()}
+ * returns {@link JsonToken#NEED_MORE_INPUT}, and reading continues from the same point after
+ * the next portion is fed, so the reader could be used on non-blocking sockets. Tokens spanning
+ * portions are carried over, like by {@code JsonParser}. As a number at the end of a portion
+ * might continue in the next one, the last number is returned only after the next portion or
+ * {@link #endOfInput()}.
+ *
+ * <p>Values are available through {@link #longValue()}, {@link #doubleValue()},
+ * {@link #booleanValue()} and {@link #stringValue()} until the next {@code nextToken()} or
+ * {@code feed()} call. Reading doesn't allocate. {@code JsonReader} is not thread-safe.
+ */
+public final class JsonReader implements Closeable {
+
+    private final Lexer lexer;
+    private final ParserState.Stack stateStack = new Stack();
+    private final boolean allowComments;
+    private final boolean allowPartialValues;
+    private final JsonParserTopLevelStrategy topLevelStrategy;
+    private final int maxDepth;
+    private final long maxValueSize;
+    private final ValueSkipper skipper = new ValueSkipper();
+    private final Utf8CharSequence valueView = new Utf8CharSequence();
+    private final Utf8CharSequence keyView = new Utf8CharSequence();
+    /** copy of the last key, which stays valid while its value is read */
+    private Bytes keyBytes;
+    private boolean keyEscaped;
+    private boolean keyRead;
+    private Bytes input;
+    private boolean ended;
+    private Bytes finishSpace;
+    private JsonToken token;
+    private TokenType lexerToken;
+    /**
+     * if skipping children token by token, as comments could contain brackets, the depth of
+     * the skipped container, otherwise 0
+     */
+    private int skipDepth;
+    /** bytes of the current top-level value read so far, over all the portions it spans */
+    private long valueSize;
+
+    JsonReader(EnumSet<JsonParserOption> options, JsonParserTopLevelStrategy topLevelStrategy,
+               long carryOverRetainedCapacity, int maxDepth, long maxTokenLength,
+               long maxValueSize) {
+        allowComments = options.contains(ALLOW_COMMENTS);
+        allowPartialValues = options.contains(ALLOW_PARTIAL_VALUES);
+        this.topLevelStrategy = topLevelStrategy;
+        this.maxDepth = maxDepth;
+        this.maxValueSize = maxValueSize;
+        lexer = new Lexer(allowComments, !options.contains(DONT_VALIDATE_STRINGS),
+                carryOverRetainedCapacity);
+        lexer.maxTokenLength = maxTokenLength;
+        reset();
+    }
+
+    /**
+     * Resets the reader to read a new input from the start.
+     */
+    public void reset() {
+        lexer.reset();
+        stateStack.clear();
+        stateStack.push(START);
+        skipper.reset();
+        skipDepth = 0;
+        valueSize = 0;
+        input = null;
+        ended = false;
+        token = null;
+        lexerToken = null;
+        keyRead = false;
+        valueView.clear();
+        keyView.clear();
+    }
+
+    /**
+     * Resets the reader (see {@link #reset()}) and releases the off-heap memory it holds.
+     * The reader is still usable after this call, the memory is allocated again on demand.
+     */
+    @Override
+    public void close() {
+        lexer.close();
+        if (keyBytes != null) {
+            keyBytes.release();
+            keyBytes = null;
+        }
+        reset();
+    }
+
+    /**
+     * Gives the next portion of JSON to read: from the {@link Bytes#readPosition() read
+     * position} to the {@link Bytes#readLimit() read limit} of the given {@code Bytes}, which
+     * might be the same {@code Bytes} as the previous portion, with new content. The read
+     * position is moved as tokens are read.
+     *
+     * @param json the next portion of JSON
+     * @return a reference to this reader
+     * @throws IllegalStateException if {@link #endOfInput()} is already called
+     */
+    public JsonReader feed(Bytes json) {
+        if (ended)
+            throw new IllegalStateException("end of input is already reached, reset the reader");
+        input = json;
+        return this;
+    }
+
+    /**
+     * Signals that there is no more input after the last {@link #feed(Bytes) fed} portion.
+     * After the remaining tokens {@link #nextToken()} returns {@link JsonToken#END_OF_INPUT},
+     * or throws {@code ParseException}, if the input is not a complete JSON value and
+     * {@link JsonParserOption#ALLOW_PARTIAL_VALUES} is not set.
+     *
+     * @return a reference to this reader
+     */
+    public JsonReader endOfInput() {
+        ended = true;
+        return this;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the next token, {@link JsonToken#NEED_MORE_INPUT} if more input should be fed,
+     *         or {@link JsonToken#END_OF_INPUT}
+     * @throws ParseException if the JSON is malformed
+     */
+    public JsonToken nextToken() {
+        valueView.clear();
+        if (skipper.active()) {
+            Bytes jsonText = input();
+            long start = jsonText.readPosition();
+            boolean skipped = skipper.skip(jsonText);
+            countValueBytes(jsonText, start);
+            if (!skipped) {
+                if (!ended)
+                    return token = JsonToken.NEED_MORE_INPUT;
+                if (allowPartialValues)
+                    return token = JsonToken.END_OF_INPUT;
+                throw parseError("premature EOF");
+            }
+            if (skipper.missingValue())
+                throw parseError("unallowed token at this point in JSON text");
+        } else if (skipDepth > 0) {
+            JsonToken t;
+            do {
+                t = readToken();
+                if (t == JsonToken.NEED_MORE_INPUT || t == JsonToken.END_OF_INPUT)
+                    return token = t;
+            } while (stateStack.size() >= skipDepth);
+            skipDepth = 0;
+            return token = t;
+        }
+        return token = readToken();
+    }
+
+    /**
+     * If the current token is {@link JsonToken#START_OBJECT} or {@link JsonToken#START_ARRAY},
+     * skips all the tokens of the container up to its end token, and returns it. The skip
+     * balances brackets and quotes, without lexing, converting and validating the values
+     * inside. Otherwise does nothing and returns the current token.
+     *
+     * <p>If the skip reaches the end of the fed input, returns
+     * {@link JsonToken#NEED_MORE_INPUT}, and the next {@link #nextToken()} call after feeding
+     * more input continues the skip and returns the end token of the container.
+     *
+     * @return the end token of the skipped container, {@code NEED_MORE_INPUT}, or the current
+     *         token, if it is not a container start
+     * @throws ParseException if the JSON is malformed
+     */
+    public JsonToken skipChildren() {
+        if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY)
+            return token;
+        if (allowComments) {
+            // comments could contain unbalanced brackets and quotes
+            skipDepth = stateStack.size();
+        } else {
+            skipper.startRest();
+        }
+        return nextToken();
+    }
+
+    /**
+     * Returns the last token returned by {@link #nextToken()} or {@link #skipChildren()}, or
+     * {@code null} if no token is read yet.
+     *
+     * @return the current token
+     */
+    public JsonToken currentToken() {
+        return token;
+    }
+
+    /**
+     * Returns the nesting depth of the current token: 0 for top-level values, 1 for the keys
+     * and the values of a top-level object or array, and so on. Start and end tokens of
+     * a container have the depth of the container.
+     *
+     * @return the nesting depth of the current token
+     */
+    public int depth() {
+        int depth = stateStack.size() - 1;
+        return token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY ?
+                depth - 1 : depth;
+    }
+
+    /**
+     * Returns the last read object key, valid while the value after it is read: the view
+     * stays the same until the next {@link JsonToken#KEY} token.
+     *
+     * @return the last read object key
+     * @throws IllegalStateException if no key is read yet
+     */
+    public CharSequence currentKey() {
+        return key();
+    }
+
+    /**
+     * Returns {@code true} if the last read object key has the same chars as the given one,
+     * without creating a {@code String}.
+     *
+     * @param key the key to compare with
+     * @return if the last read object key is equal to the given one
+     * @throws IllegalStateException if no key is read yet
+     */
+    public boolean keyEquals(CharSequence key) {
+        return key().contentEquals(key);
+    }
+
+    private Utf8CharSequence key() {
+        if (!keyRead)
+            throw new IllegalStateException("no key is read yet");
+        long length = keyBytes.readRemaining();
+        return keyEscaped ? keyView.setEscaped(keyBytes, 0, length) :
+                keyView.set(keyBytes, 0, length);
+    }
+
+    /**
+     * Returns the value of the current {@link JsonToken#STRING} token. The returned {@code
+     * CharSequence} is a view, valid until the next {@link #nextToken()} or
+     * {@link #feed(Bytes)} call.
+     *
+     * @return the string value
+     * @throws IllegalStateException if the current token is not a string
+     */
+    public CharSequence stringValue() {
+        checkToken(JsonToken.STRING);
+        return lexerToken == TokenType.STRING_WITH_ESCAPES ?
+                valueView.setEscaped(lexer.outBuf, lexer.outPos, lexer.outLen) :
+                valueView.set(lexer.outBuf, lexer.outPos, lexer.outLen);
+    }
+
+    /**
+     * Returns the value of the current {@link JsonToken#INTEGER} token.
+     *
+     * @return the integer value
+     * @throws IllegalStateException if the current token is not an integer
+     * @throws NumberFormatException if the value is out of {@code long} range
+     */
+    public long longValue() {
+        checkToken(JsonToken.INTEGER);
+        return lexer.outLongValue();
+    }
+
+    /**
+     * Returns the value of the current {@link JsonToken#FLOATING} or {@link JsonToken#INTEGER}
+     * token, correctly rounded to {@code double}.
+     *
+     * @return the number value
+     * @throws IllegalStateException if the current token is not a number
+     */
+    public double doubleValue() {
+        if (token != JsonToken.FLOATING)
+            checkToken(JsonToken.INTEGER);
+        return DoubleParser.toDouble(lexer.outNegative, lexer.outMantissa, lexer.outExponent,
+                lexer.outTruncated, lexer.outBuf, lexer.outPos, lexer.outLen);
+    }
+
+    /**
+     * Returns the value of the current {@link JsonToken#BOOLEAN} token.
+     *
+     * @return the boolean value
+     * @throws IllegalStateException if the current token is not a boolean
+     */
+    public boolean booleanValue() {
+        checkToken(JsonToken.BOOLEAN);
+        return lexer.outBuf.readUnsignedByte(lexer.outPos) == 't';
+    }
+
+    private void checkToken(JsonToken expected) {
+        if (token != expected)
+            throw new IllegalStateException("current token is " + token + ", not " + expected);
+    }
+
+    private Bytes input() {
+        if (input == null) {
+            // nothing is fed yet, read as an empty portion
+            input = finishSpace();
+            input.readPosition(1);
+        }
+        return input;
+    }
+
+    private Bytes finishSpace() {
+        if (finishSpace == null)
+            finishSpace = Bytes.from(" ");
+        finishSpace.readPosition(0);
+        return finishSpace;
+    }
+
+    /**
+     * Called when the input is read up to the end. Returns {@code null}, if the last portion
+     * is followed by a space, which ends a number at the end of it.
+     */
+    private JsonToken endOfPortion() {
+        if (!ended)
+            return JsonToken.NEED_MORE_INPUT;
+        if (input != finishSpace) {
+            // let the lexer end a number at the end of the last portion
+            input = finishSpace();
+            return null;
+        }
+        byte s = stateStack.current();
+        if (s == PARSE_COMPLETE || s == GOT_VALUE || allowPartialValues)
+            return JsonToken.END_OF_INPUT;
+        throw parseError("premature EOF");
+    }
+
+    /**
+     * Porting note: the state transitions are the same as in {@link JsonParser#parse(Bytes)},
+     * see it for comments.
+     */
+    private JsonToken readToken() {
+        Bytes jsonText = input();
+        TokenType tok;
+        while (true) {
+            switch (stateStack.current()) {
+                case PARSE_COMPLETE:
+                    if (topLevelStrategy == ALLOW_MULTIPLE_VALUES) {
+                        stateStack.set(GOT_VALUE);
+                        valueSize = 0;
+                        continue;
+                    }
+                    if (topLevelStrategy == ALLOW_TRAILING_GARBAGE)
+                        return JsonToken.END_OF_INPUT;
+                    tok = lex(jsonText);
+                    if (tok == TokenType.EOF)
+                        break;
+                    throw parseError("trailing garbage");
+                case LEXICAL_ERROR:
+                case PARSE_ERROR:
+                    throw new IllegalStateException("parse exception occurred, reset the reader");
+                case START:
+                case GOT_VALUE:
+                case MAP_NEED_VAL:
+                case ARRAY_NEED_VAL:
+                case ARRAY_START: {
+                    tok = lex(jsonText);
+                    JsonToken value = null;
+                    byte stateToPush = START;
+                    switch (tok) {
+                        case EOF:
+                            break;
+                        case ERROR:
+                            throw lexicalError();
+                        case STRING:
+                        case STRING_WITH_ESCAPES:
+                            value = JsonToken.STRING;
+                            break;
+                        case BOOL:
+                            value = JsonToken.BOOLEAN;
+                            break;
+                        case NULL:
+                            value = JsonToken.NULL;
+                            break;
+                        case INTEGER:
+                            value = JsonToken.INTEGER;
+                            break;
+                        case DOUBLE:
+                            value = JsonToken.FLOATING;
+                            break;
+                        case LEFT_BRACKET:
+                            value = JsonToken.START_OBJECT;
+                            stateToPush = MAP_START;
+                            break;
+                        case LEFT_BRACE:
+                            value = JsonToken.START_ARRAY;
+                            stateToPush = ARRAY_START;
+                            break;
+                        case RIGHT_BRACE:
+                            if (stateStack.current() == ARRAY_START) {
+                                stateStack.pop();
+                                return JsonToken.END_ARRAY;
+                            }
+                            /* intentional fall-through */
+                        default:
+                            throw parseError("unallowed token at this point in JSON text");
+                    }
+                    if (value == null)
+                        break;
+                    lexerToken = tok;
+                    gotValue();
+                    if (stateToPush != START) {
+                        // the depth of the pushed object or array is the current stack size
+                        if (stateStack.size() > maxDepth)
+                            throw depthLimitExceeded();
+                        stateStack.push(stateToPush);
+                    }
+                    return value;
+                }
+                case MAP_START:
+                case MAP_NEED_KEY:
+                    tok = lex(jsonText);
+                    switch (tok) {
+                        case EOF:
+                            break;
+                        case ERROR:
+                            throw lexicalError();
+                        case STRING:
+                        case STRING_WITH_ESCAPES:
+                            copyKey(tok == TokenType.STRING_WITH_ESCAPES);
+                            stateStack.set(MAP_SEP);
+                            return JsonToken.KEY;
+                        case RIGHT_BRACKET:
+                            if (stateStack.current() == MAP_START) {
+                                stateStack.pop();
+                                return JsonToken.END_OBJECT;
+                            }
+                            /* intentional fall-through */
+                        default:
+                            throw parseError("invalid object key (must be a string)");
+                    }
+                    break;
+                case MAP_SEP:
+                    tok = lex(jsonText);
+                    if (tok == TokenType.COLON) {
+                        stateStack.set(MAP_NEED_VAL);
+                        continue;
+                    }
+                    if (tok == TokenType.EOF)
+                        break;
+                    if (tok == TokenType.ERROR)
+                        throw lexicalError();
+                    throw parseError("object key and value must be separated by a colon (':')");
+                case MAP_GOT_VAL:
+                    tok = lex(jsonText);
+                    if (tok == TokenType.RIGHT_BRACKET) {
+                        stateStack.pop();
+                        return JsonToken.END_OBJECT;
+                    }
+                    if (tok == TokenType.COMMA) {
+                        stateStack.set(MAP_NEED_KEY);
+                        continue;
+                    }
+                    if (tok == TokenType.EOF)
+                        break;
+                    if (tok == TokenType.ERROR)
+                        throw lexicalError();
+                    throw parseError("after key and value, inside map, I expect ',' or '}'");
+                case ARRAY_GOT_VAL:
+                    tok = lex(jsonText);
+                    if (tok == TokenType.RIGHT_BRACE) {
+                        stateStack.pop();
+                        return JsonToken.END_ARRAY;
+                    }
+                    if (tok == TokenType.COMMA) {
+                        stateStack.set(ARRAY_NEED_VAL);
+                        continue;
+                    }
+                    if (tok == TokenType.EOF)
+                        break;
+                    if (tok == TokenType.ERROR)
+                        throw lexicalError();
+                    throw parseError("after array element, I expect ',' or ']'");
+                default:
+                    throw new AssertionError("unexpected state " + stateStack.current());
+            }
+            // the lexer reached the end of the input
+            JsonToken t = endOfPortion();
+            if (t != null)
+                return t;
+            jsonText = input;
+        }
+    }
+
+    private TokenType lex(Bytes jsonText) {
+        long start = jsonText.readPosition();
+        TokenType tok = lexer.lex(jsonText);
+        countValueBytes(jsonText, start);
+        return tok;
+    }
+
+    private void countValueBytes(Bytes jsonText, long start) {
+        // the padding given after the last portion is not a part of the value
+        if (jsonText == finishSpace)
+            return;
+        valueSize += jsonText.readPosition() - start;
+        if (valueSize > maxValueSize) {
+            stateStack.set(PARSE_ERROR);
+            throw new ValueTooLargeException(maxValueSize);
+        }
+    }
+
+    private void gotValue() {
+        byte s = stateStack.current();
+        if (s == START || s == GOT_VALUE) {
+            stateStack.set(PARSE_COMPLETE);
+
+        } else if (s == MAP_NEED_VAL) {
+            stateStack.set(MAP_GOT_VAL);
+
+        } else {
+            stateStack.set(ARRAY_GOT_VAL);
+        }
+    }
+
+    private void copyKey(boolean escaped) {
+        if (keyBytes == null)
+            keyBytes = Bytes.allocateElasticDirect(64);
+        keyBytes.clear();
+        keyBytes.write(lexer.outBuf, lexer.outPos, lexer.outLen);
+        keyEscaped = escaped;
+        keyRead = true;
+    }
+
+    private ParseException parseError(String message) {
+        stateStack.set(PARSE_ERROR);
+        return new ParseException(message);
+    }
+
+    private ParseException lexicalError() {
+        stateStack.set(LEXICAL_ERROR);
+        if (lexer.error == LexError.TOKEN_TOO_LONG)
+            return new TokenTooLongException(lexer.maxTokenLength);
+        return new ParseException("lexical error: " + lexer.error);
+    }
+
+    private ParseException depthLimitExceeded() {
+        stateStack.set(PARSE_ERROR);
+        return new DepthLimitExceededException(maxDepth);
+    }
+}
@@ -0,0 +1,617 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.ParseException;
+
+import java.io.Closeable;
+import java.util.Arrays;
+
+/**
+ * Structural tape of a JSON document: the document is lexed once, and each token's type, offset,
+ * length and, for objects and arrays, the index of the matching bracket are recorded in
+ * an off-heap {@code Bytes} tape. The tape is then navigated without lexing again: children,
+ * siblings and array elements are reached by jumping over whole subtrees, so a lookup costs
+ * in proportion to the path length and the number of preceding siblings, rather than
+ * the document size.
+ *
+ * <p>Values are addressed by node ints, indexes of their tape entries; {@code -1} means
+ * "no such value". Object fields are addressed by the nodes of their keys, the value of a field
+ * follows the key: {@code value(key) == key + 1}. <pre>{@code
+ * try (JsonTape tape = JsonTape.build(document)) {
+ *     int bids = tape.field(tape.field(tape.root(), "data"), "bids");
+ *     for (int bid = tape.firstElement(bids); bid >= 0; bid = tape.nextElement(bid)) {
+ *         double price = tape.doubleValue(tape.element(bid, 0));
+ *         ...
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>The tape could be persisted, e. g. written next to the document file, see {@link #tape()},
+ * and {@link #load(Bytes, Bytes) loaded} later along with the document, instead of lexing
+ * the document again. Tape entries refer to absolute positions in the document {@code Bytes},
+ * so the document shouldn't be modified while the tape is used, and should be loaded at the same
+ * position.
+ *
+ * <p>The tape is not configured by {@link JsonParserBuilder}, so its
+ * {@link JsonParserBuilder#maxDepth(int) limits} don't apply: the whole document is given
+ * at once, and the tape grows in proportion to it. Check the document size before building
+ * a tape of untrusted input.
+ *
+ * <p>{@code JsonTape} is not thread-safe: the {@code CharSequence} returned from
+ * {@link #stringValue(int)} and {@link #key(int)} is a view, reused on each call.
+ */
+public final class JsonTape implements Closeable {
+
+    private static final int MAGIC = 0x4A54504A; // "JPTJ" in little-endian
+    private static final int VERSION = 2;
+    /** magic, version, document start, document length, entry count */
+    private static final int HEADER_SIZE = 32;
+    private static final long START_OFFSET = 8;
+    private static final long LENGTH_OFFSET = 16;
+    private static final long COUNT_OFFSET = 24;
+    /**
+     * entry layout: type code byte, 3 bytes padding, int length of the token (string and key
+     * entries: of the contents, excluding quotes) or, for object and array starts and ends,
+     * the index of the matching entry, long offset of the token (strings and keys: of the
+     * contents) in the document. Integer and floating entries are followed by a number entry:
+     * code byte, flags byte, 2 bytes padding, int exponent, long mantissa, as accumulated by
+     * {@link Lexer}, so numbers are not lexed again on access
+     */
+    private static final int ENTRY_SIZE = 16;
+    private static final long AUX_OFFSET = 4;
+    private static final long POSITION_OFFSET = 8;
+
+    /* codes of values are ordinals of JsonValueType */
+    private static final byte OBJECT = 0;
+    private static final byte ARRAY = 1;
+    private static final byte STRING = 2;
+    private static final byte INTEGER = 3;
+    private static final byte FLOATING = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte NULL = 6;
+    private static final byte OBJECT_END = 7;
+    private static final byte ARRAY_END = 8;
+    private static final byte KEY = 9;
+    private static final byte NUMBER = 10;
+    /** flag of string and key codes */
+    private static final byte ESCAPES = 0x10;
+    /* flags of number entries */
+    private static final byte NEGATIVE = 1;
+    private static final byte TRUNCATED = 2;
+    private static final JsonValueType[] TYPES = JsonValueType.values();
+
+    private final Bytes json;
+    private final Bytes tape;
+    private final boolean ownsTape;
+    private final long base;
+    private final int count;
+    private final Utf8CharSequence utf8View = new Utf8CharSequence();
+
+    private JsonTape(Bytes json, Bytes tape, boolean ownsTape) {
+        this.json = json;
+        this.tape = tape;
+        this.ownsTape = ownsTape;
+        base = tape.readPosition();
+        count = (int) tape.readLong(base + COUNT_OFFSET);
+    }
+
+    /**
+     * Lexes the JSON document between the read position and the read limit of the given
+     * {@code Bytes} and builds its tape. The read position of the document is not changed.
+     *
+     * @param json the JSON document, a single value
+     * @return the tape of the document, which should be {@link #close() closed} to release
+     *         the off-heap memory
+     * @throws ParseException if the document is malformed
+     */
+    public static JsonTape build(Bytes json) {
+        Bytes tape = Bytes.allocateElasticDirect();
+        try {
+            record(json, tape);
+        } catch (RuntimeException e) {
+            tape.release();
+            throw e;
+        }
+        return new JsonTape(json, tape, true);
+    }
+
+    /**
+     * Returns a tape of the JSON document from the {@link #tape() persisted} tape bytes.
+     * The document should be given at the same position as when the tape was built.
+     *
+     * @param json the JSON document, between the read position and the read limit
+     * @param tape the tape bytes, starting from the read position; not released by
+     *             {@link #close()}
+     * @return the tape of the document
+     * @throws IllegalArgumentException if the bytes are not a tape, or a tape of a different
+     *         document range
+     */
+    public static JsonTape load(Bytes json, Bytes tape) {
+        long base = tape.readPosition();
+        if (tape.readRemaining() < HEADER_SIZE || tape.readInt(base) != MAGIC)
+            throw new IllegalArgumentException("not a JSON tape");
+        if (tape.readInt(base + 4) != VERSION)
+            throw new IllegalArgumentException("unsupported tape version");
+        if (tape.readLong(base + START_OFFSET) != json.readPosition() ||
+                tape.readLong(base + LENGTH_OFFSET) != json.readRemaining()) {
+            throw new IllegalArgumentException("the tape is built for another document range");
+        }
+        if (tape.readRemaining() != HEADER_SIZE +
+                (long) ENTRY_SIZE * tape.readLong(base + COUNT_OFFSET)) {
+            throw new IllegalArgumentException("truncated tape");
+        }
+        return new JsonTape(json, tape, false);
+    }
+
+    /**
+     * Returns the tape bytes, between the read position and the read limit, to be persisted
+     * and then {@link #load(Bytes, Bytes) loaded}. The bytes shouldn't be modified.
+     *
+     * @return the tape bytes
+     */
+    public Bytes tape() {
+        return tape;
+    }
+
+    /**
+     * Releases the off-heap memory of the tape, if it was {@link #build(Bytes) built}.
+     */
+    @Override
+    public void close() {
+        if (ownsTape)
+            tape.release();
+    }
+
+    /** the grammar states of the tape building */
+    private static final byte VALUE = 0;
+    private static final byte VALUE_OR_END = 1;
+    private static final byte KEY_OR_END = 2;
+    private static final byte NEXT_KEY = 3;
+    private static final byte COLON_NEXT = 4;
+    private static final byte COMMA_OR_END = 5;
+    private static final byte DONE = 6;
+
+    private static void record(Bytes json, Bytes tape) {
+        long start = json.readPosition();
+        long limit = json.readLimit();
+        tape.writeInt(MAGIC).writeInt(VERSION).writeLong(start).writeLong(limit - start)
+                .writeLong(0L);
+        Lexer lexer = new Lexer(false, true, 0L);
+        Bytes finishSpace = null;
+        int[] open = new int[16];
+        int depth = 0;
+        byte state = VALUE;
+        int n = 0;
+        try {
+            while (true) {
+                TokenType tok = lexer.lex(json);
+                if (tok == TokenType.EOF) {
+                    if (finishSpace != null)
+                        break;
+                    // the last number is complete only when followed by something
+                    finishSpace = Bytes.from(" ");
+                    tok = lexer.lex(finishSpace);
+                    if (tok == TokenType.EOF)
+                        break;
+                }
+                if (state == DONE)
+                    throw new ParseException("trailing garbage");
+                switch (tok) {
+                    case ERROR:
+                        throw new ParseException("lexical error: " + lexer.error);
+                    case LEFT_BRACKET:
+                    case LEFT_BRACE:
+                        if (state != VALUE && state != VALUE_OR_END)
+                            throw unallowedToken();
+                        if (depth == open.length)
+                            open = Arrays.copyOf(open, depth * 2);
+                        open[depth++] = n;
+                        entry(tape, n++, tok == TokenType.LEFT_BRACKET ? OBJECT : ARRAY, 0,
+                                json.readPosition() - 1);
+                        state = tok == TokenType.LEFT_BRACKET ? KEY_OR_END : VALUE_OR_END;
+                        break;
+                    case RIGHT_BRACKET:
+                    case RIGHT_BRACE: {
+                        boolean object = tok == TokenType.RIGHT_BRACKET;
+                        byte empty = object ? KEY_OR_END : VALUE_OR_END;
+                        if ((state != COMMA_OR_END && state != empty) ||
+                                tape.readByte(entryOffset(open[depth - 1])) !=
+                                        (object ? OBJECT : ARRAY)) {
+                            throw unallowedToken();
+                        }
+                        int startEntry = open[--depth];
+                        tape.writeInt(entryOffset(startEntry) + AUX_OFFSET, n);
+                        entry(tape, n++, object ? OBJECT_END : ARRAY_END, startEntry,
+                                json.readPosition() - 1);
+                        state = depth == 0 ? DONE : COMMA_OR_END;
+                        break;
+                    }
+                    case COLON:
+                        if (state != COLON_NEXT)
+                            throw unallowedToken();
+                        state = VALUE;
+                        break;
+                    case COMMA:
+                        if (state != COMMA_OR_END)
+                            throw unallowedToken();
+                        state = tape.readByte(entryOffset(open[depth - 1])) == OBJECT ?
+                                NEXT_KEY : VALUE;
+                        break;
+                    case STRING:
+                    case STRING_WITH_ESCAPES: {
+                        byte escapes = tok == TokenType.STRING_WITH_ESCAPES ? ESCAPES : 0;
+                        if (state == KEY_OR_END || state == NEXT_KEY) {
+                            entry(tape, n++, (byte) (KEY | escapes), lexer.outLen, lexer.outPos);
+                            state = COLON_NEXT;
+                            break;
+                        }
+                        if (state != VALUE && state != VALUE_OR_END)
+                            throw unallowedToken();
+                        entry(tape, n++, (byte) (STRING | escapes), lexer.outLen, lexer.outPos);
+                        state = depth == 0 ? DONE : COMMA_OR_END;
+                        break;
+                    }
+                    case INTEGER:
+                    case DOUBLE:
+                    case BOOL:
+                    case NULL: {
+                        if (state != VALUE && state != VALUE_OR_END)
+                            throw unallowedToken();
+                        byte code = tok == TokenType.INTEGER ? INTEGER :
+                                tok == TokenType.DOUBLE ? FLOATING :
+                                        tok == TokenType.BOOL ? BOOLEAN : JsonTape.NULL;
+                        // a carried over number is the tail of the document
+                        long position = lexer.outBuf == json ? lexer.outPos :
+                                limit - lexer.outLen;
+                        entry(tape, n++, code, lexer.outLen, position);
+                        if (code == INTEGER || code == FLOATING)
+                            numberEntry(tape, n++, lexer);
+                        state = depth == 0 ? DONE : COMMA_OR_END;
+                        break;
+                    }
+                    default:
+                        throw new ParseException("invalid token, internal error");
+                }
+                if (n < 0)
+                    throw new ParseException("too many tokens for a tape");
+            }
+            if (state != DONE)
+                throw new ParseException("premature EOF");
+        } finally {
+            json.readPosition(start);
+            lexer.close();
+        }
+        tape.writeLong(COUNT_OFFSET, n);
+    }
+
+    private static ParseException unallowedToken() {
+        return new ParseException("unallowed token at this point in JSON text");
+    }
+
+    private static long entryOffset(int entry) {
+        return HEADER_SIZE + (long) ENTRY_SIZE * entry;
+    }
+
+    private static void entry(Bytes tape, int entry, byte code, long aux, long position) {
+        assert tape.writePosition() == entryOffset(entry);
+        tape.writeByte(code).writeByte((byte) 0).writeShort((short) 0).writeInt((int) aux)
+                .writeLong(position);
+    }
+
+    private static void numberEntry(Bytes tape, int entry, Lexer lexer) {
+        assert tape.writePosition() == entryOffset(entry);
+        byte flags = (byte) ((lexer.outNegative ? NEGATIVE : 0) |
+                (lexer.outTruncated ? TRUNCATED : 0));
+        // the exponent is beyond int range only for numbers of billions of digits
+        int exponent = (int) Math.max(Integer.MIN_VALUE,
+                Math.min(Integer.MAX_VALUE, lexer.outExponent));
+        tape.writeByte(NUMBER).writeByte(flags).writeShort((short) 0).writeInt(exponent)
+                .writeLong(lexer.outMantissa);
+    }
+
+    private byte code(int node) {
+        checkNode(node);
+        return tape.readByte(base + entryOffset(node));
+    }
+
+    private int aux(int node) {
+        return tape.readInt(base + entryOffset(node) + AUX_OFFSET);
+    }
+
+    private long position(int node) {
+        return tape.readLong(base + entryOffset(node) + POSITION_OFFSET);
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= count)
+            throw new IllegalArgumentException("no node " + node);
+    }
+
+    /** Returns the node after the value at the given node, with all its contents. */
+    private int skip(int node) {
+        byte code = code(node);
+        if (code == OBJECT || code == ARRAY)
+            return aux(node) + 1;
+        return code == INTEGER || code == FLOATING ? node + 2 : node + 1;
+    }
+
+    private void checkCode(int node, byte expected) {
+        if (code(node) != expected) {
+            throw new IllegalArgumentException("node " + node + " is " + describe(node) +
+                    ", not " + TYPES[expected]);
+        }
+    }
+
+    private String describe(int node) {
+        byte code = (byte) (code(node) & ~ESCAPES);
+        return code == KEY ? "a key" : code == OBJECT_END || code == ARRAY_END ? "an end" :
+                code == NUMBER ? "a number entry" : TYPES[code].toString();
+    }
+
+    /**
+     * Returns the number of tape entries: each value, key and object or array end takes
+     * an entry, integers and floating numbers take two.
+     *
+     * @return the number of tape entries
+     */
+    public int entries() {
+        return count;
+    }
+
+    /**
+     * Returns the root value node, always {@code 0}.
+     *
+     * @return the root value node
+     */
+    public int root() {
+        return 0;
+    }
+
+    /**
+     * Returns the type of the value at the given node.
+     *
+     * @param node the value node
+     * @return the type of the value
+     * @throws IllegalArgumentException if the node is not a value node
+     */
+    public JsonValueType type(int node) {
+        byte code = (byte) (code(node) & ~ESCAPES);
+        if (code > NULL)
+            throw new IllegalArgumentException("node " + node + " is " + describe(node));
+        return TYPES[code];
+    }
+
+    /**
+     * Returns the offset of the value at the given node in the document: of the opening bracket
+     * of an object or an array, of the opening quote of a string.
+     *
+     * @param node the value node
+     * @return the offset of the value in the document
+     */
+    public long offset(int node) {
+        byte code = (byte) (code(node) & ~ESCAPES);
+        return code == STRING || code == KEY ? position(node) - 1 : position(node);
+    }
+
+    /**
+     * Returns the length of the value at the given node in the document, including brackets of
+     * an object or an array and quotes of a string.
+     *
+     * @param node the value node
+     * @return the length of the value in the document
+     */
+    public long length(int node) {
+        byte code = (byte) (code(node) & ~ESCAPES);
+        if (code == OBJECT || code == ARRAY)
+            return position(aux(node)) + 1 - position(node);
+        return code == STRING || code == KEY ? aux(node) + 2 : aux(node);
+    }
+
+    /**
+     * Returns the node of the first key of the object at the given node, or {@code -1} if
+     * the object is empty.
+     *
+     * @param object the object node
+     * @return the node of the first key, or {@code -1}
+     */
+    public int firstField(int object) {
+        checkCode(object, OBJECT);
+        return object + 1 == aux(object) ? -1 : object + 1;
+    }
+
+    /**
+     * Returns the node of the key following the given key in the object, or {@code -1} if
+     * the given key is the last.
+     *
+     * @param key the key node
+     * @return the node of the next key, or {@code -1}
+     */
+    public int nextField(int key) {
+        int next = skip(value(key));
+        return (code(next) & ~ESCAPES) == KEY ? next : -1;
+    }
+
+    /**
+     * Returns the value node of the field with the given key node, {@code key + 1}.
+     *
+     * @param key the key node
+     * @return the value node of the field
+     */
+    public int value(int key) {
+        if ((code(key) & ~ESCAPES) != KEY)
+            throw new IllegalArgumentException("node " + key + " is " + describe(key) +
+                    ", not a key");
+        return key + 1;
+    }
+
+    /**
+     * Returns the key at the given node. The returned {@code CharSequence} is valid until
+     * the next call of this method or {@link #stringValue(int)}.
+     *
+     * @param key the key node
+     * @return the key
+     */
+    public CharSequence key(int key) {
+        byte code = code(key);
+        if ((code & ~ESCAPES) != KEY)
+            throw new IllegalArgumentException("node " + key + " is " + describe(key) +
+                    ", not a key");
+        return view(key, code);
+    }
+
+    /**
+     * Returns the value node of the first field with the given name in the object at the given
+     * node, or {@code -1} if there is no such field.
+     *
+     * @param object the object node
+     * @param name the field name
+     * @return the value node of the field, or {@code -1}
+     */
+    public int field(int object, CharSequence name) {
+        for (int key = firstField(object); key >= 0; key = nextField(key)) {
+            if (view(key, code(key)).contentEquals(name))
+                return key + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the node of the first element of the array at the given node, or {@code -1} if
+     * the array is empty.
+     *
+     * @param array the array node
+     * @return the node of the first element, or {@code -1}
+     */
+    public int firstElement(int array) {
+        checkCode(array, ARRAY);
+        return array + 1 == aux(array) ? -1 : array + 1;
+    }
+
+    /**
+     * Returns the node of the element following the given array element, or {@code -1} if
+     * the given element is the last.
+     *
+     * @param element the array element node
+     * @return the node of the next element, or {@code -1}
+     */
+    public int nextElement(int element) {
+        int next = skip(element);
+        return code(next) == ARRAY_END ? -1 : next;
+    }
+
+    /**
+     * Returns the node of the element with the given index in the array at the given node,
+     * or {@code -1} if the array is shorter.
+     *
+     * @param array the array node
+     * @param index the element index
+     * @return the node of the element, or {@code -1}
+     */
+    public int element(int array, int index) {
+        int element = firstElement(array);
+        for (int i = 0; i < index && element >= 0; i++) {
+            element = nextElement(element);
+        }
+        return element;
+    }
+
+    /**
+     * Returns the number of fields of the object or elements of the array at the given node.
+     *
+     * @param container the object or array node
+     * @return the number of fields or elements
+     */
+    public int size(int container) {
+        byte code = code(container);
+        if (code != OBJECT && code != ARRAY) {
+            throw new IllegalArgumentException("node " + container + " is " +
+                    describe(container) + ", not an object or an array");
+        }
+        int size = 0;
+        int end = aux(container);
+        for (int node = container + 1; node < end; node = skip(node)) {
+            if (code == ARRAY || (code(node) & ~ESCAPES) == KEY)
+                size++;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the string value at the given node. The returned {@code CharSequence} is valid
+     * until the next call of this method or {@link #key(int)}.
+     *
+     * @param node the string node
+     * @return the string value
+     */
+    public CharSequence stringValue(int node) {
+        byte code = code(node);
+        if ((code & ~ESCAPES) != STRING)
+            checkCode(node, STRING);
+        return view(node, code);
+    }
+
+    private Utf8CharSequence view(int node, byte code) {
+        return (code & ESCAPES) != 0 ? utf8View.setEscaped(json, position(node), aux(node)) :
+                utf8View.set(json, position(node), aux(node));
+    }
+
+    /**
+     * Returns the boolean value at the given node.
+     *
+     * @param node the boolean node
+     * @return the boolean value
+     */
+    public boolean booleanValue(int node) {
+        checkCode(node, BOOLEAN);
+        return json.readUnsignedByte(position(node)) == 't';
+    }
+
+    /**
+     * Returns the integer value at the given node.
+     *
+     * @param node the integer node
+     * @return the integer value
+     * @throws NumberFormatException if the value is out of {@code long} range
+     */
+    public long longValue(int node) {
+        checkCode(node, INTEGER);
+        long number = base + entryOffset(node + 1);
+        return Lexer.longValue((tape.readByte(number + 1) & NEGATIVE) != 0,
+                tape.readLong(number + POSITION_OFFSET), tape.readInt(number + AUX_OFFSET));
+    }
+
+    /**
+     * Returns the value of the integer or floating number at the given node, correctly rounded
+     * to {@code double}.
+     *
+     * @param node the number node
+     * @return the number value
+     */
+    public double doubleValue(int node) {
+        if (code(node) != FLOATING)
+            checkCode(node, INTEGER);
+        long number = base + entryOffset(node + 1);
+        byte flags = tape.readByte(number + 1);
+        return DoubleParser.toDouble((flags & NEGATIVE) != 0,
+                tape.readLong(number + POSITION_OFFSET), tape.readInt(number + AUX_OFFSET),
+                (flags & TRUNCATED) != 0, json, position(node), aux(node));
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+/**
+ * Tokens returned by {@link JsonReader#nextToken()}.
+ */
+public enum JsonToken {
+    START_OBJECT,
+    END_OBJECT,
+    START_ARRAY,
+    END_ARRAY,
+    /** an object key, see {@link JsonReader#currentKey()} */
+    KEY,
+    STRING,
+    /** a number without fraction and exponent parts */
+    INTEGER,
+    /** a number with fraction or exponent part */
+    FLOATING,
+    BOOLEAN,
+    NULL,
+    /**
+     * the given portion of JSON is read up to the end, possibly except the head of a token
+     * spanning the next portion: {@link JsonReader#feed(net.openhft.chronicle.bytes.Bytes)
+     * feed} it and call {@link JsonReader#nextToken()} again
+     */
+    NEED_MORE_INPUT,
+    /**
+     * the input is over: {@link JsonReader#endOfInput()} is called and all the tokens before
+     * it are read, or the top-level value is complete and
+     * {@link JsonParserTopLevelStrategy#ALLOW_TRAILING_GARBAGE} is set
+     */
+    END_OF_INPUT
+}
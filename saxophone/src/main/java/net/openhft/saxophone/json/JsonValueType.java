@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.saxophone.json;
+
+/**
+ * Types of JSON values, as recorded in a {@link JsonTape}.
+ *
+ * @see JsonTape#type(int)
+ */
+public enum JsonValueType {
+    OBJECT,
+    ARRAY,
+    STRING,
+    /** a number without fraction and exponent parts */
+    INTEGER,
+    /** a number with fraction or exponent part */
+    FLOATING,
+    BOOLEAN,
+    NULL
+}
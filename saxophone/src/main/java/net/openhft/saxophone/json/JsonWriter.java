@@ -0,0 +1,576 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.HeapBytesStore;
+import net.openhft.chronicle.bytes.VanillaBytes;
+import net.openhft.saxophone.json.handler.JsonHandler;
+import org.jetbrains.annotations.Nullable;
+
+import static net.openhft.saxophone.json.ParserState.*;
+
+/**
+ * JSON generator writing UTF-8 right into {@code Bytes} or a {@code byte[]}, without
+ * allocation: <pre>{@code
+ * JsonWriter writer = new JsonWriter(); // reusable
+ * writer.reset(out)
+ *         .startObject()
+ *         .key("sym").value("EUR/USD")
+ *         .key("px").value(1.0845)
+ *         .key("qty").value(1_000_000)
+ *         .endObject();
+ * }</pre>
+ *
+ * <ul>
+ *     <li>strings are escaped 8 chars or bytes at a time: runs without quotes, backslashes
+ *     and control chars are detected with SWAR and written as whole words;</li>
+ *     <li>{@code double} values are written in the shortest form, which parses back to the same
+ *     value, see {@link DoubleFormatter};</li>
+ *     <li>{@code long} values are formatted two digits at a time.</li>
+ * </ul>
+ *
+ * <p>The structure is validated with the same states as {@link JsonParser} uses: a key is
+ * required before each value in an object, commas and colons are written automatically,
+ * and a misplaced call throws {@code IllegalStateException}. Several top-level values are
+ * separated by newlines.
+ *
+ * <p>The writer is also a {@link JsonHandler}, so a parser could pipe straight into it:
+ * <pre>{@code
+ * JsonParser parser = JsonParser.builder().handler(writer).build();
+ * }</pre>
+ * Strings and keys are copied raw, with their original escapes, and numbers are copied as is.
+ *
+ * <p>{@code JsonWriter} is not thread-safe.
+ */
+public final class JsonWriter implements JsonHandler {
+    private static final byte[] DIGIT_PAIRS = new byte[200];
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+    private static final byte[] NULL_BYTES = "null".getBytes();
+    private static final byte[] TRUE_BYTES = "true".getBytes();
+    private static final byte[] FALSE_BYTES = "false".getBytes();
+    /** the char after the backslash, 'u' for hex escapes of control chars, 0 if not escaped */
+    private static final byte[] ESCAPES = new byte[128];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_PAIRS[2 * i] = (byte) ('0' + i / 10);
+            DIGIT_PAIRS[2 * i + 1] = (byte) ('0' + i % 10);
+        }
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+    }
+
+    private final ParserState.Stack stateStack = new Stack();
+    private final DoubleFormatter doubleFormatter = new DoubleFormatter();
+    private final byte[] digits = new byte[20];
+    private Bytes out;
+    /** reusable view of the output given as a byte array */
+    private HeapBytesStore heapStore;
+    private Bytes heapView;
+
+    /**
+     * Creates a writer, which should be given the output by {@link #reset(Bytes)} or
+     * {@link #reset(byte[], int)}. Until then writing throws {@code IllegalStateException}.
+     */
+    public JsonWriter() {
+        stateStack.push(START);
+    }
+
+    /**
+     * Creates a writer to the given {@code Bytes}.
+     *
+     * @param out the output
+     * @see #reset(Bytes)
+     */
+    public JsonWriter(Bytes out) {
+        this();
+        reset(out);
+    }
+
+    /**
+     * Starts writing a new JSON text to the given {@code Bytes}, from its
+     * {@link Bytes#writePosition() write position}.
+     *
+     * @param out the output
+     * @return a reference to this writer
+     */
+    public JsonWriter reset(Bytes out) {
+        this.out = out;
+        stateStack.clear();
+        stateStack.push(START);
+        return this;
+    }
+
+    /**
+     * Starts writing a new JSON text to the given array, from the given offset. The written
+     * length is available as {@link #writePosition()} minus the offset. Writing beyond
+     * the array end throws {@code BufferOverflowException}.
+     *
+     * @param out the output array
+     * @param offset the offset of the JSON text in the array
+     * @return a reference to this writer
+     * @throws IndexOutOfBoundsException if the offset is out of the array bounds
+     */
+    public JsonWriter reset(byte[] out, int offset) {
+        if (offset < 0 || offset > out.length)
+            throw new IndexOutOfBoundsException("offset: " + offset +
+                    ", array length: " + out.length);
+        if (heapView == null) {
+            heapStore = BytesStore.wrap(out);
+            heapView = new VanillaBytes(heapStore);
+        } else {
+            heapStore.init(out);
+        }
+        heapView.writeLimit(out.length);
+        heapView.writePosition(offset);
+        return reset(heapView);
+    }
+
+    /**
+     * Returns the write position in the output: in the {@code Bytes}, or in the array.
+     *
+     * @return the write position in the output
+     */
+    public long writePosition() {
+        checkOutput();
+        return out.writePosition();
+    }
+
+    /**
+     * Returns {@code true} if a complete JSON value is written.
+     *
+     * @return if a complete JSON value is written
+     */
+    public boolean isComplete() {
+        return stateStack.current() == PARSE_COMPLETE;
+    }
+
+    /**
+     * Writes the start of an object.
+     *
+     * @return a reference to this writer
+     * @throws IllegalStateException if a value is not expected
+     */
+    public JsonWriter startObject() {
+        beforeValue();
+        out.writeByte((byte) '{');
+        stateStack.push(MAP_START);
+        return this;
+    }
+
+    /**
+     * Writes the end of the current object.
+     *
+     * @return a reference to this writer
+     * @throws IllegalStateException if the current value is not an object, or a value is
+     *         expected after the last key
+     */
+    public JsonWriter endObject() {
+        byte s = stateStack.current();
+        if (s != MAP_START && s != MAP_GOT_VAL)
+            throw misplaced("end of object");
+        out.writeByte((byte) '}');
+        stateStack.pop();
+        return this;
+    }
+
+    /**
+     * Writes the start of an array.
+     *
+     * @return a reference to this writer
+     * @throws IllegalStateException if a value is not expected
+     */
+    public JsonWriter startArray() {
+        beforeValue();
+        out.writeByte((byte) '[');
+        stateStack.push(ARRAY_START);
+        return this;
+    }
+
+    /**
+     * Writes the end of the current array.
+     *
+     * @return a reference to this writer
+     * @throws IllegalStateException if the current value is not an array
+     */
+    public JsonWriter endArray() {
+        byte s = stateStack.current();
+        if (s != ARRAY_START && s != ARRAY_GOT_VAL)
+            throw misplaced("end of array");
+        out.writeByte((byte) ']');
+        stateStack.pop();
+        return this;
+    }
+
+    /**
+     * Writes an object key.
+     *
+     * @param key the key
+     * @return a reference to this writer
+     * @throws IllegalStateException if a key is not expected
+     */
+    public JsonWriter key(CharSequence key) {
+        beforeKey();
+        writeString(key);
+        out.writeByte((byte) ':');
+        return this;
+    }
+
+    /**
+     * Writes an object key, given as UTF-8 bytes without escapes, which are escaped as needed.
+     *
+     * @param store the store of the key bytes
+     * @param offset the offset of the key bytes in the store
+     * @param length the number of the key bytes
+     * @return a reference to this writer
+     * @throws IllegalStateException if a key is not expected
+     */
+    public JsonWriter key(BytesStore store, long offset, long length) {
+        beforeKey();
+        writeUtf8String(store, offset, length);
+        out.writeByte((byte) ':');
+        return this;
+    }
+
+    /**
+     * Writes a string value, or {@code null} if the given value is {@code null}.
+     *
+     * @param value the value
+     * @return a reference to this writer
+     * @throws IllegalStateException if a value is not expected
+     */
+    public JsonWriter value(@Nullable CharSequence value) {
+        if (value == null)
+            return nullValue();
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    /**
+     * Writes a string value, given as UTF-8 bytes without escapes, which are escaped
+     * as needed.
+     *
+     * @param store the store of the string bytes
+     * @param offset the offset of the string bytes in the store
+     * @param length the number of the string bytes
+     * @return a reference to this writer
+     * @throws IllegalStateException if a value is not expected
+     */
+    public JsonWriter value(BytesStore store, long offset, long length) {
+        beforeValue();
+        writeUtf8String(store, offset, length);
+        return this;
+    }
+
+    /**
+     * Writes an integer value.
+     *
+     * @param value the value
+     * @return a reference to this writer
+     * @throws IllegalStateException if a value is not expected
+     */
+    public JsonWriter value(long value) {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    /**
+     * Writes a number value in the shortest form, which parses back to the same {@code double}.
+     *
+     * @param value the value
+     * @return a reference to this writer
+     * @throws IllegalArgumentException if the value is NaN or infinite, not allowed in JSON
+     * @throws IllegalStateException if a value is not expected
+     */
+    public JsonWriter value(double value) {
+        int length = doubleFormatter.format(value);
+        beforeValue();
+        out.write(doubleFormatter.buf, 0, length);
+        return this;
+    }
+
+    /**
+     * Writes a boolean value.
+     *
+     * @param value the value
+     * @return a reference to this writer
+     * @throws IllegalStateException if a value is not expected
+     */
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        out.write(value ? TRUE_BYTES : FALSE_BYTES);
+        return this;
+    }
+
+    /**
+     * Writes {@code null}.
+     *
+     * @return a reference to this writer
+     * @throws IllegalStateException if a value is not expected
+     */
+    public JsonWriter nullValue() {
+        beforeValue();
+        out.write(NULL_BYTES);
+        return this;
+    }
+
+    @Override
+    public boolean onObjectStart() {
+        startObject();
+        return true;
+    }
+
+    @Override
+    public boolean onObjectEnd() {
+        endObject();
+        return true;
+    }
+
+    @Override
+    public boolean onArrayStart() {
+        startArray();
+        return true;
+    }
+
+    @Override
+    public boolean onArrayEnd() {
+        endArray();
+        return true;
+    }
+
+    @Override
+    public boolean onBoolean(boolean value) {
+        value(value);
+        return true;
+    }
+
+    @Override
+    public boolean onNull() {
+        nullValue();
+        return true;
+    }
+
+    @Override
+    public boolean onRawStringValue(BytesStore store, long offset, long length,
+                                    boolean hasEscapes) {
+        beforeValue();
+        writeRawString(store, offset, length);
+        return true;
+    }
+
+    @Override
+    public boolean onRawObjectKey(BytesStore store, long offset, long length,
+                                  boolean hasEscapes) {
+        beforeKey();
+        writeRawString(store, offset, length);
+        out.writeByte((byte) ':');
+        return true;
+    }
+
+    @Override
+    public boolean onNumber(CharSequence number) {
+        beforeValue();
+        for (int i = 0; i < number.length(); i++) {
+            out.writeByte((byte) number.charAt(i));
+        }
+        return true;
+    }
+
+    private void beforeValue() {
+        checkOutput();
+        switch (stateStack.current()) {
+            case START:
+                stateStack.set(PARSE_COMPLETE);
+                break;
+            case PARSE_COMPLETE:
+                out.writeByte((byte) '\n');
+                break;
+            case MAP_NEED_VAL:
+                stateStack.set(MAP_GOT_VAL);
+                break;
+            case ARRAY_START:
+                stateStack.set(ARRAY_GOT_VAL);
+                break;
+            case ARRAY_GOT_VAL:
+                out.writeByte((byte) ',');
+                break;
+            default:
+                throw misplaced("value");
+        }
+    }
+
+    private void beforeKey() {
+        checkOutput();
+        byte s = stateStack.current();
+        if (s == MAP_GOT_VAL) {
+            out.writeByte((byte) ',');
+        } else if (s != MAP_START) {
+            throw misplaced("key");
+        }
+        stateStack.set(MAP_NEED_VAL);
+    }
+
+    private void checkOutput() {
+        if (out == null)
+            throw new IllegalStateException("no output, call reset(Bytes) first");
+    }
+
+    private IllegalStateException misplaced(String what) {
+        byte s = stateStack.current();
+        String expected = s == MAP_START || s == MAP_GOT_VAL ? "a key or the end of object" :
+                s == ARRAY_START || s == ARRAY_GOT_VAL ? "a value or the end of array" :
+                "a value";
+        return new IllegalStateException(what + " is not allowed here, " + expected +
+                " is expected");
+    }
+
+    /** a string from the parser, with valid escapes if any */
+    private void writeRawString(BytesStore store, long offset, long length) {
+        out.writeByte((byte) '"');
+        out.write(store, offset, length);
+        out.writeByte((byte) '"');
+    }
+
+    private void writeUtf8String(BytesStore store, long offset, long length) {
+        Bytes out = this.out;
+        out.writeByte((byte) '"');
+        long i = offset;
+        long end = offset + length;
+        while (i < end) {
+            if (i + 8 <= end) {
+                long word = Swar.readWord(store, i);
+                long special = Swar.stringSpecialBytes(word, 0L);
+                if (special == 0L) {
+                    Swar.writeWord(out, word);
+                    i += 8;
+                    continue;
+                }
+                int n = Swar.firstByte(special);
+                out.write(store, i, n);
+                i += n;
+            }
+            int b = store.readUnsignedByte(i++);
+            if (b < 0x80 && ESCAPES[b] != 0) {
+                writeEscape(b);
+            } else {
+                out.writeByte((byte) b);
+            }
+        }
+        out.writeByte((byte) '"');
+    }
+
+    private void writeString(CharSequence cs) {
+        Bytes out = this.out;
+        out.writeByte((byte) '"');
+        int n = cs.length();
+        int i = 0;
+        while (i < n) {
+            if (i + 8 <= n) {
+                // pack 8 ASCII chars into a word, to write them at once if none is special
+                long word = 0L;
+                int or = 0;
+                for (int k = 0; k < 8; k++) {
+                    char c = cs.charAt(i + k);
+                    or |= c;
+                    word |= (long) c << (k << 3);
+                }
+                if (or < 0x80 && Swar.stringSpecialBytes(word, 0L) == 0L) {
+                    Swar.writeWord(out, word);
+                    i += 8;
+                    continue;
+                }
+            }
+            char c = cs.charAt(i++);
+            if (c < 0x80) {
+                if (ESCAPES[c] != 0) {
+                    writeEscape(c);
+                } else {
+                    out.writeByte((byte) c);
+                }
+            } else if (c < 0x800) {
+                out.writeByte((byte) (0xC0 | (c >> 6)));
+                out.writeByte((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i < n &&
+                    Character.isLowSurrogate(cs.charAt(i))) {
+                int cp = Character.toCodePoint(c, cs.charAt(i++));
+                out.writeByte((byte) (0xF0 | (cp >> 18)));
+                out.writeByte((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                out.writeByte((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                out.writeByte((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // a lone surrogate is not encodable, replaced like by String.getBytes()
+                out.writeByte((byte) '?');
+            } else {
+                out.writeByte((byte) (0xE0 | (c >> 12)));
+                out.writeByte((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.writeByte((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        out.writeByte((byte) '"');
+    }
+
+    private void writeEscape(int c) {
+        byte escape = ESCAPES[c];
+        out.writeByte((byte) '\\');
+        out.writeByte(escape);
+        if (escape == 'u') {
+            out.writeByte((byte) '0');
+            out.writeByte((byte) '0');
+            out.writeByte(HEX_DIGITS[c >> 4]);
+            out.writeByte(HEX_DIGITS[c & 0xF]);
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            out.write(MIN_LONG);
+            return;
+        }
+        byte[] digits = this.digits;
+        long n = value < 0 ? -value : value;
+        int i = digits.length;
+        while (n >= 100) {
+            long q = n / 100;
+            int r = (int) (n - q * 100) << 1;
+            n = q;
+            digits[--i] = DIGIT_PAIRS[r + 1];
+            digits[--i] = DIGIT_PAIRS[r];
+        }
+        int r = (int) n << 1;
+        digits[--i] = DIGIT_PAIRS[r + 1];
+        if (n >= 10)
+            digits[--i] = DIGIT_PAIRS[r];
+        if (value < 0)
+            digits[--i] = '-';
+        out.write(digits, i, digits.length - i);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A set of expected object keys compiled into a perfect hash table: each key has its own slot,
+ * so looking a key up costs a hash, a multiplication and a single comparison of the UTF-8
+ * bytes, 8 at a time.
+ *
+ * <p>The hash of a key is computed over its UTF-8 bytes as little-endian words, the last word
+ * zero-padded (possibly empty), then mixed with the length. This way {@link Lexer} computes
+ * the same hash while scanning the key for the closing quote, see {@link #mix(long, long)} and
+ * {@link #finish(long, long)}.
+ *
+ * @see JsonParserBuilder#knownKeys(List)
+ */
+final class KeyDictionary {
+    static final long SEED = 0x2545F4914F6CDD1DL;
+    private static final long M = 0x9E3779B97F4A7C15L;
+    private static final int MULTIPLIER_ATTEMPTS = 1000;
+
+    private final String[] keys;
+    private final int shift;
+    private final long multiplier;
+    /** key id in each slot, -1 if the slot is empty */
+    private final int[] ids;
+    private final long[] lengths;
+    private final long[][] words;
+
+    /** @param keys distinct keys */
+    KeyDictionary(List<String> keys) {
+        this.keys = keys.toArray(new String[keys.size()]);
+        int n = this.keys.length;
+        long[] hashes = new long[n];
+        byte[][] utf8 = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            utf8[i] = this.keys[i].getBytes(StandardCharsets.UTF_8);
+            hashes[i] = hash(Bytes.wrapForRead(utf8[i]), 0, utf8[i].length);
+        }
+
+        // at least twice as many slots as keys, more if no collision-free multiplier is found
+        int bits = 1;
+        while ((1 << bits) < 2 * n)
+            bits++;
+        long found = 0;
+        search:
+        for (;; bits++) {
+            int[] slots = new int[1 << bits];
+            for (int attempt = 0; attempt < MULTIPLIER_ATTEMPTS; attempt++) {
+                long candidate = M * (2 * attempt + 1);
+                Arrays.fill(slots, -1);
+                boolean collision = false;
+                for (int i = 0; i < n && !collision; i++) {
+                    int slot = slot(hashes[i], candidate, 64 - bits);
+                    collision = slots[slot] >= 0;
+                    slots[slot] = i;
+                }
+                if (!collision) {
+                    found = candidate;
+                    break search;
+                }
+            }
+        }
+        shift = 64 - bits;
+        multiplier = found;
+        ids = new int[1 << bits];
+        lengths = new long[1 << bits];
+        words = new long[1 << bits][];
+        Arrays.fill(ids, -1);
+        for (int i = 0; i < n; i++) {
+            int slot = slot(hashes[i], multiplier, shift);
+            ids[slot] = i;
+            lengths[slot] = utf8[i].length;
+            Bytes bytes = Bytes.wrapForRead(utf8[i]);
+            long[] keyWords = new long[utf8[i].length / 8 + 1];
+            for (int w = 0; w < keyWords.length; w++) {
+                keyWords[w] = word(bytes, 8 * w, utf8[i].length);
+            }
+            words[slot] = keyWords;
+        }
+    }
+
+    static long mix(long h, long word) {
+        return Long.rotateLeft((h ^ word) * M, 29);
+    }
+
+    static long finish(long h, long length) {
+        h = (h ^ length) * M;
+        return h ^ (h >>> 32);
+    }
+
+    static long hash(Bytes bytes, long off, long len) {
+        long h = SEED;
+        long i = 0;
+        for (; i + 8 <= len; i += 8) {
+            h = mix(h, Swar.readWord(bytes, off + i));
+        }
+        return finish(mix(h, word(bytes, off + i, off + len)), len);
+    }
+
+    /** little-endian word of the bytes at the offset, zero-padded at the limit */
+    private static long word(Bytes bytes, long offset, long limit) {
+        if (offset + 8 <= limit)
+            return Swar.readWord(bytes, offset);
+        long word = 0L;
+        for (int i = 0; offset + i < limit; i++) {
+            word |= (long) bytes.readUnsignedByte(offset + i) << (i << 3);
+        }
+        return word;
+    }
+
+    private static int slot(long hash, long multiplier, int shift) {
+        return (int) ((hash * multiplier) >>> shift);
+    }
+
+    /**
+     * Returns the id of the key, UTF-8 bytes of which are given, or {@code -1} if the key
+     * is unknown.
+     */
+    int find(Bytes bytes, long off, long len) {
+        return find(hash(bytes, off, len), bytes, off, len);
+    }
+
+    /**
+     * Returns the id of the key with the given {@link #hash(Bytes, long, long) hash}, UTF-8
+     * bytes of which are given, or {@code -1} if the key is unknown.
+     */
+    int find(long hash, Bytes bytes, long off, long len) {
+        int slot = slot(hash, multiplier, shift);
+        int id = ids[slot];
+        if (id < 0 || lengths[slot] != len)
+            return -1;
+        long[] keyWords = words[slot];
+        for (int w = 0; w < keyWords.length; w++) {
+            if (keyWords[w] != word(bytes, off + 8 * w, off + len))
+                return -1;
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of the given key, or {@code -1} if the key is unknown. Linear, used only
+     * for keys with escapes.
+     */
+    int find(CharSequence key) {
+        for (int id = 0; id < keys.length; id++) {
+            if (keys[id].contentEquals(key))
+                return id;
+        }
+        return -1;
+    }
+}
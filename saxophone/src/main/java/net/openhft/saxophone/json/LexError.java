@@ -31,5 +31,7 @@ enum LexError {
     MISSING_INTEGER_AFTER_DECIMAL,
     MISSING_INTEGER_AFTER_EXPONENT,
     MISSING_INTEGER_AFTER_MINUS,
-    UNALLOWED_COMMENT
+    UNALLOWED_COMMENT,
+    /** a string or number is longer than {@link Lexer#maxTokenLength} */
+    TOKEN_TOO_LONG
 }
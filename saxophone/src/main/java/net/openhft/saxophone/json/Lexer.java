@@ -107,11 +107,28 @@ final class Lexer {
             NUC, NUC, NUC        , NUC, NUC        , NUC, NUC    , NUC
     };
 
+    static final int MAX_MANTISSA_DIGITS = 19;
+    /** exponents beyond this are surely zero or infinity, just don't overflow */
+    static final long MAX_EXPONENT_VALUE = 100000;
+
     private static final char[] RUE_CHARS = new char[] {'r', 'u', 'e'};
     private static final char[] ALSE_CHARS = new char[] {'a', 'l', 's', 'e'};
     private static final char[] ULL_CHARS = new char[] {'u', 'l', 'l'};
-    /** a input buffer to handle the case where a token is spread over multiple chunks */
-    private final Bytes buf = Bytes.elasticByteBuffer();
+    /**
+     * a input buffer to handle the case where a token is spread over multiple chunks, allocated
+     * on demand
+     */
+    private Bytes buf;
+    /** buf of greater capacity is released after the token is handled */
+    private final long retainedBufCapacity;
+    /**
+     * the greatest length of a string (without quotes, with escapes not decoded) or a number,
+     * longer ones are {@link LexError#TOKEN_TOO_LONG} errors, so buf doesn't grow without bound
+     */
+    long maxTokenLength = Long.MAX_VALUE;
+    /** copies into buf and the copied bytes, see {@link JsonParserMetrics#carryOverCopies()} */
+    long carryOverCopies;
+    long carryOverBytes;
     private final boolean allowComments;
     /** shall we validate utf8 inside strings? */
     private final boolean validateUTF8;
@@ -120,34 +137,102 @@ final class Lexer {
     Bytes outBuf;
     long outPos;
     long outLen;
+    /**
+     * Out parameters of {@link #lexNumber(Bytes)}, accumulated while scanning: the number is
+     * (outNegative ? -1 : 1) * outMantissa * 10^outExponent, where outMantissa holds at most
+     * {@link #MAX_MANTISSA_DIGITS} significant digits (unsigned), and outTruncated tells if
+     * any non-zero digits didn't fit.
+     */
+    boolean outNegative;
+    long outMantissa;
+    long outExponent;
+    boolean outTruncated;
+    /**
+     * Set by the parser before lexing an object key, if the key should be hashed for
+     * the {@link KeyDictionary} lookup. If the key is a plain string which is not spread over
+     * several chunks, its hash is computed during the scan and stored in outKeyHash,
+     * and outKeyHashed is set.
+     */
+    boolean hashNextString;
+    long outKeyHash;
+    boolean outKeyHashed;
     /**
      * are we using the lex buf?
      */
     private boolean bufInUse;
+    /** was the last char read from the lex buf, rather than from the current chunk? */
+    private boolean lastCharFromBuf;
+    /** offset of the token being lexed in the current chunk */
+    private long tokenStart;
+    /**
+     * if a string hit EOF, the offset in buf from which lexString() resumes, so that the string
+     * head is not lexed again with each new chunk, otherwise 0
+     */
+    private long stringResumeOffset;
+    private boolean stringResumeHasEscapes;
 
-    Lexer(boolean allowComments, boolean validateUTF8) {
+    Lexer(boolean allowComments, boolean validateUTF8, long retainedBufCapacity) {
         this.allowComments = allowComments;
         this.validateUTF8 = validateUTF8;
+        this.retainedBufCapacity = retainedBufCapacity;
     }
 
     void reset() {
         bufInUse = false;
+        stringResumeOffset = 0;
         error = null;
         outBuf = null;
         outPos = outLen = 0;
+        shrinkBuf();
+    }
+
+    /** releases buf, if it has grown beyond the retained capacity */
+    private void shrinkBuf() {
+        if (buf != null && !bufInUse && buf.realCapacity() > retainedBufCapacity) {
+            buf.release();
+            buf = null;
+        }
+    }
+
+    /** releases buf, it will be allocated again if needed */
+    void close() {
+        if (buf != null) {
+            buf.release();
+            buf = null;
+        }
+        bufInUse = false;
+        stringResumeOffset = 0;
+        outBuf = null;
+    }
+
+    /**
+     * offset of the next char of the token being lexed from the token start, as if the token
+     * head from the previous chunks was stored in buf and the tail from this chunk appended
+     */
+    private long tokenOffset(Bytes jsonText) {
+        if (!bufInUse)
+            return jsonText.readPosition() - tokenStart;
+        long inBuf = buf.readPosition();
+        return buf.readRemaining() > 0 ? inBuf : inBuf + jsonText.readPosition() - tokenStart;
     }
 
     private int readChar(Bytes txt) {
         if (bufInUse && buf.readRemaining() > 0) {
+            lastCharFromBuf = true;
             return buf.readUnsignedByte();
 
         } else {
+            lastCharFromBuf = false;
             return txt.readUnsignedByte();
         }
     }
 
     private void unreadChar(Bytes txt) {
-        txt.readSkip(-1);
+        if (lastCharFromBuf) {
+            buf.readSkip(-1);
+        } else {
+            txt.readSkip(-1);
+        }
     }
 
     /** process a variable length utf8 encoded codepoint.
@@ -166,7 +251,8 @@ final class Lexer {
             return STRING;
 
         } else if ((curChar >> 5) == 0x6) {
-            /* two byte */
+            /* two byte, C0 and C1 could only start overlong forms */
+            if (curChar < 0xc2) return ERROR;
             if (jsonText.readRemaining() == 0) return EOF;
             curChar = readChar(jsonText);
             if ((curChar >> 6) == 0x2) return STRING;
@@ -174,17 +260,20 @@ final class Lexer {
         } else if ((curChar >> 4) == 0x0e) {
             /* three byte */
             if (jsonText.readRemaining() == 0) return EOF;
+            int leadChar = curChar;
             curChar = readChar(jsonText);
-            if ((curChar >> 6) == 0x2) {
+            if (isSecondByte(leadChar, curChar)) {
                 if (jsonText.readRemaining() == 0) return EOF;
                 curChar = readChar(jsonText);
                 if ((curChar >> 6) == 0x2) return STRING;
             }
         } else if ((curChar >> 3) == 0x1e) {
-            /* four byte */
+            /* four byte, F5 to F7 could only start codepoints above U+10FFFF */
+            if (curChar > 0xf4) return ERROR;
             if (jsonText.readRemaining() == 0) return EOF;
+            int leadChar = curChar;
             curChar = readChar(jsonText);
-            if ((curChar >> 6) == 0x2) {
+            if (isSecondByte(leadChar, curChar)) {
                 if (jsonText.readRemaining() == 0) return EOF;
                 curChar = readChar(jsonText);
                 if ((curChar >> 6) == 0x2) {
@@ -197,22 +286,77 @@ final class Lexer {
         return ERROR;
     }
 
+    /**
+     * Checks the second byte of a three or four byte sequence. Besides being a continuation
+     * byte it must not make an overlong form (after E0 or F0), a UTF-16 surrogate (after ED)
+     * or a codepoint above U+10FFFF (after F4), see the table in RFC 3629, section 4.
+     */
+    private static boolean isSecondByte(int leadChar, int c) {
+        switch (leadChar) {
+            case 0xe0: return c >= 0xa0 && c <= 0xbf;
+            case 0xed: return c >= 0x80 && c <= 0x9f;
+            case 0xf0: return c >= 0x90 && c <= 0xbf;
+            case 0xf4: return c >= 0x80 && c <= 0x8f;
+            default: return (c >> 6) == 0x2;
+        }
+    }
+
     /**
      * scan a string for interesting characters that might need further
      * review.  return the number of chars that are uninteresting and can
      * be skipped.
      * (lth) hi world, any thoughts on how to make this routine faster?
+     *
+     * Reads 8 bytes at a time (see {@link Swar}), the lookup table loop is used only
+     * for the last < 8 bytes of the buffer.
      */
     private void stringScan(Bytes bytes) {
-        int mask = IJC | NFP | (validateUTF8 ? NUC : 0);
         long pos = bytes.readPosition();
         long limit = bytes.readLimit();
+        long nonAsciiMask = validateUTF8 ? Swar.HIGH_BITS : 0L;
+        for (; pos + 8 <= limit; pos += 8) {
+            long special = Swar.stringSpecialBytes(Swar.readWord(bytes, pos), nonAsciiMask);
+            if (special != 0) {
+                bytes.readPosition(pos + Swar.firstByte(special));
+                return;
+            }
+        }
+        int mask = IJC | NFP | (validateUTF8 ? NUC : 0);
         while (pos < limit && ((CHAR_LOOKUP_TABLE[bytes.readUnsignedByte(pos)] & mask) == 0)) {
             pos++;
         }
         bytes.readPosition(pos);
     }
 
+    /**
+     * Like {@link #stringScan(Bytes)}, but also hashes the string for the {@link KeyDictionary}
+     * lookup, if the closing quote is found within the words, i. e. not in the last < 8 bytes
+     * of the buffer.
+     */
+    private void keyScan(Bytes bytes) {
+        long start = bytes.readPosition();
+        long limit = bytes.readLimit();
+        long nonAsciiMask = validateUTF8 ? Swar.HIGH_BITS : 0L;
+        long h = KeyDictionary.SEED;
+        long pos = start;
+        for (; pos + 8 <= limit; pos += 8) {
+            long word = Swar.readWord(bytes, pos);
+            long special = Swar.stringSpecialBytes(word, nonAsciiMask);
+            if (special != 0) {
+                int n = Swar.firstByte(special);
+                bytes.readPosition(pos + n);
+                if (bytes.readUnsignedByte(pos + n) == '"') {
+                    long head = word & ((1L << (n << 3)) - 1);
+                    outKeyHash = KeyDictionary.finish(KeyDictionary.mix(h, head), pos + n - start);
+                    outKeyHashed = true;
+                }
+                return;
+            }
+            h = KeyDictionary.mix(h, word);
+        }
+        bytes.readPosition(pos);
+    }
+
     /**
      * Lex a string.
      *
@@ -222,9 +366,20 @@ final class Lexer {
      *     ERROR - embedded in the string were unallowable chars.  offset
      *             points to the offending char
      */
-    private TokenType lexString(Bytes jsonText) {
+    private TokenType lexString(Bytes jsonText, boolean hash) {
         TokenType tok = ERROR;
         boolean hasEscapes = false;
+        long resumeOffset = 0;
+
+        if (bufInUse && stringResumeOffset > 0) {
+            /* the head of the string is already lexed, up to the last
+             * escape or utf8 char, which could be incomplete */
+            buf.readPosition(stringResumeOffset);
+            hasEscapes = stringResumeHasEscapes;
+        }
+        stringResumeOffset = 0;
+        if (hash && !bufInUse)
+            keyScan(jsonText);
 
         finish_string_lex:
         for (;;) {
@@ -240,6 +395,7 @@ final class Lexer {
                     stringScan(jsonText);
                 }
             }
+            resumeOffset = tokenOffset(jsonText);
 
             if (jsonText.readRemaining() == 0) {
                 tok = EOF;
@@ -307,6 +463,10 @@ final class Lexer {
             }
             /* accept it, and move on */
         }
+        if (tok == EOF) {
+            stringResumeOffset = resumeOffset;
+            stringResumeHasEscapes = hasEscapes;
+        }
         /* tell our buddy, the parser, whether he needs to process this string again */
         if (hasEscapes && tok == STRING) {
             tok = STRING_WITH_ESCAPES;
@@ -322,12 +482,18 @@ final class Lexer {
         int c;
 
         TokenType tok = INTEGER;
+        long mantissa = 0L;
+        int digits = 0;
+        long exponent = 0L;
+        boolean truncated = false;
+        outNegative = false;
 
         if (jsonText.readRemaining() == 0) return EOF;
         c = readChar(jsonText);
 
         /* optional leading minus */
         if (c == '-') {
+            outNegative = true;
             if (jsonText.readRemaining() == 0) return EOF;
             c = readChar(jsonText);
         }
@@ -339,6 +505,13 @@ final class Lexer {
 
         } else if (c >= '1' && c <= '9') {
             do {
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                } else {
+                    exponent++;
+                    truncated |= c != '0';
+                }
                 if (jsonText.readRemaining() == 0) return EOF;
                 c = readChar(jsonText);
             } while (c >= '0' && c <= '9');
@@ -358,6 +531,16 @@ final class Lexer {
 
             while (c >= '0' && c <= '9') {
                 readSome = true;
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    // leading zeros are not significant
+                    if (digits != 0 || c != '0') {
+                        mantissa = mantissa * 10 + (c - '0');
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    truncated |= c != '0';
+                }
                 if (jsonText.readRemaining() == 0) return EOF;
                 c = readChar(jsonText);
             }
@@ -372,17 +555,23 @@ final class Lexer {
 
         /* optional exponent (indicates this is floating point) */
         if (c == 'e' || c == 'E') {
+            boolean negativeExponent = false;
+            long explicitExponent = 0L;
+
             if (jsonText.readRemaining() == 0) return EOF;
             c = readChar(jsonText);
 
             /* optional sign */
             if (c == '+' || c == '-') {
+                negativeExponent = c == '-';
                 if (jsonText.readRemaining() == 0) return EOF;
                 c = readChar(jsonText);
             }
 
             if (c >= '0' && c <= '9') {
                 do {
+                    if (explicitExponent < MAX_EXPONENT_VALUE)
+                        explicitExponent = explicitExponent * 10 + (c - '0');
                     if (jsonText.readRemaining() == 0) return EOF;
                     c = readChar(jsonText);
                 } while (c >= '0' && c <= '9');
@@ -392,15 +581,41 @@ final class Lexer {
                 error = MISSING_INTEGER_AFTER_EXPONENT;
                 return ERROR;
             }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
             tok = DOUBLE;
         }
 
+        outMantissa = mantissa;
+        outExponent = exponent;
+        outTruncated = truncated;
+
         /* we always go "one too far" */
         unreadChar(jsonText);
 
         return tok;
     }
 
+    /**
+     * Returns the value of the integer, lexed by {@link #lexNumber(Bytes)}.
+     *
+     * @throws NumberFormatException if the value is out of {@code long} range
+     */
+    long outLongValue() {
+        return longValue(outNegative, outMantissa, outExponent);
+    }
+
+    /**
+     * Returns the value of an integer, accumulated like by {@link #lexNumber(Bytes)}.
+     *
+     * @throws NumberFormatException if the value is out of {@code long} range
+     */
+    static long longValue(boolean negative, long mantissa, long exponent) {
+        // more than 19 digits, or beyond Long.MAX_VALUE, except exactly -Long.MIN_VALUE
+        if (exponent != 0 || (mantissa < 0 && !(negative && mantissa == Long.MIN_VALUE)))
+            throw new NumberFormatException("integer overflow");
+        return negative ? -mantissa : mantissa;
+    }
+
     private TokenType lexComment(Bytes jsonText) {
         int c;
 
@@ -446,9 +661,16 @@ final class Lexer {
         int c;
         long startOffset = jsonText.readPosition();
 
+        if (outBuf != null && outBuf == buf) {
+            /* the previous token was handed out from buf and is handled by now */
+            shrinkBuf();
+        }
         outBuf = null;
         outPos = 0;
         outLen = 0;
+        outKeyHashed = false;
+        boolean hashString = hashNextString;
+        hashNextString = false;
 
         lexing:
         for (;;) {
@@ -537,7 +759,8 @@ final class Lexer {
                 }
 
                 case '"': {
-                    tok = lexString(jsonText);
+                    tokenStart = startOffset;
+                    tok = lexString(jsonText, hashString);
                     break lexing;
                 }
 
@@ -567,7 +790,8 @@ final class Lexer {
                      * - eof hit. (tok_eof) */
                     tok = lexComment(jsonText);
                     if (tok == COMMENT) {
-                        buf.clear();
+                        if (buf != null)
+                            buf.clear();
                         bufInUse = false;
                         startOffset = jsonText.readPosition();
                         continue lexing;
@@ -584,8 +808,16 @@ final class Lexer {
         
         /* need to append to buffer if the buffer is in use or
          * if it's an EOF token */
-        if (tok == EOF || bufInUse) {
+        if ((tok == EOF || bufInUse) &&
+                (bufInUse ? buf.writePosition() : 0) + jsonText.readPosition() - startOffset - 2 >
+                        maxTokenLength) {
+            /* the quotes of a string are not counted, numbers are checked exactly below */
+            error = TOKEN_TOO_LONG;
+            tok = ERROR;
+        } else if (tok == EOF || bufInUse) {
             if (!bufInUse) {
+                if (buf == null)
+                    buf = Bytes.elasticByteBuffer();
                 buf.readPosition(0);
                 buf.readLimit(0);
                 buf.writePosition(0);
@@ -597,7 +829,11 @@ final class Lexer {
             //System.out.println("jsonText.writePosition() " + jsonText.writePosition());
             long readPos = jsonText.readPosition();
             jsonText.readPosition(startOffset);
-            buf.write(jsonText, startOffset, jsonText.writePosition() - startOffset);
+            buf.write(jsonText, startOffset, readPos - startOffset);
+            if (readPos > startOffset) {
+                carryOverCopies++;
+                carryOverBytes += readPos - startOffset;
+            }
             jsonText.readPosition(readPos);
             buf.readPosition(0);
             //buf.readLimit(jsonText.writePosition());
@@ -622,6 +858,11 @@ final class Lexer {
             outPos++;
             outLen -= 2;
         }
+        if (outLen > maxTokenLength && (tok == STRING || tok == STRING_WITH_ESCAPES ||
+                tok == INTEGER || tok == DOUBLE)) {
+            error = TOKEN_TOO_LONG;
+            tok = ERROR;
+        }
 
         if (LOG.isDebugEnabled()) {
             if (tok == ERROR) {
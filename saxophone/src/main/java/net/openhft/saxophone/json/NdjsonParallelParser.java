@@ -0,0 +1,381 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Memory;
+import net.openhft.chronicle.core.OS;
+import net.openhft.saxophone.MappedChunks;
+import net.openhft.saxophone.json.handler.JsonHandler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+import static net.openhft.saxophone.json.JsonParserTopLevelStrategy.ALLOW_MULTIPLE_VALUES;
+
+/**
+ * Parses newline-delimited JSON (one JSON value per line, no raw newlines inside values)
+ * on several threads. The input is split into as many slices as the {@link ForkJoinPool} has
+ * workers, at record boundaries, and each slice is parsed on the pool by its own
+ * {@link JsonParser} with its own handler, obtained from the given supplier: <pre>{@code
+ * NdjsonParallelParser parallelParser = new NdjsonParallelParser();
+ * List<TradeCounter> counters = parallelParser.parse(tradeLog, TradeCounter::new);
+ * // counters are in the input order, the first one has seen the first trades
+ * }</pre>
+ *
+ * <p>Handlers of different slices are called concurrently, each handler on a single thread
+ * at a time. Slices are read from the same {@link BytesStore}, without copying, or, by {@link
+ * #parseFile(Path, Supplier)}, each slice from its own memory mappings of the file. Handlers
+ * shouldn't {@link JsonParser#pause() pause} parsing, {@code IllegalStateException} is thrown
+ * then.
+ */
+public final class NdjsonParallelParser {
+    /** smaller inputs are not split further, splitting costs more than parsing */
+    private static final long MIN_SLICE_SIZE = 64 << 10;
+
+    private final ForkJoinPool pool;
+    private final Supplier<JsonParserBuilder> builders;
+
+    /**
+     * Creates a parallel parser, parsing on the {@link ForkJoinPool#commonPool() common pool}
+     * by parsers with default options.
+     */
+    public NdjsonParallelParser() {
+        this(ForkJoinPool.commonPool(), JsonParser::builder);
+    }
+
+    /**
+     * Creates a parallel parser.
+     *
+     * @param pool the pool to parse on, the input is split into {@link
+     *             ForkJoinPool#getParallelism()} slices
+     * @param builders supplies a new builder for the parser of each slice, configured with
+     *                 options but not handlers: the handler of the slice and
+     *                 {@link JsonParserTopLevelStrategy#ALLOW_MULTIPLE_VALUES} strategy
+     *                 are set by this parser
+     */
+    public NdjsonParallelParser(ForkJoinPool pool, Supplier<JsonParserBuilder> builders) {
+        this.pool = pool;
+        this.builders = builders;
+    }
+
+    /**
+     * Parses the newline-delimited JSON between the read position and the read limit of
+     * the given {@code Bytes} in parallel, and returns the handlers of the slices in the input
+     * order. The read position is moved to the read limit.
+     *
+     * <p>The input {@code Bytes} should be backed by a single {@link BytesStore}, containing
+     * the whole input, e. g. a wrapped byte array or {@code ByteBuffer}, or a native memory
+     * range. Files are parsed by {@link #parseFile(Path, Supplier)}.
+     *
+     * @param ndjson the newline-delimited JSON
+     * @param handlers supplies a new handler for each slice, called on the calling thread
+     * @param <H> the handler type
+     * @return the handlers of the slices, in the input order
+     * @throws net.openhft.saxophone.ParseException if some slice is malformed, or if some
+     *         handler have thrown a checked exception
+     * @throws IllegalArgumentException if the input {@code Bytes} is not backed by a single
+     *         {@code BytesStore}
+     */
+    public <H extends JsonHandler> List<H> parse(Bytes ndjson, Supplier<? extends H> handlers) {
+        long start = ndjson.readPosition();
+        long limit = ndjson.readLimit();
+        BytesStore store = ndjson.bytesStore();
+        if (start < store.start() || limit > store.start() + store.capacity())
+            throw new IllegalArgumentException("input is not backed by a single BytesStore");
+        int slices = (int) Math.max(1L,
+                Math.min(pool.getParallelism(), (limit - start) / MIN_SLICE_SIZE));
+        List<H> results = new ArrayList<>(slices);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(slices);
+        long from = start;
+        for (int i = 1; i <= slices && from < limit; i++) {
+            long to = i == slices ? limit :
+                    recordEnd(ndjson, start + (limit - start) / slices * i, limit);
+            // a long record could span several slices
+            if (to <= from)
+                continue;
+            H handler = handlers.get();
+            JsonParser parser = builders.get().handler(handler)
+                    .topLevelStrategy(ALLOW_MULTIPLE_VALUES).build();
+            results.add(handler);
+            tasks.add(pool.submit(new Slice(store, parser, from, to)));
+            from = to;
+        }
+        joinAll(tasks);
+        ndjson.readPosition(limit);
+        return results;
+    }
+
+    /**
+     * Parses the newline-delimited JSON in parallel, like {@link #parse(Bytes, Supplier)},
+     * and merges the handlers of the slices in the input order: {@code merger} is applied
+     * to the merged handler of the preceding slices and the handler of the next slice.
+     *
+     * @param ndjson the newline-delimited JSON
+     * @param handlers supplies a new handler for each slice, called on the calling thread
+     * @param merger merges the handlers of the adjacent slices
+     * @param <H> the handler type
+     * @return the merged handler, or a new handler from the supplier if the input is empty
+     */
+    public <H extends JsonHandler> H parse(Bytes ndjson, Supplier<? extends H> handlers,
+                                           BinaryOperator<H> merger) {
+        return merge(parse(ndjson, handlers), handlers, merger);
+    }
+
+    /**
+     * Parses the newline-delimited JSON file in parallel, reading it through memory mappings
+     * of {@link MappedChunks#DEFAULT_CHUNK_SIZE 64 MiB} chunks, and returns the handlers of
+     * the slices in the input order.
+     *
+     * @param file the newline-delimited JSON file
+     * @param handlers supplies a new handler for each slice, called on the calling thread
+     * @param <H> the handler type
+     * @return the handlers of the slices, in the input order
+     * @throws IOException if the file couldn't be read
+     * @see #parseFile(Path, long, Supplier)
+     */
+    public <H extends JsonHandler> List<H> parseFile(Path file, Supplier<? extends H> handlers)
+            throws IOException {
+        return parseFile(file, MappedChunks.DEFAULT_CHUNK_SIZE, handlers);
+    }
+
+    /**
+     * Parses the newline-delimited JSON file in parallel, and returns the handlers of
+     * the slices in the input order. The file is split into slices of equal size, each slice
+     * is parsed from its own read-only memory mappings of consecutive chunks, like by {@link
+     * JsonParser#parseFile(Path, long)}, so files larger than RAM are parsed without copying
+     * into the heap.
+     *
+     * <p>The split points are not checked in advance. The parser of each slice skips to
+     * the first newline before or at the slice start and parses up to the first newline
+     * before or at the slice end, so the slices are split at the same record boundaries as by
+     * {@link #parse(Bytes, Supplier)}. If a record spans a whole slice, the handler of this
+     * slice sees no values.
+     *
+     * @param file the newline-delimited JSON file
+     * @param chunkSize the size of mapped chunks, rounded up to the mapping alignment
+     * @param handlers supplies a new handler for each slice, called on the calling thread
+     * @param <H> the handler type
+     * @return the handlers of the slices, in the input order
+     * @throws IOException if the file couldn't be read
+     * @throws net.openhft.saxophone.ParseException if some slice is malformed, or if some
+     *         handler have thrown a checked exception
+     * @throws IllegalArgumentException if the chunk size is not positive
+     */
+    public <H extends JsonHandler> List<H> parseFile(Path file, long chunkSize,
+                                                     Supplier<? extends H> handlers)
+            throws IOException {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunk size should be positive: " + chunkSize);
+        long size = Files.size(file);
+        int slices = (int) Math.max(1L, Math.min(pool.getParallelism(), size / MIN_SLICE_SIZE));
+        List<H> results = new ArrayList<>(slices);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(slices);
+        for (int i = 0; i < slices; i++) {
+            long from = size / slices * i;
+            long to = i == slices - 1 ? size : size / slices * (i + 1);
+            H handler = handlers.get();
+            JsonParser parser = builders.get().handler(handler)
+                    .topLevelStrategy(ALLOW_MULTIPLE_VALUES).build();
+            results.add(handler);
+            tasks.add(pool.submit(new FileSlice(file, chunkSize, parser, from, to, size)));
+        }
+        try {
+            joinAll(tasks);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return results;
+    }
+
+    /**
+     * Parses the newline-delimited JSON file in parallel, like {@link #parseFile(Path,
+     * Supplier)}, and merges the handlers of the slices in the input order, like {@link
+     * #parse(Bytes, Supplier, BinaryOperator)}.
+     *
+     * @param file the newline-delimited JSON file
+     * @param handlers supplies a new handler for each slice, called on the calling thread
+     * @param merger merges the handlers of the adjacent slices
+     * @param <H> the handler type
+     * @return the merged handler
+     * @throws IOException if the file couldn't be read
+     */
+    public <H extends JsonHandler> H parseFile(Path file, Supplier<? extends H> handlers,
+                                               BinaryOperator<H> merger) throws IOException {
+        return merge(parseFile(file, handlers), handlers, merger);
+    }
+
+    private static <H> H merge(List<H> results, Supplier<? extends H> handlers,
+                               BinaryOperator<H> merger) {
+        if (results.isEmpty())
+            return handlers.get();
+        H merged = results.get(0);
+        for (int i = 1; i < results.size(); i++) {
+            merged = merger.apply(merged, results.get(i));
+        }
+        return merged;
+    }
+
+    /** Waits for all the tasks, rethrows the first failure. */
+    private static void joinAll(List<ForkJoinTask<?>> tasks) {
+        RuntimeException failure = null;
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /** Returns the offset after the first newline at or after the given offset - 1. */
+    private static long recordEnd(Bytes bytes, long offset, long limit) {
+        for (long i = offset - 1; i < limit; i++) {
+            if (bytes.readByte(i) == '\n')
+                return i + 1;
+        }
+        return limit;
+    }
+
+    private static final class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 0L;
+
+        private final transient BytesStore store;
+        private final transient JsonParser parser;
+        private final long from;
+        private final long to;
+
+        Slice(BytesStore store, JsonParser parser, long from, long to) {
+            this.store = store;
+            this.parser = parser;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            Bytes slice = store.bytesForRead();
+            try {
+                slice.readLimit(to);
+                slice.readPosition(from);
+                parser.parse(slice);
+                parser.rejectPause("NdjsonParallelParser");
+                parser.finish();
+            } finally {
+                slice.release();
+                parser.close();
+            }
+        }
+    }
+
+    /**
+     * Parses the records, which start between {@code from} and {@code to} in the file,
+     * from its own mappings of the file, see {@link #parseFile(Path, Supplier)}.
+     */
+    private static final class FileSlice extends RecursiveAction
+            implements MappedChunks.ChunkHandler {
+        private static final long serialVersionUID = 0L;
+
+        private final transient Path file;
+        private final long chunkSize;
+        private final transient JsonParser parser;
+        private final long from;
+        private final long to;
+        private final long size;
+        /** the offset in the file of the chunk being handled */
+        private long position;
+        /** if the slice start is found, and the chunks are parsed */
+        private boolean started;
+        /** if any records are parsed, an empty slice is not finished, that is premature EOF */
+        private boolean parsed;
+
+        FileSlice(Path file, long chunkSize, JsonParser parser, long from, long to, long size) {
+            this.file = file;
+            this.chunkSize = chunkSize;
+            this.parser = parser;
+            this.from = from;
+            this.to = to;
+            this.size = size;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                // the newline before the slice start could be the last byte of the previous one
+                position = Math.max(0L, from - 1);
+                started = from == 0;
+                MappedChunks.forEach(file, position, size, chunkSize, this);
+                if (parsed)
+                    parser.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                parser.close();
+            }
+        }
+
+        @Override
+        public boolean onChunk(long address, long length) {
+            Memory memory = OS.memory();
+            long start = 0;
+            if (!started) {
+                // the record, which the previous slice parses
+                while (start < length && memory.readByte(address + start) != '\n') {
+                    start++;
+                }
+                if (start == length) {
+                    position += length;
+                    return position < to;
+                }
+                if (position + start >= to - 1)
+                    return false;
+                start++;
+                started = true;
+            }
+            // the first newline before or at the slice end ends the last record
+            long end = Math.min(length, Math.max(start, to - 1 - position));
+            while (end < length && memory.readByte(address + end) != '\n') {
+                end++;
+            }
+            boolean last = end < length;
+            if (last)
+                end++;
+            if (end > start) {
+                parser.parse(address + start, end - start);
+                parser.rejectPause("NdjsonParallelParser");
+                parsed = true;
+            }
+            position += length;
+            return !last;
+        }
+    }
+}
@@ -60,6 +60,10 @@ final class ParserState {
             stack[size++] = state;
         }
 
+        int size() {
+            return size;
+        }
+
         void pop() {
             size--;
         }
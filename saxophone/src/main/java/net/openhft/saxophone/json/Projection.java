@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON paths of the projection mode, compiled into a tree of {@link Node}s: the parser walks
+ * the tree along with the document and skips the values, which are neither on the way to one
+ * of the paths, nor inside the value at one of the paths.
+ *
+ * <p>Supported syntax: {@code $} for the root, {@code .name} for an object field and {@code [*]}
+ * for any array element, e. g. {@code $.data.bids}, {@code $.orders[*].px} or {@code $[*]}.
+ *
+ * @see JsonParserBuilder#projection(List)
+ */
+final class Projection {
+
+    static final class Node {
+        /** if the whole value at this node is selected */
+        final boolean selected;
+        @Nullable final KeyDictionary fieldNames;
+        @Nullable final Node[] fields;
+        @Nullable final Node element;
+
+        private Node(boolean selected, @Nullable KeyDictionary fieldNames,
+                     @Nullable Node[] fields, @Nullable Node element) {
+            this.selected = selected;
+            this.fieldNames = fieldNames;
+            this.fields = fields;
+            this.element = element;
+        }
+
+        /**
+         * Returns the node of the field, the UTF-8 bytes of the key of which are given,
+         * or {@code null} if the field value should be skipped.
+         *
+         * @param escapedKey the decoded key if it has escapes, otherwise {@code null}
+         */
+        @Nullable
+        Node field(Bytes bytes, long off, long len, @Nullable CharSequence escapedKey) {
+            if (selected)
+                return this;
+            if (fieldNames == null)
+                return null;
+            int id = escapedKey != null ? fieldNames.find(escapedKey) :
+                    fieldNames.find(bytes, off, len);
+            return id >= 0 ? fields[id] : null;
+        }
+
+        /** Returns the node of array elements, or {@code null} if they should be skipped. */
+        @Nullable
+        Node element() {
+            return selected ? this : element;
+        }
+    }
+
+    final Node root;
+
+    Projection(Collection<String> paths) {
+        Builder root = new Builder();
+        for (String path : paths) {
+            Builder node = root;
+            for (Object segment : parse(path)) {
+                node = node.child(segment);
+            }
+            node.selected = true;
+        }
+        this.root = root.build();
+    }
+
+    /** any array element segment */
+    private static final Object ELEMENT = new Object();
+
+    /**
+     * Returns the segments of the path: field names and {@link #ELEMENT}s.
+     *
+     * @throws IllegalArgumentException if the path is malformed
+     */
+    static List<Object> parse(String path) {
+        if (!path.startsWith("$"))
+            throw new IllegalArgumentException("path should start with '$': " + path);
+        List<Object> segments = new ArrayList<>();
+        int i = 1;
+        while (i < path.length()) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                int end = i + 1;
+                while (end < path.length() && path.charAt(end) != '.' &&
+                        path.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == i + 1)
+                    throw new IllegalArgumentException("empty field name at " + i + ": " + path);
+                segments.add(path.substring(i + 1, end));
+                i = end;
+            } else if (path.startsWith("[*]", i)) {
+                segments.add(ELEMENT);
+                i += 3;
+            } else {
+                throw new IllegalArgumentException("expected '.name' or '[*]' at " + i + ": " +
+                        path);
+            }
+        }
+        return segments;
+    }
+
+    private static final class Builder {
+        boolean selected;
+        final Map<String, Builder> fields = new LinkedHashMap<>();
+        Builder element;
+
+        Builder child(Object segment) {
+            if (segment == ELEMENT) {
+                if (element == null)
+                    element = new Builder();
+                return element;
+            }
+            Builder field = fields.get(segment);
+            if (field == null)
+                fields.put((String) segment, field = new Builder());
+            return field;
+        }
+
+        Node build() {
+            if (selected)
+                return new Node(true, null, null, null);
+            KeyDictionary fieldNames = null;
+            Node[] fieldNodes = null;
+            if (!fields.isEmpty()) {
+                fieldNames = new KeyDictionary(new ArrayList<>(fields.keySet()));
+                fieldNodes = new Node[fields.size()];
+                int i = 0;
+                for (Builder field : fields.values()) {
+                    fieldNodes[i++] = field.build();
+                }
+            }
+            return new Node(false, fieldNames, fieldNodes,
+                    element != null ? element.build() : null);
+        }
+    }
+}
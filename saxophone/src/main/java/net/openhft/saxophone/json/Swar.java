@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+
+import java.nio.ByteOrder;
+
+/**
+ * "SIMD within a register" helpers: classify 8 bytes of JSON text at once using plain
+ * {@code long} arithmetic, so that hot scanning loops stay Java 8 compatible.
+ *
+ * <p>All the {@code *Bytes} methods return a mask with the high bit of each matching byte set.
+ * Only the lowest matching byte is exact: a borrow may set false positives in the bytes
+ * after it. Words are always little-endian, so {@link #firstByte(long)} finds the first match
+ * in text order.
+ */
+final class Swar {
+    static final long ONES = 0x0101010101010101L;
+    static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long QUOTES = '"' * ONES;
+    static final long BACKSLASHES = '\\' * ONES;
+    private static final long SPACES = ' ' * ONES;
+    private static final boolean BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    private Swar() {
+    }
+
+    /** reads 8 bytes at the given offset as a little-endian word */
+    static long readWord(BytesStore bytes, long offset) {
+        long word = bytes.readLong(offset);
+        return BIG_ENDIAN ? Long.reverseBytes(word) : word;
+    }
+
+    /** writes 8 bytes of the little-endian word, so that they follow in text order */
+    static void writeWord(Bytes bytes, long word) {
+        bytes.writeLong(BIG_ENDIAN ? Long.reverseBytes(word) : word);
+    }
+
+    static long zeroBytes(long word) {
+        return (word - ONES) & ~word & HIGH_BITS;
+    }
+
+    static long bytesEqualTo(long word, long pattern) {
+        return zeroBytes(word ^ pattern);
+    }
+
+    /** bytes lesser than 0x20, i. e. control chars which are not allowed in JSON strings */
+    static long controlBytes(long word) {
+        return (word - SPACES) & ~word & HIGH_BITS;
+    }
+
+    /**
+     * Bytes which stop the fast string scan: quotes, backslashes, control chars and, if
+     * {@code nonAsciiMask} is {@link #HIGH_BITS}, bytes of multi-byte UTF-8 sequences.
+     */
+    static long stringSpecialBytes(long word, long nonAsciiMask) {
+        return bytesEqualTo(word, QUOTES) | bytesEqualTo(word, BACKSLASHES) |
+                controlBytes(word) | (word & nonAsciiMask);
+    }
+
+    /** index of the first (in text order) byte of the match mask, which must be non-zero */
+    static int firstByte(long mask) {
+        return Long.numberOfTrailingZeros(mask) >>> 3;
+    }
+}
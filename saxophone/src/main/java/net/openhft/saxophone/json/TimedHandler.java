@@ -0,0 +1,255 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.saxophone.json.handler.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Decorates the handlers of a parser built with {@link JsonParserBuilder#handlerTimeSampling(
+ * int) handler time sampling}: every sampled call is timed with {@link System#nanoTime()}.
+ * The builder passes this decorator to the parser in place of each non-null handler, so
+ * the parser reports exactly the same tokens, and parsers without sampling are not affected.
+ */
+final class TimedHandler implements ObjectStartHandler, ObjectEndHandler,
+        ArrayStartHandler, ArrayEndHandler, BooleanHandler, NullHandler,
+        StringValueHandler, RawStringValueHandler, ObjectKeyHandler, RawObjectKeyHandler,
+        KnownKeyHandler, NumberHandler, IntegerHandler, FloatingHandler {
+
+    private final JsonParserMetrics metrics;
+    @Nullable private final ObjectStartHandler objectStartHandler;
+    @Nullable private final ObjectEndHandler objectEndHandler;
+    @Nullable private final ArrayStartHandler arrayStartHandler;
+    @Nullable private final ArrayEndHandler arrayEndHandler;
+    @Nullable private final BooleanHandler booleanHandler;
+    @Nullable private final NullHandler nullHandler;
+    @Nullable private final StringValueHandler stringValueHandler;
+    @Nullable private final RawStringValueHandler rawStringValueHandler;
+    @Nullable private final ObjectKeyHandler objectKeyHandler;
+    @Nullable private final RawObjectKeyHandler rawObjectKeyHandler;
+    @Nullable private final KnownKeyHandler knownKeyHandler;
+    @Nullable private final NumberHandler numberHandler;
+    @Nullable private final IntegerHandler integerHandler;
+    @Nullable private final FloatingHandler floatingHandler;
+
+    TimedHandler(JsonParserMetrics metrics,
+                 @Nullable ObjectStartHandler objectStartHandler,
+                 @Nullable ObjectEndHandler objectEndHandler,
+                 @Nullable ArrayStartHandler arrayStartHandler,
+                 @Nullable ArrayEndHandler arrayEndHandler,
+                 @Nullable BooleanHandler booleanHandler,
+                 @Nullable NullHandler nullHandler,
+                 @Nullable StringValueHandler stringValueHandler,
+                 @Nullable RawStringValueHandler rawStringValueHandler,
+                 @Nullable ObjectKeyHandler objectKeyHandler,
+                 @Nullable RawObjectKeyHandler rawObjectKeyHandler,
+                 @Nullable KnownKeyHandler knownKeyHandler,
+                 @Nullable NumberHandler numberHandler,
+                 @Nullable IntegerHandler integerHandler,
+                 @Nullable FloatingHandler floatingHandler) {
+        this.metrics = metrics;
+        this.objectStartHandler = objectStartHandler;
+        this.objectEndHandler = objectEndHandler;
+        this.arrayStartHandler = arrayStartHandler;
+        this.arrayEndHandler = arrayEndHandler;
+        this.booleanHandler = booleanHandler;
+        this.nullHandler = nullHandler;
+        this.stringValueHandler = stringValueHandler;
+        this.rawStringValueHandler = rawStringValueHandler;
+        this.objectKeyHandler = objectKeyHandler;
+        this.rawObjectKeyHandler = rawObjectKeyHandler;
+        this.knownKeyHandler = knownKeyHandler;
+        this.numberHandler = numberHandler;
+        this.integerHandler = integerHandler;
+        this.floatingHandler = floatingHandler;
+    }
+
+    /** returns the decorator if the handler is non-null, otherwise null */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    <H> H timed(@Nullable H handler) {
+        return handler != null ? (H) this : null;
+    }
+
+    /** returns the start time, or 0 if the call is not sampled */
+    private long start() {
+        return metrics.sampleHandlerCall() ? System.nanoTime() : 0L;
+    }
+
+    private void end(long start) {
+        if (start != 0L)
+            metrics.onHandlerTime(System.nanoTime() - start);
+    }
+
+    @Override
+    public boolean onObjectStart() throws IOException {
+        long start = start();
+        try {
+            return objectStartHandler.onObjectStart();
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onObjectEnd() throws IOException {
+        long start = start();
+        try {
+            return objectEndHandler.onObjectEnd();
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onArrayStart() throws IOException {
+        long start = start();
+        try {
+            return arrayStartHandler.onArrayStart();
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onArrayEnd() throws IOException {
+        long start = start();
+        try {
+            return arrayEndHandler.onArrayEnd();
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onBoolean(boolean value) throws IOException {
+        long start = start();
+        try {
+            return booleanHandler.onBoolean(value);
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onNull() throws IOException {
+        long start = start();
+        try {
+            return nullHandler.onNull();
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onStringValue(CharSequence value) throws IOException {
+        long start = start();
+        try {
+            return stringValueHandler.onStringValue(value);
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onRawStringValue(BytesStore store, long offset, long length,
+                                    boolean hasEscapes) throws IOException {
+        long start = start();
+        try {
+            return rawStringValueHandler.onRawStringValue(store, offset, length, hasEscapes);
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onObjectKey(CharSequence key) throws IOException {
+        long start = start();
+        try {
+            return objectKeyHandler.onObjectKey(key);
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onRawObjectKey(BytesStore store, long offset, long length,
+                                  boolean hasEscapes) throws IOException {
+        long start = start();
+        try {
+            return rawObjectKeyHandler.onRawObjectKey(store, offset, length, hasEscapes);
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onKnownKey(int id) throws IOException {
+        long start = start();
+        try {
+            return knownKeyHandler.onKnownKey(id);
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onUnknownKey(CharSequence key) throws IOException {
+        long start = start();
+        try {
+            return knownKeyHandler.onUnknownKey(key);
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onNumber(CharSequence number) {
+        long start = start();
+        try {
+            return numberHandler.onNumber(number);
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onInteger(long value) throws IOException {
+        long start = start();
+        try {
+            return integerHandler.onInteger(value);
+        } finally {
+            end(start);
+        }
+    }
+
+    @Override
+    public boolean onFloating(double value) throws IOException {
+        long start = start();
+        try {
+            return floatingHandler.onFloating(value);
+        } finally {
+            end(start);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.saxophone.json.handler.JsonHandler;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Handler, which records the parsed tokens into a compact binary event stream, to be replayed
+ * by {@link TokenReplayer} to other handlers any number of times, without lexing the JSON again:
+ * <pre>{@code
+ * TokenRecorder recorder = new TokenRecorder(recording, json);
+ * JsonParser parser = JsonParser.builder().handler(recorder).build();
+ * parser.parse(json);
+ * parser.finish();
+ * riskReplayer.replay(recording, json);
+ * analyticsReplayer.replay(recording, json);
+ * }</pre>
+ *
+ * <p>Each event is a code byte, followed by:
+ * <ul>
+ *     <li>nothing for object and array starts and ends, {@code null}, {@code true} and
+ *     {@code false};</li>
+ *     <li>for strings, object keys and numbers, the stop bit encoded offset and length of
+ *     the raw token in the source {@code Bytes}, if the recorder is given the source and
+ *     the token is read right from it; otherwise the stop bit encoded length and the raw token
+ *     bytes. Escapes are not decoded, but flagged in the code byte;</li>
+ *     <li>for numbers, then the stop bit encoded significand and exponent, accumulated by
+ *     the lexer, the sign and if the significand is truncated are flagged in the code
+ *     byte.</li>
+ * </ul>
+ *
+ * <p>The recording doesn't depend on the recorder or the parser, and could be kept for later
+ * replay. Recordings with source offsets should be replayed with the same source.
+ *
+ * <p>Numbers are recorded as text, like with {@link
+ * net.openhft.saxophone.json.handler.NumberHandler}, which the recorder is registered as, so
+ * any JSON number is recorded exactly. When the recorder is the number handler of
+ * a {@link JsonParser}, the significand and the exponent are taken from the lexer, so that
+ * the number is not scanned again, neither by the recorder nor by the replayer. Numbers given
+ * to {@link #onNumber(CharSequence)} otherwise are lexed by the recorder.
+ */
+public final class TokenRecorder implements JsonHandler {
+    static final byte OBJECT_START = 1;
+    static final byte OBJECT_END = 2;
+    static final byte ARRAY_START = 3;
+    static final byte ARRAY_END = 4;
+    static final byte NULL = 5;
+    static final byte FALSE = 6;
+    static final byte TRUE = 7;
+    static final byte INTEGER = 8;
+    static final byte FLOATING = 9;
+    static final byte STRING = 10;
+    static final byte KEY = 11;
+    /** flag of strings and keys with escapes */
+    static final byte ESCAPED = 0x10;
+    /** flag of numbers with non-zero digits beyond the significand, never escaped */
+    static final byte TRUNCATED = ESCAPED;
+    /** flag of tokens recorded as an offset and a length in the source */
+    static final byte SOURCE_REF = 0x20;
+    /** flag of negative numbers */
+    static final byte NEGATIVE = 0x40;
+    static final byte TYPE_MASK = 0x0F;
+
+    private final Bytes recording;
+    @Nullable
+    private final Bytes source;
+    private long tokens;
+    /** lexes the numbers given as text, created on demand */
+    @Nullable
+    private Lexer numberLexer;
+    private Bytes numberText;
+
+    /**
+     * Creates a recorder, which appends the events to the given {@code Bytes}, copying
+     * strings and object keys into the recording.
+     *
+     * @param recording the {@code Bytes} to append the events to, from its write position
+     */
+    public TokenRecorder(Bytes recording) {
+        this(recording, null);
+    }
+
+    /**
+     * Creates a recorder, which appends the events to the given {@code Bytes}, referring to
+     * the strings and object keys, which the parser reads right from the given source,
+     * by their offsets. The strings spanning several portions of JSON are copied.
+     *
+     * @param recording the {@code Bytes} to append the events to, from its write position
+     * @param source the {@code Bytes}, which will be given to
+     *        {@link JsonParser#parse(Bytes)}, or {@code null} to copy all the strings
+     */
+    public TokenRecorder(Bytes recording, @Nullable Bytes source) {
+        this.recording = recording;
+        this.source = source;
+    }
+
+    /**
+     * Returns the {@code Bytes} the events are appended to.
+     *
+     * @return the recording
+     */
+    public Bytes recording() {
+        return recording;
+    }
+
+    /**
+     * Returns the number of events recorded by this recorder.
+     *
+     * @return the number of recorded events
+     */
+    public long tokens() {
+        return tokens;
+    }
+
+    @Override
+    public boolean onObjectStart() {
+        return write(OBJECT_START);
+    }
+
+    @Override
+    public boolean onObjectEnd() {
+        return write(OBJECT_END);
+    }
+
+    @Override
+    public boolean onArrayStart() {
+        return write(ARRAY_START);
+    }
+
+    @Override
+    public boolean onArrayEnd() {
+        return write(ARRAY_END);
+    }
+
+    @Override
+    public boolean onNull() {
+        return write(NULL);
+    }
+
+    @Override
+    public boolean onBoolean(boolean value) {
+        return write(value ? TRUE : FALSE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the given text is not a JSON number
+     */
+    @Override
+    public boolean onNumber(CharSequence number) {
+        if (numberLexer == null) {
+            numberLexer = new Lexer(false, true, 0L);
+            numberText = Bytes.elasticByteBuffer(32);
+        }
+        numberLexer.reset();
+        numberText.clear();
+        // numbers are ASCII, and complete only when followed by something
+        for (int i = 0; i < number.length(); i++) {
+            numberText.writeByte((byte) number.charAt(i));
+        }
+        numberText.writeByte((byte) ' ');
+        TokenType tok = numberLexer.lex(numberText);
+        if ((tok != TokenType.INTEGER && tok != TokenType.DOUBLE) ||
+                numberText.readRemaining() != 1) {
+            throw new IllegalArgumentException("not a JSON number: " + number);
+        }
+        if (number instanceof Utf8CharSequence) {
+            Utf8CharSequence view = (Utf8CharSequence) number;
+            return writeNumber(numberLexer, tok == TokenType.DOUBLE,
+                    view.bytes(), view.offset(), view.byteLength());
+        }
+        return writeNumber(numberLexer, tok == TokenType.DOUBLE,
+                numberText, 0, numberText.writePosition() - 1);
+    }
+
+    /**
+     * Records the number just lexed by the parser's lexer, called by {@link JsonParser}
+     * instead of {@link #onNumber(CharSequence)}.
+     */
+    boolean onNumber(Lexer lexer, boolean floating) {
+        return writeNumber(lexer, floating, lexer.outBuf, lexer.outPos, lexer.outLen);
+    }
+
+    private boolean writeNumber(Lexer lexer, boolean floating,
+                                BytesStore store, long offset, long length) {
+        int code = floating ? FLOATING : INTEGER;
+        if (lexer.outNegative)
+            code |= NEGATIVE;
+        if (lexer.outTruncated)
+            code |= TRUNCATED;
+        writeToken(code, store, offset, length);
+        recording.writeStopBit(lexer.outMantissa);
+        recording.writeStopBit(lexer.outExponent);
+        return true;
+    }
+
+    @Override
+    public boolean onRawStringValue(BytesStore store, long offset, long length,
+                                    boolean hasEscapes) {
+        return writeToken(hasEscapes ? STRING | ESCAPED : STRING, store, offset, length);
+    }
+
+    @Override
+    public boolean onRawObjectKey(BytesStore store, long offset, long length,
+                                  boolean hasEscapes) {
+        return writeToken(hasEscapes ? KEY | ESCAPED : KEY, store, offset, length);
+    }
+
+    private boolean write(byte code) {
+        recording.writeByte(code);
+        tokens++;
+        return true;
+    }
+
+    private boolean writeToken(int code, BytesStore store, long offset, long length) {
+        if (store == source) {
+            write((byte) (code | SOURCE_REF));
+            recording.writeStopBit(offset);
+            recording.writeStopBit(length);
+        } else {
+            write((byte) code);
+            recording.writeStopBit(length);
+            recording.write(store, offset, length);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.ParseException;
+import net.openhft.saxophone.json.handler.*;
+import org.jetbrains.annotations.Nullable;
+
+import static net.openhft.saxophone.json.TokenRecorder.*;
+
+/**
+ * Replays the events recorded by {@link TokenRecorder} to the handlers, configured in the
+ * {@link JsonParserBuilder}, which has built this replayer, see
+ * {@link JsonParserBuilder#buildReplayer()}. The handlers are called just like by
+ * {@link JsonParser} built with the same builder, but without lexing, validating and converting
+ * anything: the events are read in a tight loop, strings and keys are given to the handlers
+ * right from the recording or the source.
+ *
+ * <p>Tokens without the corresponding handler are skipped. Numbers are recorded as text, so
+ * {@link NumberHandler} is given the original text. Next to the text, the significand and
+ * the exponent accumulated by the lexer are recorded, so numbers replayed to
+ * {@link IntegerHandler} or {@link FloatingHandler} are converted right from them, exactly like
+ * by {@code JsonParser}.
+ * Integers beyond {@code long} range replayed to {@code IntegerHandler} are reported with
+ * {@link ParseException}.
+ *
+ * <p>The replayer holds no state between {@code replay} calls, but reuses the views of strings,
+ * so it is not thread-safe. Different replayers could replay the same recording concurrently,
+ * each through its own {@code Bytes}, e. g. given by {@code recording.bytesForRead()}.
+ */
+public final class TokenReplayer {
+
+    @Nullable private final ObjectStartHandler objectStartHandler;
+    @Nullable private final ObjectEndHandler objectEndHandler;
+    @Nullable private final ArrayStartHandler arrayStartHandler;
+    @Nullable private final ArrayEndHandler arrayEndHandler;
+    @Nullable private final BooleanHandler booleanHandler;
+    @Nullable private final NullHandler nullHandler;
+    @Nullable private final StringValueHandler stringValueHandler;
+    @Nullable private final RawStringValueHandler rawStringValueHandler;
+    @Nullable private final ObjectKeyHandler objectKeyHandler;
+    @Nullable private final RawObjectKeyHandler rawObjectKeyHandler;
+    @Nullable private final KnownKeyHandler knownKeyHandler;
+    @Nullable private final KeyDictionary keyDictionary;
+    @Nullable private final NumberHandler numberHandler;
+    @Nullable private final IntegerHandler integerHandler;
+    @Nullable private final FloatingHandler floatingHandler;
+    private final Utf8CharSequence utf8View = new Utf8CharSequence();
+
+    TokenReplayer(@Nullable ObjectStartHandler objectStartHandler,
+                  @Nullable ObjectEndHandler objectEndHandler,
+                  @Nullable ArrayStartHandler arrayStartHandler,
+                  @Nullable ArrayEndHandler arrayEndHandler,
+                  @Nullable BooleanHandler booleanHandler,
+                  @Nullable NullHandler nullHandler,
+                  @Nullable StringValueHandler stringValueHandler,
+                  @Nullable RawStringValueHandler rawStringValueHandler,
+                  @Nullable ObjectKeyHandler objectKeyHandler,
+                  @Nullable RawObjectKeyHandler rawObjectKeyHandler,
+                  @Nullable KnownKeyHandler knownKeyHandler,
+                  @Nullable KeyDictionary keyDictionary,
+                  @Nullable NumberHandler numberHandler,
+                  @Nullable IntegerHandler integerHandler,
+                  @Nullable FloatingHandler floatingHandler) {
+        this.objectStartHandler = objectStartHandler;
+        this.objectEndHandler = objectEndHandler;
+        this.arrayStartHandler = arrayStartHandler;
+        this.arrayEndHandler = arrayEndHandler;
+        this.booleanHandler = booleanHandler;
+        this.nullHandler = nullHandler;
+        this.stringValueHandler = stringValueHandler;
+        this.rawStringValueHandler = rawStringValueHandler;
+        this.objectKeyHandler = objectKeyHandler;
+        this.rawObjectKeyHandler = rawObjectKeyHandler;
+        this.knownKeyHandler = knownKeyHandler;
+        this.keyDictionary = keyDictionary;
+        this.numberHandler = numberHandler;
+        this.integerHandler = integerHandler;
+        this.floatingHandler = floatingHandler;
+    }
+
+    /**
+     * Replays the recording without source references, see {@link TokenRecorder#TokenRecorder(
+     * Bytes)}.
+     *
+     * @param recording the recording
+     * @return {@code true} if the replay wasn't cancelled by handlers
+     * @see #replay(Bytes, Bytes)
+     */
+    public boolean replay(Bytes recording) {
+        return replay(recording, null);
+    }
+
+    /**
+     * Replays the events from the {@link Bytes#readPosition() read position} to the
+     * {@link Bytes#readLimit() read limit} of the recording. The read position is not moved,
+     * so the same recording could be replayed again.
+     *
+     * <p>If any handler returns {@code false}, the replay stops and {@code false} is returned.
+     * Checked exceptions thrown by the handlers are wrapped with {@link ParseException},
+     * unchecked ones are rethrown, like by {@link JsonParser#parse(Bytes)}.
+     *
+     * @param recording the recording
+     * @param source the source, which the recorder was given, or {@code null} if strings are
+     *        copied into the recording
+     * @return {@code true} if the replay wasn't cancelled by handlers
+     * @throws IllegalArgumentException if the recording refers to the source, but it is not
+     *         given, or the recording is malformed
+     */
+    public boolean replay(Bytes recording, @Nullable Bytes source) {
+        long pos = recording.readPosition();
+        try {
+            return replay0(recording, source);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ParseException("Exception in the handler", e);
+        } finally {
+            recording.readPosition(pos);
+        }
+    }
+
+    private boolean replay0(Bytes in, @Nullable Bytes source) throws Exception {
+        while (in.readRemaining() > 0) {
+            int code = in.readByte();
+            switch (code & TYPE_MASK) {
+                case OBJECT_START:
+                    if (objectStartHandler != null && !objectStartHandler.onObjectStart())
+                        return false;
+                    break;
+                case OBJECT_END:
+                    if (objectEndHandler != null && !objectEndHandler.onObjectEnd())
+                        return false;
+                    break;
+                case ARRAY_START:
+                    if (arrayStartHandler != null && !arrayStartHandler.onArrayStart())
+                        return false;
+                    break;
+                case ARRAY_END:
+                    if (arrayEndHandler != null && !arrayEndHandler.onArrayEnd())
+                        return false;
+                    break;
+                case NULL:
+                    if (nullHandler != null && !nullHandler.onNull())
+                        return false;
+                    break;
+                case FALSE:
+                case TRUE:
+                    if (booleanHandler != null && !booleanHandler.onBoolean(code == TRUE))
+                        return false;
+                    break;
+                case INTEGER:
+                case FLOATING:
+                case STRING:
+                case KEY: {
+                    Bytes store = in;
+                    long offset, length;
+                    if ((code & SOURCE_REF) != 0) {
+                        if (source == null) {
+                            throw new IllegalArgumentException(
+                                    "the recording refers to the source, which is not given");
+                        }
+                        store = source;
+                        offset = in.readStopBit();
+                        length = in.readStopBit();
+                    } else {
+                        length = in.readStopBit();
+                        offset = in.readPosition();
+                        in.readSkip(length);
+                    }
+                    boolean escaped = (code & ESCAPED) != 0;
+                    boolean proceed;
+                    switch (code & TYPE_MASK) {
+                        case INTEGER:
+                            proceed = onInteger(store, offset, length, code, in.readStopBit(),
+                                    in.readStopBit());
+                            break;
+                        case FLOATING:
+                            proceed = onFloating(store, offset, length, code, in.readStopBit(),
+                                    in.readStopBit());
+                            break;
+                        case STRING:
+                            proceed = onString(store, offset, length, escaped);
+                            break;
+                        default:
+                            proceed = onKey(store, offset, length, escaped);
+                    }
+                    if (!proceed)
+                        return false;
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("malformed recording, code " + code +
+                            " at " + (in.readPosition() - 1));
+            }
+        }
+        return true;
+    }
+
+    private CharSequence stringValue(Bytes store, long offset, long length, boolean escaped) {
+        return escaped ? utf8View.setEscaped(store, offset, length) :
+                utf8View.set(store, offset, length);
+    }
+
+    private boolean onInteger(Bytes store, long offset, long length,
+                              int code, long mantissa, long exponent) throws Exception {
+        if (integerHandler != null) {
+            long value;
+            try {
+                value = Lexer.longValue((code & NEGATIVE) != 0, mantissa, exponent);
+            } catch (NumberFormatException e) {
+                throw new ParseException("integer overflow", e);
+            }
+            return integerHandler.onInteger(value);
+        }
+        return onNumber(store, offset, length);
+    }
+
+    private boolean onFloating(Bytes store, long offset, long length,
+                               int code, long mantissa, long exponent) throws Exception {
+        if (floatingHandler != null) {
+            return floatingHandler.onFloating(DoubleParser.toDouble((code & NEGATIVE) != 0,
+                    mantissa, exponent, (code & TRUNCATED) != 0, store, offset, length));
+        }
+        return onNumber(store, offset, length);
+    }
+
+    private boolean onNumber(Bytes store, long offset, long length) throws Exception {
+        if (numberHandler == null)
+            return true;
+        try {
+            return numberHandler.onNumber(stringValue(store, offset, length, false));
+        } finally {
+            utf8View.clear();
+        }
+    }
+
+    private boolean onString(Bytes store, long offset, long length, boolean escaped)
+            throws Exception {
+        if (rawStringValueHandler != null)
+            return rawStringValueHandler.onRawStringValue(store, offset, length, escaped);
+        if (stringValueHandler == null)
+            return true;
+        try {
+            return stringValueHandler.onStringValue(stringValue(store, offset, length, escaped));
+        } finally {
+            utf8View.clear();
+        }
+    }
+
+    private boolean onKey(Bytes store, long offset, long length, boolean escaped)
+            throws Exception {
+        try {
+            if (knownKeyHandler != null) {
+                assert keyDictionary != null;
+                CharSequence key = escaped ? stringValue(store, offset, length, true) : null;
+                int id = key != null ? keyDictionary.find(key) :
+                        keyDictionary.find(store, offset, length);
+                return id >= 0 ? knownKeyHandler.onKnownKey(id) : knownKeyHandler.onUnknownKey(
+                        key != null ? key : stringValue(store, offset, length, false));
+            }
+            if (rawObjectKeyHandler != null)
+                return rawObjectKeyHandler.onRawObjectKey(store, offset, length, escaped);
+            if (objectKeyHandler == null)
+                return true;
+            return objectKeyHandler.onObjectKey(stringValue(store, offset, length, escaped));
+        } finally {
+            utf8View.clear();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.saxophone.json;
+
+import net.openhft.saxophone.ParseException;
+
+/**
+ * Thrown by {@code JsonParser} and {@code JsonReader} if a string or a number is longer
+ * than {@link JsonParserBuilder#maxTokenLength(long)}.
+ */
+public class TokenTooLongException extends ParseException {
+    private final long limit;
+
+    TokenTooLongException(long limit) {
+        super("string or number is longer than " + limit + " bytes");
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the exceeded limit.
+     *
+     * @return the greatest allowed length of a string or a number, in bytes
+     */
+    public long limit() {
+        return limit;
+    }
+}
@@ -19,72 +19,154 @@
 package net.openhft.saxophone.json;
 
 import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
 
 /**
- * Porting note: this class approximately corresponds to src/yajl_encode.c and src/yajl_encode.h
- * in YAJL.
+ * Decodes JSON string contents with escapes, as given to
+ * {@link net.openhft.saxophone.json.handler.RawStringValueHandler} and
+ * {@link net.openhft.saxophone.json.handler.RawObjectKeyHandler} when {@code hasEscapes} is
+ * {@code true}, into a caller-supplied buffer: UTF-16 chars or UTF-8 bytes.
  *
- * I tried to preserve method order and names to ease side-to-side comparison.
+ * <p>Backslashes are found 8 bytes at a time, and the runs between escapes are copied
+ * in bulk. <code>&#92;uXXXX</code> escapes of a surrogate pair are combined into a single
+ * code point in UTF-8 output; in UTF-16 output they are just written one after another.
+ * Lone surrogates are kept as they are in UTF-16 output, like {@link String}s allow, and
+ * replaced with {@code U+FFFD} in UTF-8 output.
+ *
+ * <p>Porting note: this class approximately corresponds to src/yajl_encode.c and
+ * src/yajl_encode.h in YAJL.
  */
-final class Unescaper {
+public final class Unescaper {
+    private static final int REPLACEMENT = 0xFFFD;
 
     private Unescaper() {
     }
 
-    private static char hexToDigit(Bytes hex, long pos) {
-        int val = 0;
-        for (int i = 0; i < 4; i++) {
-            int c = hex.readUnsignedByte(pos + i);
-            if (c >= 'A') c = (c & ~0x20) - 7;
-            c -= '0';
-            assert (c & 0xF0) == 0;
-            val = (val << 4) | c;
+    /**
+     * Decodes the escaped UTF-8 string contents of the given length at the given offset of
+     * the store into UTF-16 chars.
+     *
+     * @param src the store of the string contents, read by absolute offsets
+     * @param offset the offset of the first byte of the string contents, after the opening quote
+     * @param length the length of the string contents in bytes, before the closing quote
+     * @param dst the array to decode into, should have at least {@code length} chars after
+     *            {@code dstOffset}, which is enough for any string contents
+     * @param dstOffset the index in {@code dst} of the first decoded char
+     * @return the number of decoded chars
+     * @throws IllegalArgumentException if the string contains an invalid escape
+     */
+    public static int unescape(BytesStore src, long offset, long length,
+                               char[] dst, int dstOffset) {
+        long end = offset + length;
+        long pos = offset;
+        int n = dstOffset;
+        while (pos < end) {
+            long backslash = indexOfBackslash(src, pos, end);
+            n = Utf8CharSequence.transcode(src, pos, backslash, dst, n);
+            if (backslash == end)
+                break;
+            int c = escapedChar(src, backslash, end);
+            dst[n++] = (char) c;
+            pos = backslash + (src.readUnsignedByte(backslash + 1) == 'u' ? 6 : 2);
         }
-        return (char) val;
+        return n - dstOffset;
     }
 
-    static void decode(StringBuilder buf, Bytes str) {
-        long len = str.readRemaining();
-        long pos = str.readPosition();
-        int beg = 0;
-        long end = pos;
-        char codePoint;
-        while (end < len) {
-            if (str.readUnsignedByte(end) == '\\') {
-                buf.append(str, beg, (int) (beg + end - pos));
-                switch (str.readUnsignedByte(++end)) {
-                    case 'r': codePoint = '\r'; break;
-
-                    case 'n': codePoint = '\n'; break;
-
-                    case '\\': codePoint = '\\'; break;
-
-                    case '/': codePoint = '/'; break;
-
-                    case '"': codePoint = '\"'; break;
-
-                    case 'f': codePoint = '\f'; break;
-
-                    case 'b': codePoint = '\b'; break;
-
-                    case 't': codePoint = '\t'; break;
-
-                    case 'u': {
-                        codePoint = hexToDigit(str, ++end);
-                        end += 3;
-                        break;
+    /**
+     * Decodes the escaped UTF-8 string contents of the given length at the given offset of
+     * the store, writing unescaped UTF-8 bytes to the given {@code Bytes}.
+     *
+     * @param src the store of the string contents, read by absolute offsets
+     * @param offset the offset of the first byte of the string contents, after the opening quote
+     * @param length the length of the string contents in bytes, before the closing quote
+     * @param dst the bytes to write to, from the write position
+     * @return the number of written bytes
+     * @throws IllegalArgumentException if the string contains an invalid escape
+     */
+    public static long unescapeToUtf8(BytesStore src, long offset, long length, Bytes dst) {
+        long start = dst.writePosition();
+        long end = offset + length;
+        long pos = offset;
+        while (pos < end) {
+            long backslash = indexOfBackslash(src, pos, end);
+            if (backslash > pos)
+                dst.write(src, pos, backslash - pos);
+            if (backslash == end)
+                break;
+            int c = escapedChar(src, backslash, end);
+            pos = backslash + 2;
+            if (src.readUnsignedByte(backslash + 1) == 'u') {
+                pos += 4;
+                if (Character.isHighSurrogate((char) c)) {
+                    int low = pos + 6 <= end && src.readUnsignedByte(pos) == '\\' &&
+                            src.readUnsignedByte(pos + 1) == 'u' ?
+                            escapedChar(src, pos, end) : -1;
+                    if (low >= 0 && Character.isLowSurrogate((char) low)) {
+                        c = Character.toCodePoint((char) c, (char) low);
+                        pos += 6;
+                    } else {
+                        c = REPLACEMENT;
                     }
-
-                    default:
-                        throw new AssertionError("this should never happen");
+                } else if (Character.isLowSurrogate((char) c)) {
+                    c = REPLACEMENT;
                 }
-                buf.append(codePoint);
-                beg = (int) ((++end) - pos);
+            }
+            dst.appendUtf8(c);
+        }
+        return dst.writePosition() - start;
+    }
+
+    /** returns the offset of the first backslash in the range, or the end of the range */
+    private static long indexOfBackslash(BytesStore src, long from, long to) {
+        long pos = from;
+        for (; pos + 8 <= to; pos += 8) {
+            long backslashes = Swar.bytesEqualTo(Swar.readWord(src, pos), Swar.BACKSLASHES);
+            if (backslashes != 0L)
+                return pos + Swar.firstByte(backslashes);
+        }
+        for (; pos < to; pos++) {
+            if (src.readUnsignedByte(pos) == '\\')
+                return pos;
+        }
+        return to;
+    }
 
-            } else {
-                end++;
+    /** decodes the escape at the given offset into a UTF-16 char */
+    private static int escapedChar(BytesStore src, long backslash, long end) {
+        if (backslash + 1 >= end)
+            throw invalidEscape(src, backslash, end);
+        switch (src.readUnsignedByte(backslash + 1)) {
+            case 'r': return '\r';
+            case 'n': return '\n';
+            case '\\': return '\\';
+            case '/': return '/';
+            case '"': return '"';
+            case 'f': return '\f';
+            case 'b': return '\b';
+            case 't': return '\t';
+            case 'u': {
+                if (backslash + 6 > end)
+                    throw invalidEscape(src, backslash, end);
+                int val = 0;
+                for (int i = 2; i < 6; i++) {
+                    int digit = Character.digit(src.readUnsignedByte(backslash + i), 16);
+                    if (digit < 0)
+                        throw invalidEscape(src, backslash, end);
+                    val = (val << 4) | digit;
+                }
+                return val;
             }
+            default:
+                throw invalidEscape(src, backslash, end);
+        }
+    }
+
+    private static IllegalArgumentException invalidEscape(BytesStore src, long backslash,
+                                                          long end) {
+        StringBuilder sb = new StringBuilder("invalid escape at ").append(backslash).append(": ");
+        for (long i = backslash; i < Math.min(end, backslash + 6); i++) {
+            sb.append((char) src.readUnsignedByte(i));
         }
-        buf.append(str, beg, (int) (beg + end - pos));
+        return new IllegalArgumentException(sb.toString());
     }
 }
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+
+import java.util.Arrays;
+
+/**
+ * A reusable {@code CharSequence} view of UTF-8 bytes as UTF-16 chars, passed to the handlers
+ * of string values, object keys and numbers. The bytes are decoded lazily, on the first call
+ * of any method:
+ * <ul>
+ *     <li>if all the bytes are ASCII (checked 8 bytes at a time), nothing is decoded:
+ *     {@link #charAt(int)} reads the byte right from the underlying {@code Bytes};</li>
+ *     <li>otherwise the bytes are transcoded into the reused {@code char[]}, runs of ASCII
+ *     are copied 8 bytes at a time. Malformed sequences, possible only if the parser doesn't
+ *     validate strings (the validating lexer rejects overlong forms and surrogates too), are
+ *     replaced with {@code U+FFFD}, like
+ *     {@link String#String(byte[], java.nio.charset.Charset)} does.</li>
+ *     <li>if the bytes contain escapes, see {@link #setEscaped(Bytes, long, long)}, they are
+ *     decoded by {@link Unescaper} into the same {@code char[]}.</li>
+ * </ul>
+ *
+ * <p>The view doesn't allocate, unless the char buffer needs to grow or {@link #toString()}
+ * or {@link #subSequence(int, int)} is called, and it is valid only until the next
+ * {@code set} call.
+ */
+final class Utf8CharSequence implements CharSequence {
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private Bytes bytes;
+    private long offset;
+    private int byteLength;
+    private boolean escaped;
+    /** -1 if the bytes are not yet decoded */
+    private int length = -1;
+    private boolean ascii;
+    /** if ascii, the chars are copied only on demand, see filledChars() */
+    private boolean charsFilled;
+    private char[] chars = new char[64];
+
+    /** views the given UTF-8 bytes without escapes */
+    Utf8CharSequence set(Bytes bytes, long offset, long length) {
+        return set(bytes, offset, length, false);
+    }
+
+    /** views the given UTF-8 bytes with JSON escapes, which are decoded */
+    Utf8CharSequence setEscaped(Bytes bytes, long offset, long length) {
+        return set(bytes, offset, length, true);
+    }
+
+    private Utf8CharSequence set(Bytes bytes, long offset, long length, boolean escaped) {
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("string is too long: " + length + " bytes");
+        this.bytes = bytes;
+        this.offset = offset;
+        this.byteLength = (int) length;
+        this.escaped = escaped;
+        this.length = -1;
+        return this;
+    }
+
+    Bytes bytes() {
+        return bytes;
+    }
+
+    long offset() {
+        return offset;
+    }
+
+    int byteLength() {
+        return byteLength;
+    }
+
+    /** releases the reference to the underlying bytes */
+    void clear() {
+        bytes = null;
+        length = -1;
+    }
+
+    @Override
+    public int length() {
+        if (length < 0)
+            decode();
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length())
+            throw new StringIndexOutOfBoundsException(index);
+        return ascii ? (char) bytes.readUnsignedByte(offset + index) : chars[index];
+    }
+
+    /** Returns {@code true} if this sequence has the same chars as the given one. */
+    boolean contentEquals(CharSequence cs) {
+        // UTF-8 and escapes take at least as many bytes as chars
+        if (cs.length() > byteLength || cs.length() != length())
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (charAt(i) != cs.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length())
+            throw new StringIndexOutOfBoundsException("start " + start + ", end " + end +
+                    ", length " + length);
+        return new String(filledChars(), start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(filledChars(), 0, length());
+    }
+
+    private char[] filledChars() {
+        if (length() > 0 && ascii && !charsFilled) {
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) bytes.readUnsignedByte(offset + i);
+            }
+            charsFilled = true;
+        }
+        return chars;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (chars.length < capacity)
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length << 1));
+    }
+
+    private void decode() {
+        Bytes bytes = this.bytes;
+        long offset = this.offset;
+        int len = byteLength;
+        charsFilled = false;
+        // never more UTF-16 chars than UTF-8 bytes, escaped or not
+        if (escaped) {
+            ascii = false;
+            ensureCapacity(len);
+            length = Unescaper.unescape(bytes, offset, len, chars, 0);
+            return;
+        }
+        int i = 0;
+        for (; i + 8 <= len; i += 8) {
+            if ((bytes.readLong(offset + i) & Swar.HIGH_BITS) != 0L)
+                break;
+        }
+        for (; i < len; i++) {
+            if (bytes.readByte(offset + i) < 0)
+                break;
+        }
+        if (i == len) {
+            ascii = true;
+            length = len;
+            return;
+        }
+        ascii = false;
+        ensureCapacity(len);
+        char[] chars = this.chars;
+        for (int j = 0; j < i; j++) {
+            chars[j] = (char) bytes.readUnsignedByte(offset + j);
+        }
+        length = transcode(bytes, offset + i, offset + len, chars, i);
+    }
+
+    /**
+     * Transcodes the UTF-8 bytes in the given range of the store into UTF-16 chars, starting
+     * from the given index of the array, which must have enough room: as many chars as bytes.
+     *
+     * @return the index after the last written char
+     */
+    static int transcode(BytesStore src, long from, long to, char[] dst, int n) {
+        long i = from;
+        while (i < to) {
+            if (i + 8 <= to) {
+                long word = Swar.readWord(src, i);
+                if ((word & Swar.HIGH_BITS) == 0L) {
+                    for (int k = 0; k < 8; k++, word >>>= 8) {
+                        dst[n++] = (char) (word & 0xFF);
+                    }
+                    i += 8;
+                    continue;
+                }
+            }
+            int b0 = src.readUnsignedByte(i);
+            if (b0 < 0x80) {
+                dst[n++] = (char) b0;
+                i++;
+            } else if (b0 >= 0xC2 && b0 < 0xE0 && continuations(src, i, 1, to)) {
+                dst[n++] = (char) (((b0 & 0x1F) << 6) | cont(src, i + 1));
+                i += 2;
+            } else if (b0 >= 0xE0 && b0 < 0xF0 && continuations(src, i, 2, to)) {
+                int cp = ((b0 & 0x0F) << 12) | (cont(src, i + 1) << 6) | cont(src, i + 2);
+                // overlong encodings and surrogates are malformed
+                dst[n++] = cp < 0x800 || Character.isSurrogate((char) cp) ?
+                        REPLACEMENT : (char) cp;
+                i += 3;
+            } else if (b0 >= 0xF0 && b0 < 0xF5 && continuations(src, i, 3, to)) {
+                int cp = ((b0 & 0x07) << 18) | (cont(src, i + 1) << 12) |
+                        (cont(src, i + 2) << 6) | cont(src, i + 3);
+                if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT &&
+                        cp <= Character.MAX_CODE_POINT) {
+                    dst[n++] = Character.highSurrogate(cp);
+                    dst[n++] = Character.lowSurrogate(cp);
+                } else {
+                    dst[n++] = REPLACEMENT;
+                }
+                i += 4;
+            } else {
+                dst[n++] = REPLACEMENT;
+                i++;
+            }
+        }
+        return n;
+    }
+
+    /** if there are count continuation bytes after the given one, before the limit */
+    private static boolean continuations(BytesStore src, long i, int count, long limit) {
+        if (i + count >= limit)
+            return false;
+        for (int k = 1; k <= count; k++) {
+            if ((src.readUnsignedByte(i + k) & 0xC0) != 0x80)
+                return false;
+        }
+        return true;
+    }
+
+    private static int cont(BytesStore src, long i) {
+        return src.readUnsignedByte(i) & 0x3F;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+
+/**
+ * Skips JSON values, which are out of the {@link Projection}, by balancing brackets and quotes
+ * only: no tokens, no escape decoding, no number conversion and no validation, except that
+ * a skipped value (or entry of the skipped rest of a container) should be present. String
+ * bodies and nested containers are scanned 8 bytes at a time for the next quote, backslash or
+ * bracket.
+ *
+ * <p>The skipper keeps its state between the portions of JSON, so a value may span any number
+ * of them.
+ */
+final class ValueSkipper {
+    /** maps '[' to '{' and ']' to '}' */
+    private static final long CASE_BITS = 0x20 * Swar.ONES;
+    private static final long OPENING = '{' * Swar.ONES;
+    private static final long CLOSING = '}' * Swar.ONES;
+    private static final long QUOTES = '"' * Swar.ONES;
+
+    private boolean active;
+    /** if skipping the rest of the container, rather than a single value */
+    private boolean rest;
+    /** the depth of the skipped values: 0 for a single value, 1 for the rest of the container */
+    private int base;
+    private int depth;
+    /** if a value has started at the base depth, since the start or the last comma */
+    private boolean valueSeen;
+    /**
+     * if a comma or a colon has been seen at the base depth, a value is expected rather than
+     * the end of the container
+     */
+    private boolean afterSeparator;
+    private boolean missingValue;
+    private boolean inString;
+    private boolean escape;
+    private boolean inScalar;
+
+    void reset() {
+        active = false;
+    }
+
+    boolean active() {
+        return active;
+    }
+
+    /** if the skip which has just finished was started by {@link #startRest()} */
+    boolean wasRest() {
+        return rest;
+    }
+
+    /**
+     * If the skip which has just finished ended where a value was expected, e. g. {@code ,} right
+     * after an object key or {@code [1,]}, that is the JSON is malformed.
+     */
+    boolean missingValue() {
+        return missingValue;
+    }
+
+    /** starts skipping a single value */
+    void startValue() {
+        start(false, 0, false);
+    }
+
+    /**
+     * Starts skipping the rest of the array or object, which has just started, up to but
+     * excluding its closing bracket.
+     */
+    void startRest() {
+        start(true, 1, false);
+    }
+
+    /**
+     * Starts skipping the rest of the array or object, up to but excluding its closing bracket,
+     * right after an element or an entry of it.
+     */
+    void startRestAfterEntry() {
+        start(true, 1, true);
+    }
+
+    private void start(boolean rest, int depth, boolean valueSeen) {
+        active = true;
+        this.rest = rest;
+        this.base = this.depth = depth;
+        this.valueSeen = valueSeen;
+        inString = escape = inScalar = false;
+        afterSeparator = missingValue = false;
+    }
+
+    /**
+     * Skips whitespaces and returns the next byte, without consuming it, or {@code -1} if there
+     * are only whitespaces till the read limit.
+     */
+    static int peek(Bytes text) {
+        long pos = text.readPosition();
+        long limit = text.readLimit();
+        for (; pos < limit; pos++) {
+            int c = text.readUnsignedByte(pos);
+            if (c > ' ' || (c != ' ' && c != '\t' && c != '\n' && c != '\r')) {
+                text.readPosition(pos);
+                return c;
+            }
+        }
+        text.readPosition(pos);
+        return -1;
+    }
+
+    /**
+     * Skips from the read position of the text, until the value (or the rest of the array) ends
+     * or until the read limit.
+     *
+     * @return {@code true} if the skip is finished, {@code false} if more input is needed
+     */
+    boolean skip(Bytes text) {
+        long pos = text.readPosition();
+        long limit = text.readLimit();
+        while (pos < limit) {
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                    pos++;
+                    continue;
+                }
+                for (; pos + 8 <= limit; pos += 8) {
+                    long word = Swar.readWord(text, pos);
+                    long special = Swar.bytesEqualTo(word, QUOTES) |
+                            Swar.bytesEqualTo(word, Swar.BACKSLASHES);
+                    if (special != 0L) {
+                        pos += Swar.firstByte(special);
+                        break;
+                    }
+                }
+                if (pos == limit)
+                    break;
+                int c = text.readUnsignedByte(pos++);
+                if (c == '\\') {
+                    escape = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (depth == 0)
+                        return finish(text, pos);
+                }
+                continue;
+            }
+            if (depth > base) {
+                // inside a container only quotes and brackets matter
+                for (; pos + 8 <= limit; pos += 8) {
+                    long word = Swar.readWord(text, pos);
+                    long cased = word | CASE_BITS;
+                    long special = Swar.bytesEqualTo(word, QUOTES) |
+                            Swar.bytesEqualTo(cased, OPENING) | Swar.bytesEqualTo(cased, CLOSING);
+                    if (special != 0L) {
+                        pos += Swar.firstByte(special);
+                        break;
+                    }
+                }
+                if (pos == limit)
+                    break;
+            }
+            int c = text.readUnsignedByte(pos);
+            if (inScalar) {
+                if (c > ' ' && c != ',' && c != '}' && c != ']' && c != ':') {
+                    pos++;
+                    continue;
+                }
+                inScalar = false;
+                if (depth == 0)
+                    return finish(text, pos);
+            }
+            switch (c) {
+                case '"':
+                    if (depth == base)
+                        valueSeen = true;
+                    inString = true;
+                    pos++;
+                    break;
+                case '{':
+                case '[':
+                    if (depth == base)
+                        valueSeen = true;
+                    depth++;
+                    pos++;
+                    break;
+                case '}':
+                case ']':
+                    // the end of the enclosing container, not consumed
+                    if (depth == base) {
+                        if (!valueSeen && (!rest || afterSeparator))
+                            return missingValue(text, pos);
+                        return finish(text, pos);
+                    }
+                    depth--;
+                    pos++;
+                    if (depth == 0)
+                        return finish(text, pos);
+                    break;
+                case ',':
+                    if (depth == base) {
+                        if (!valueSeen)
+                            return missingValue(text, pos);
+                        if (depth == 0)
+                            return finish(text, pos);
+                        valueSeen = false;
+                        afterSeparator = true;
+                    }
+                    pos++;
+                    break;
+                case ':':
+                    if (depth == base) {
+                        if (!rest)
+                            return missingValue(text, pos);
+                        // the value of an object entry
+                        valueSeen = false;
+                        afterSeparator = true;
+                    }
+                    pos++;
+                    break;
+                default:
+                    if (depth == base && c > ' ') {
+                        valueSeen = true;
+                        inScalar = true;
+                    }
+                    pos++;
+            }
+        }
+        text.readPosition(pos);
+        return false;
+    }
+
+    private boolean missingValue(Bytes text, long pos) {
+        missingValue = true;
+        return finish(text, pos);
+    }
+
+    private boolean finish(Bytes text, long pos) {
+        text.readPosition(pos);
+        active = false;
+        return true;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.saxophone.json.handler;
+
+import net.openhft.chronicle.bytes.BytesStore;
+
+import java.io.IOException;
+
+/**
+ * All the parser callbacks in a single interface, each one is a no-op, which continues parsing,
+ * by default. Override just the needed callbacks and pass the handler to
+ * {@link net.openhft.saxophone.json.JsonParserBuilder#handler(JsonHandler)}: only
+ * the overridden callbacks are registered in the built parser, so it skips the tokens of
+ * the others (and, unless {@link
+ * net.openhft.saxophone.json.JsonParserBuilder#eachTokenMustBeHandled(boolean)} is switched off,
+ * complains about them) exactly as if they were separate handlers, which are not set.
+ *
+ * <p>The same restrictions as for the separate handlers apply to the overridden callbacks:
+ * {@link #onNumber(CharSequence)} couldn't be overridden together with
+ * {@link #onInteger(long)} or {@link #onFloating(double)}, string and raw string callbacks
+ * are mutually exclusive, and so on.
+ *
+ * <p>The parser calls the callbacks through interface call sites, which are shared by all
+ * parsers in the JVM. The JIT inlines them while a single handler class is used, with parsers
+ * of several handler classes they are dispatched virtually, see {@code
+ * HandlerDispatchBenchmark} in the benchmarks module.
+ *
+ * <p>Example usage: <pre>{@code
+ * JsonParser parser = JsonParser.builder().handler(new JsonHandler() {
+ *     &#64;Override
+ *     public boolean onInteger(long value) {
+ *         sum += value;
+ *         return true;
+ *     }
+ * }).build();
+ * }</pre>
+ *
+ * @see net.openhft.saxophone.json.JsonParserBuilder#handler(JsonHandler)
+ */
+public interface JsonHandler extends ObjectStartHandler, ObjectEndHandler,
+        ArrayStartHandler, ArrayEndHandler, BooleanHandler, NullHandler,
+        StringValueHandler, RawStringValueHandler, ObjectKeyHandler, RawObjectKeyHandler,
+        KnownKeyHandler, NumberHandler, IntegerHandler, FloatingHandler, ResetHook {
+
+    @Override
+    default boolean onObjectStart() throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onObjectEnd() throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onArrayStart() throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onArrayEnd() throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onBoolean(boolean value) throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onNull() throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onStringValue(CharSequence value) throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onRawStringValue(BytesStore store, long offset, long length,
+                                     boolean hasEscapes) throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onObjectKey(CharSequence key) throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onRawObjectKey(BytesStore store, long offset, long length,
+                                   boolean hasEscapes) throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onKnownKey(int id) throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onUnknownKey(CharSequence key) throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onNumber(CharSequence number) {
+        return true;
+    }
+
+    @Override
+    default boolean onInteger(long value) throws IOException {
+        return true;
+    }
+
+    @Override
+    default boolean onFloating(double value) throws IOException {
+        return true;
+    }
+
+    @Override
+    default void onReset() {
+    }
+}
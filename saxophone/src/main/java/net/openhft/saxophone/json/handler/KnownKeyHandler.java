@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.saxophone.json.handler;
+
+import java.io.IOException;
+
+/**
+ * Triggered on JSON object key instead of {@link ObjectKeyHandler}, if the parser is configured
+ * with a set of expected keys: see
+ * {@link net.openhft.saxophone.json.JsonParserBuilder#knownKeys(java.util.List)}.
+ *
+ * @see net.openhft.saxophone.json.JsonParserBuilder#knownKeyHandler(KnownKeyHandler)
+ */
+public interface KnownKeyHandler extends JsonHandlerBase {
+    /**
+     * Handles a JSON object key, which is one of the expected keys.
+     *
+     * @param id the index of the key in the list of expected keys
+     * @return {@code true} if the parsing should be continued, {@code false} if it should be
+     *         stopped immediately
+     * @throws IOException  if an error occurred during handling
+     */
+    boolean onKnownKey(int id) throws IOException;
+
+    /**
+     * Handles a JSON object key, which is not one of the expected keys.
+     *
+     * @param key the object key, a view valid only during this call, use
+     *            {@code key.toString()} to keep it
+     * @return {@code true} if the parsing should be continued, {@code false} if it should be
+     *         stopped immediately
+     * @throws IOException  if an error occurred during handling
+     */
+    boolean onUnknownKey(CharSequence key) throws IOException;
+}
@@ -29,7 +29,8 @@ public interface ObjectKeyHandler extends JsonHandlerBase {
     /**
      * Handles a JSON object key: for example, {@code `"foo"`} or {@code `""`}.
      *
-     * @param key the object key
+     * @param key the object key, a view valid only during this call, use
+     *            {@code key.toString()} to keep it
      * @return {@code true} if the parsing should be continued, {@code false} if it should be
      *         stopped immediately
      * @throws IOException  if an error occurred during handling
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json.handler;
+
+import net.openhft.chronicle.bytes.BytesStore;
+
+import java.io.IOException;
+
+/**
+ * Triggered on JSON object key instead of {@link ObjectKeyHandler}, with the raw UTF-8 bytes of
+ * the key between the quotes, as they are in the input (or in the parser's carry-over buffer,
+ * if the key spans several portions of the input). Neither the bytes are copied, nor the store's
+ * cursors are touched.
+ *
+ * @see net.openhft.saxophone.json.JsonParserBuilder#rawObjectKeyHandler(RawObjectKeyHandler)
+ */
+public interface RawObjectKeyHandler extends JsonHandlerBase {
+    /**
+     * Handles a JSON object key. The store and the range are valid only during this call.
+     *
+     * @param store the store of the raw UTF-8 bytes of the key, to read them by absolute
+     *              offsets, e. g. {@link BytesStore#readUnsignedByte(long)}
+     * @param offset the offset of the first byte of the key in the store
+     * @param length the length of the key in bytes
+     * @param hasEscapes if there are escape sequences like {@code \n}
+     *                   in the key, they are not decoded
+     * @return {@code true} if the parsing should be continued, {@code false} if it should be
+     *         stopped immediately
+     * @throws IOException  if an error occurred during handling
+     */
+    boolean onRawObjectKey(BytesStore store, long offset, long length, boolean hasEscapes)
+            throws IOException;
+}
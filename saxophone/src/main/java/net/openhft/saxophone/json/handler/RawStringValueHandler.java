@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json.handler;
+
+import net.openhft.chronicle.bytes.BytesStore;
+
+import java.io.IOException;
+
+/**
+ * Triggered on JSON array, object or standalone (top-level) string value instead of
+ * {@link StringValueHandler}, with the raw UTF-8 bytes of the value between the quotes, as they
+ * are in the input (or in the parser's carry-over buffer, if the value spans several portions of
+ * the input). Neither the bytes are copied, nor the store's cursors are touched.
+ *
+ * @see net.openhft.saxophone.json.JsonParserBuilder#rawStringValueHandler(RawStringValueHandler)
+ */
+public interface RawStringValueHandler extends JsonHandlerBase {
+    /**
+     * Handles a JSON array, object or standalone (top-level) string value: for example,
+     * {@code `"foo"`} or {@code `""`}. The store and the range are valid only during this call.
+     *
+     * @param store the store of the raw UTF-8 bytes of the value, to read them by absolute
+     *              offsets, e. g. {@link BytesStore#readUnsignedByte(long)}
+     * @param offset the offset of the first byte of the value in the store
+     * @param length the length of the value in bytes
+     * @param hasEscapes if there are escape sequences like {@code \n}
+     *                   in the value, they are not decoded
+     * @return {@code true} if the parsing should be continued, {@code false} if it should be
+     *         stopped immediately
+     * @throws IOException  if an error occurred during handling
+     */
+    boolean onRawStringValue(BytesStore store, long offset, long length, boolean hasEscapes)
+            throws IOException;
+}
@@ -31,7 +31,8 @@ public interface StringValueHandler extends JsonHandlerBase {
      * Handles a JSON array, object or standalone (top-level) string value: for example,
      * {@code `"foo"`} or {@code `""`}.
      *
-     * @param value the string value
+     * @param value the string value, a view valid only during this call, use
+     *              {@code value.toString()} to keep it
      * @return {@code true} if the parsing should be continued, {@code false} if it should be
      *         stopped immediately
      * @throws IOException  if an error occurred during handling
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.fix.FixHandler;
+import net.openhft.saxophone.fix.FixSaxParser;
+import net.openhft.saxophone.json.JsonParser;
+import net.openhft.saxophone.json.JsonParserTopLevelStrategy;
+import net.openhft.saxophone.json.handler.IntegerHandler;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public final class ChannelSaxDriverTest {
+
+    /** returns the input in random pieces, including empty ones, like a non-blocking socket */
+    static final class PieceChannel implements ReadableByteChannel {
+        private final byte[] input;
+        private final Random random = new Random(1);
+        private int position;
+
+        PieceChannel(String input) {
+            this.input = input.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (position == input.length)
+                return -1;
+            int n = Math.min(Math.min(random.nextInt(8), dst.remaining()),
+                    input.length - position);
+            dst.put(input, position, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testFix() throws Exception {
+        String s = "8=FIX.4.2|9=130|35=D|34=659|49=BROKER04|56=REUTERS|52=20070123-19:09:43|38=1000|59=1|100=N|40=1|11=ORD10001|60=20070123-19:01:17|55=HPQ|54=1|21=2|10=004|";
+        StringBuilder messages = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            messages.append(s);
+        }
+        final StringBuilder sb = new StringBuilder();
+        FixSaxParser parser = new FixSaxParser(new FixHandler() {
+            @Override
+            public void onField(long fieldNumber, Bytes value) {
+                sb.append(fieldNumber).append("=").append(value.toString()).append("|");
+            }
+
+            @Override
+            public void completeMessage(Bytes bytes) {
+            }
+        });
+        // the buffer is just larger than the longest field
+        try (ChannelSaxDriver driver = new ChannelSaxDriver(parser, 24)) {
+            long total = driver.readAndParseAll(
+                    new PieceChannel(messages.toString().replace('|', '\u0001')));
+            assertEquals(messages.length(), total);
+            assertEquals(total, driver.bytesRead());
+            assertEquals(driver.readCount(), driver.parseCount());
+            assertEquals(0, driver.unconsumed());
+        }
+        assertEquals(messages.toString(), sb.toString());
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        StringBuilder json = new StringBuilder();
+        long expected = 0;
+        for (int i = 0; i < 1000; i++) {
+            json.append("{\"id\": ").append(i * 1000003L).append(", \"s\": \"abc\"}\n");
+            expected += i * 1000003L;
+        }
+        final long[] sum = {0};
+        JsonParser parser = JsonParser.builder()
+                .topLevelStrategy(JsonParserTopLevelStrategy.ALLOW_MULTIPLE_VALUES)
+                .eachTokenMustBeHandled(false)
+                .integerHandler(new IntegerHandler() {
+                    @Override
+                    public boolean onInteger(long value) {
+                        sum[0] += value;
+                        return true;
+                    }
+                }).build();
+        try (ChannelSaxDriver driver = new ChannelSaxDriver(parser.asBytesSaxParser(), 16)) {
+            driver.readAndParseAll(new PieceChannel(json.toString()));
+        }
+        parser.finish();
+        assertEquals(expected, sum[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFieldLongerThanBuffer() throws Exception {
+        FixSaxParser parser = new FixSaxParser(new FixHandler() {
+            @Override
+            public void onField(long fieldNumber, Bytes value) {
+            }
+
+            @Override
+            public void completeMessage(Bytes bytes) {
+            }
+        });
+        new ChannelSaxDriver(parser, 8).readAndParseAll(
+                new PieceChannel("58=a very long text field\u0001"));
+    }
+}
@@ -24,6 +24,9 @@ import net.openhft.chronicle.bytes.NativeBytesStore;
 import net.openhft.chronicle.bytes.StopCharTesters;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
@@ -49,6 +52,37 @@ public class FixSaxParserTest {
         assertEquals(s, sb.toString());
     }
 
+    @Test
+    public void testParseFile() throws IOException {
+        String s = "8=FIX.4.2|9=130|35=D|34=659|49=BROKER04|56=REUTERS|52=20070123-19:09:43|38=1000|59=1|100=N|40=1|11=ORD10001|60=20070123-19:01:17|55=HPQ|54=1|21=2|10=004|";
+        StringBuilder messages = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            messages.append(s.replace("ORD10001", "ORD" + i));
+        }
+        Path file = Files.createTempFile("saxophone", ".fix");
+        try {
+            Files.write(file, messages.toString().replace('|', '\u0001').getBytes());
+            final StringBuilder sb = new StringBuilder();
+            FixSaxParser parser = new FixSaxParser(new FixHandler() {
+                @Override
+                public void onField(long fieldNumber, Bytes value) {
+                    sb.append(fieldNumber).append("=")
+                            .append(value.toString()).append("|");
+                }
+
+                @Override
+                public void completeMessage(Bytes bytes) {
+
+                }
+            });
+            // the smallest chunks, so that many fields span chunk borders
+            parser.parseFile(file, 1);
+            assertEquals(messages.toString(), sb.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
     @Test
     public void timeParseSingleOrder() {
         String s = "8=FIX.4.2|9=130|35=D|34=659|49=BROKER04|56=REUTERS|52=20070123-19:09:43|38=1000|59=1|100=N|40=1|11=ORD10001|60=20070123-19:01:17|55=HPQ|54=1|21=2|10=004|";
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Differential test of {@link DoubleParser} against {@link Double#parseDouble(String)}.
+ * The number of random inputs per case could be raised with
+ * {@code -Dsaxophone.doubleParser.iterations=300000000}.
+ */
+public final class DoubleParserTest {
+
+    private static final int ITERATIONS =
+            Integer.getInteger("saxophone.doubleParser.iterations", 200000);
+
+    private final Lexer lexer = new Lexer(false, true, Long.MAX_VALUE);
+    private final Bytes bytes = Bytes.elasticByteBuffer();
+
+    @Test
+    public void testSpecialCases() {
+        String[] numbers = {
+                "0.0", "-0.0", "0e10", "-0E-10", "1.0", "-1.5", "0.1", "1e22", "1e23", "9e22",
+                "9007199254740993.0", "9007199254740992.5", "2.2250738585072011e-308",
+                "2.2250738585072012e-308", "2.2250738585072014e-308", "4.9e-324", "2.4e-324",
+                "2.5e-324", "1e-400", "1.7976931348623157e308", "1.7976931348623158e308",
+                "1.7976931348623159e308", "1e309", "-1e400", "123456789012345678901234567890.0",
+                "0.000000000000000000000000000001234567890123456789012345", "1e-0", "1E+0",
+                "7.2057594037927933e16", "9.9999999999999999999e99", "1.00000000000000011102230246251565404236316680908203125",
+                "1.00000000000000011102230246251565404236316680908203124",
+                "1.00000000000000011102230246251565404236316680908203126",
+                "9.214843750000000000000000000000000000000000000000000000000e6",
+        };
+        for (String number : numbers) {
+            check(number);
+        }
+    }
+
+    @Test
+    public void testRandomDoubles() {
+        Random random = new Random(1);
+        for (int i = 0; i < ITERATIONS; i++) {
+            double d = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(d) || Double.isInfinite(d))
+                continue;
+            check(Double.toString(d));
+            check(new BigDecimal(d).toString().replace("E", "e"));
+        }
+    }
+
+    @Test
+    public void testRandomDecimals() {
+        Random random = new Random(2);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sb.setLength(0);
+            if (random.nextBoolean())
+                sb.append('-');
+            int intDigits = random.nextInt(25);
+            if (intDigits == 0) {
+                sb.append('0');
+            } else {
+                sb.append((char) ('1' + random.nextInt(9)));
+                for (int j = 1; j < intDigits; j++) {
+                    sb.append((char) ('0' + random.nextInt(10)));
+                }
+            }
+            sb.append('.');
+            int fractionDigits = 1 + random.nextInt(25);
+            for (int j = 0; j < fractionDigits; j++) {
+                sb.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextBoolean()) {
+                sb.append(random.nextBoolean() ? 'e' : 'E');
+                int r = random.nextInt(3);
+                if (r == 1) sb.append('-');
+                else if (r == 2) sb.append('+');
+                sb.append(random.nextInt(340));
+            }
+            check(sb.toString());
+        }
+    }
+
+    /** numbers in the middle between two adjacent doubles */
+    @Test
+    public void testHalfwayCases() {
+        Random random = new Random(3);
+        for (int i = 0; i < ITERATIONS; i++) {
+            double d = Math.abs(Double.longBitsToDouble(random.nextLong()));
+            if (Double.isNaN(d) || Double.isInfinite(d) || d == Double.MAX_VALUE)
+                continue;
+            BigDecimal halfway = new BigDecimal(d).add(new BigDecimal(Math.nextUp(d)))
+                    .divide(BigDecimal.valueOf(2));
+            check(halfway.toString().replace("E", "e"));
+        }
+    }
+
+    private void check(String number) {
+        if (!number.matches(".*[.eE].*"))
+            number += ".0";
+        lexer.reset();
+        bytes.clear();
+        // numbers are complete only when followed by something
+        bytes.append(number).append(' ');
+        long off = bytes.readPosition();
+        assertEquals(number, TokenType.DOUBLE, lexer.lex(bytes));
+        double expected = Double.parseDouble(number);
+        double actual = DoubleParser.toDouble(lexer.outNegative, lexer.outMantissa,
+                lexer.outExponent, lexer.outTruncated, bytes, off, number.length());
+        assertEquals(number, Double.doubleToRawLongBits(expected),
+                Double.doubleToRawLongBits(actual));
+    }
+}
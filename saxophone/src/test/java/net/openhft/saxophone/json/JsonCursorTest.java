@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.ParseException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class JsonCursorTest {
+
+    private static final String MESSAGE = "{\"seq\": 42, \"skip\": {\"a\": [1, \"}]\\\"\"], " +
+            "\"b\": {}}, \"sym\": \"EUR/USD\", \"px\": 1.0845, \"qty\": 1000000, " +
+            "\"venue\": {\"id\": \"X\\u0059Z\", \"opts\": [true], \"live\": true}, " +
+            "\"note\": null, \"last\": -7}";
+
+    private final JsonCursor cursor = new JsonCursor();
+
+    private static Bytes bytes(String json) {
+        return Bytes.wrapForRead(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFieldsInDocumentOrder() {
+        for (int i = 0; i < 2; i++) {
+            cursor.reset(bytes(MESSAGE));
+            assertEquals(42L, cursor.getLong("seq"));
+            assertEquals("EUR/USD", cursor.getString("sym").toString());
+            assertEquals(1.0845, cursor.getDouble("px"), 0.0);
+            assertEquals(1e6, cursor.getDouble("qty"), 0.0);
+            cursor.enterObject("venue");
+            assertEquals("XYZ", cursor.getString("id").toString());
+            cursor.exitObject();
+            assertTrue(cursor.isNull("note"));
+            assertEquals(-7L, cursor.getLong("last"));
+        }
+    }
+
+    @Test
+    public void testSkippedFields() {
+        cursor.reset(bytes(MESSAGE));
+        assertEquals(1000000L, cursor.getLong("qty"));
+        cursor.enterObject("venue");
+        assertTrue(cursor.getBoolean("live"));
+        cursor.exitObject();
+        assertFalse(cursor.isNull("last"));
+    }
+
+    @Test
+    public void testOutOfOrderAccessIsRejected() {
+        cursor.reset(bytes(MESSAGE));
+        assertEquals("EUR/USD", cursor.getString("sym").toString());
+        try {
+            cursor.getLong("seq");
+            throw new AssertionError("out-of-order access is not rejected");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        try {
+            cursor.getDouble("px");
+            throw new AssertionError("the cursor went back");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTypeMismatch() {
+        cursor.reset(bytes(MESSAGE));
+        try {
+            cursor.getLong("skip");
+            throw new AssertionError("type mismatch is not detected");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        // the mismatched object is skipped
+        assertEquals("EUR/USD", cursor.getString("sym").toString());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testMalformedMessage() {
+        cursor.reset(bytes("{\"seq\" 42}")).getLong("seq");
+    }
+}
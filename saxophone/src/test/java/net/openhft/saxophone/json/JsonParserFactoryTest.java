@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.saxophone.json.handler.IntegerHandler;
+import net.openhft.saxophone.json.handler.JsonHandler;
+import net.openhft.saxophone.json.handler.ResetHook;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public final class JsonParserFactoryTest {
+
+    static final byte[] ORDER = "{\"id\": 7, \"note\": {\"price\": 1}, \"price\": 42}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    /** sums the integers of the known key "price" */
+    static final class PriceHandler implements JsonHandler {
+        static final int PRICE = 1;
+        int key = -1;
+        long sum;
+        int resets;
+
+        @Override
+        public boolean onKnownKey(int id) {
+            key = id;
+            return true;
+        }
+
+        @Override
+        public boolean onUnknownKey(CharSequence key) {
+            this.key = -1;
+            return true;
+        }
+
+        @Override
+        public boolean onInteger(long value) {
+            if (key == PRICE)
+                sum += value;
+            return true;
+        }
+
+        @Override
+        public void onReset() {
+            key = -1;
+            sum = 0;
+            resets++;
+        }
+    }
+
+    static void parse(JsonParser parser, byte[] json) {
+        assertTrue(parser.parse(json, 0, json.length));
+        assertTrue(parser.finish());
+    }
+
+    @Test
+    public void testParsersShareConfiguration() {
+        JsonParserFactory factory = JsonParser.builder()
+                .eachTokenMustBeHandled(false)
+                .options(JsonParserOption.ALLOW_COMMENTS)
+                .knownKeys("id", "price")
+                .buildFactory();
+        PriceHandler h1 = new PriceHandler();
+        PriceHandler h2 = new PriceHandler();
+        JsonParser p1 = factory.newParser(h1);
+        JsonParser p2 = factory.newParser(h2);
+        assertNotSame(p1, p2);
+        byte[] commented = "{\"price\": 3 /* each */}".getBytes(StandardCharsets.UTF_8);
+        parse(p1, ORDER);
+        parse(p2, commented);
+        assertEquals(43, h1.sum);
+        assertEquals(3, h2.sum);
+        p1.close();
+        p2.close();
+    }
+
+    @Test
+    public void testProjection() {
+        JsonParserFactory factory = JsonParser.builder()
+                .eachTokenMustBeHandled(false).projection("$.price").buildFactory();
+        long[] sum = {0};
+        JsonParser parser = factory.newParser((IntegerHandler) value -> {
+            sum[0] += value;
+            return true;
+        });
+        parse(parser, ORDER);
+        assertEquals(42, sum[0]);
+    }
+
+    @Test
+    public void testBuilderChangesDontAffectFactory() {
+        JsonParserBuilder builder = JsonParser.builder()
+                .eachTokenMustBeHandled(false).knownKeys("id", "price");
+        JsonParserFactory factory = builder.buildFactory();
+        builder.knownKeys("price").options(JsonParserOption.ALLOW_COMMENTS);
+        PriceHandler handler = new PriceHandler();
+        JsonParser parser = factory.newParser(handler);
+        parse(parser, ORDER);
+        assertEquals(43, handler.sum);
+        assertTrue(builder.options().contains(JsonParserOption.ALLOW_COMMENTS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIncompatibleOptions() {
+        JsonParser.builder().projection("$.price").options(JsonParserOption.ALLOW_COMMENTS)
+                .buildFactory();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testHandlerWithoutTokenCallbacks() {
+        JsonParser.builder().buildFactory().newParser((ResetHook) () -> {
+        });
+    }
+}
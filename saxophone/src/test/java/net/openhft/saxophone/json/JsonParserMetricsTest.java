@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.saxophone.json.handler.JsonHandler;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static net.openhft.saxophone.json.JsonToken.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class JsonParserMetricsTest {
+
+    private static final byte[] JSON = ("{\"a\": [1, 2.5, \"x\\n\", true, null], " +
+            "\"b\": {\"c\": {\"d\": \"long string value\"}}, \"e\\u00e9\": false}")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final int HANDLER_CALLS = 20;
+
+    private static final class CountingHandler implements JsonHandler {
+        int calls;
+
+        @Override
+        public boolean onObjectStart() {
+            calls++;
+            return true;
+        }
+
+        @Override
+        public boolean onObjectEnd() {
+            calls++;
+            return true;
+        }
+
+        @Override
+        public boolean onArrayStart() {
+            calls++;
+            return true;
+        }
+
+        @Override
+        public boolean onArrayEnd() {
+            calls++;
+            return true;
+        }
+
+        @Override
+        public boolean onBoolean(boolean value) {
+            calls++;
+            return true;
+        }
+
+        @Override
+        public boolean onNull() {
+            calls++;
+            return true;
+        }
+
+        @Override
+        public boolean onStringValue(CharSequence value) {
+            calls++;
+            return true;
+        }
+
+        @Override
+        public boolean onObjectKey(CharSequence key) {
+            calls++;
+            return true;
+        }
+
+        @Override
+        public boolean onNumber(CharSequence number) {
+            calls++;
+            return true;
+        }
+    }
+
+    @Test
+    public void testCounters() {
+        for (int chunk : new int[] {JSON.length, 4}) {
+            JsonParser parser = JsonParser.builder().handler(new CountingHandler())
+                    .collectMetrics(true).build();
+            for (int i = 0; i < 2; i++) {
+                for (int off = 0; off < JSON.length; off += chunk) {
+                    parser.parse(JSON, off, Math.min(chunk, JSON.length - off));
+                }
+                parser.finish();
+                parser.reset();
+            }
+            JsonParserMetrics m = parser.metrics();
+            assertEquals(2 * JSON.length, m.bytesConsumed());
+            assertEquals(6, m.tokens(START_OBJECT));
+            assertEquals(6, m.tokens(END_OBJECT));
+            assertEquals(2, m.tokens(START_ARRAY));
+            assertEquals(2, m.tokens(END_ARRAY));
+            assertEquals(10, m.tokens(KEY));
+            assertEquals(4, m.tokens(STRING));
+            assertEquals(2, m.tokens(INTEGER));
+            assertEquals(2, m.tokens(FLOATING));
+            assertEquals(4, m.tokens(BOOLEAN));
+            assertEquals(2, m.tokens(NULL));
+            assertEquals(4, m.escapedStrings());
+            assertEquals(3, m.maxDepth());
+            if (chunk == JSON.length) {
+                assertEquals(0, m.carryOverCopies());
+            } else {
+                assertTrue(m.carryOverCopies() > 0);
+                assertTrue(m.carryOverBytes() >= m.carryOverCopies());
+            }
+            assertEquals(0, m.sampledHandlerCalls());
+            try {
+                m.tokens(NEED_MORE_INPUT);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // not a token of JSON text
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() {
+        JsonParser parser = JsonParser.builder().handler(new CountingHandler())
+                .collectMetrics(true).build();
+        JsonParserMetrics before = parser.metrics();
+        parser.parse(JSON, 0, JSON.length);
+        parser.finish();
+        assertEquals(0, before.bytesConsumed());
+        assertEquals(0, before.tokens(KEY));
+        assertEquals(JSON.length, parser.metrics().bytesConsumed());
+    }
+
+    @Test
+    public void testHandlerTimeSampling() {
+        for (int sampling : new int[] {1, 3}) {
+            CountingHandler handler = new CountingHandler();
+            JsonParser parser = JsonParser.builder().handler(handler)
+                    .collectMetrics(true).handlerTimeSampling(sampling).build();
+            parser.parse(JSON, 0, JSON.length);
+            parser.finish();
+            assertEquals(HANDLER_CALLS, handler.calls);
+            JsonParserMetrics m = parser.metrics();
+            assertEquals((HANDLER_CALLS + sampling - 1) / sampling, m.sampledHandlerCalls());
+            assertTrue(m.sampledHandlerNanos() >= 0);
+            assertEquals(m.sampledHandlerNanos() * sampling, m.estimatedHandlerNanos());
+        }
+    }
+
+    @Test
+    public void testMisuse() {
+        JsonParser parser = JsonParser.builder().handler(new CountingHandler()).build();
+        try {
+            parser.metrics();
+            fail();
+        } catch (IllegalStateException expected) {
+            // built without metrics
+        }
+        try {
+            JsonParser.builder().handler(new CountingHandler()).handlerTimeSampling(8).build();
+            fail();
+        } catch (IllegalStateException expected) {
+            // sampling requires metrics
+        }
+        try {
+            JsonParser.builder().handlerTimeSampling(-1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // negative period
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.saxophone.json.JsonParserFactoryTest.PriceHandler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static net.openhft.saxophone.json.JsonParserFactoryTest.ORDER;
+import static net.openhft.saxophone.json.JsonParserFactoryTest.parse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class JsonParserPoolTest {
+
+    private static JsonParserPool<PriceHandler> newPool(int capacity, boolean threadAffinity) {
+        return JsonParser.builder()
+                .eachTokenMustBeHandled(false).knownKeys("id", "price").buildFactory()
+                .newPool(capacity, PriceHandler::new, threadAffinity);
+    }
+
+    @Test
+    public void testReuse() {
+        JsonParserPool<PriceHandler> pool = newPool(2, true);
+        JsonParser parser;
+        PriceHandler handler;
+        try (JsonParserPool.Lease<PriceHandler> lease = pool.acquire()) {
+            parser = lease.parser();
+            handler = lease.handler();
+            parse(parser, ORDER);
+            assertEquals(43, handler.sum);
+        }
+        assertEquals(0, handler.sum);
+        for (int i = 0; i < 10; i++) {
+            try (JsonParserPool.Lease<PriceHandler> lease = pool.acquire()) {
+                assertSame(parser, lease.parser());
+                assertSame(handler, lease.handler());
+                parse(lease.parser(), ORDER);
+                assertEquals(43, lease.handler().sum);
+            }
+        }
+        assertEquals(1, pool.created());
+        pool.close();
+    }
+
+    @Test
+    public void testConcurrentLeasesGetDistinctParsers() {
+        JsonParserPool<PriceHandler> pool = newPool(2, false);
+        JsonParserPool.Lease<PriceHandler> a = pool.acquire();
+        JsonParserPool.Lease<PriceHandler> b = pool.acquire();
+        JsonParserPool.Lease<PriceHandler> c = pool.acquire();
+        assertNotSame(a.parser(), b.parser());
+        assertNotSame(b.parser(), c.parser());
+        assertNotSame(a.handler(), c.handler());
+        assertEquals(3, pool.created());
+        a.close();
+        b.close();
+        // the pool is full, c is dropped
+        c.close();
+        JsonParserPool.Lease<PriceHandler> d = pool.acquire();
+        JsonParserPool.Lease<PriceHandler> e = pool.acquire();
+        assertTrue(d.parser() == a.parser() || d.parser() == b.parser());
+        assertTrue(e.parser() == a.parser() || e.parser() == b.parser());
+        assertEquals(3, pool.created());
+        d.close();
+        e.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDoubleClose() {
+        JsonParserPool.Lease<PriceHandler> lease = newPool(1, false).acquire();
+        lease.close();
+        lease.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveCapacity() {
+        newPool(0, false);
+    }
+
+    @Test
+    public void testMultiThreaded() throws Exception {
+        int threads = 4;
+        JsonParserPool<PriceHandler> pool = newPool(threads, true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    long sum = 0;
+                    for (int i = 0; i < 10_000; i++) {
+                        try (JsonParserPool.Lease<PriceHandler> lease = pool.acquire()) {
+                            parse(lease.parser(), ORDER);
+                            sum += lease.handler().sum;
+                        }
+                    }
+                    return sum;
+                }));
+            }
+            for (Future<Long> result : results) {
+                assertEquals(43L * 10_000, (long) result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.created() <= 2 * threads);
+        pool.close();
+    }
+
+    @Test
+    public void testCloseConcurrentWithRelease() throws Exception {
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 1000; round++) {
+                JsonParserPool<PriceHandler> pool = newPool(threads, round % 2 == 0);
+                CyclicBarrier start = new CyclicBarrier(threads + 1);
+                List<Future<?>> releases = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    JsonParserPool.Lease<PriceHandler> lease = pool.acquire();
+                    releases.add(executor.submit(() -> {
+                        start.await();
+                        lease.close();
+                        return null;
+                    }));
+                }
+                start.await();
+                pool.close();
+                for (Future<?> release : releases) {
+                    release.get();
+                }
+                assertEquals(0, pool.idle());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -20,13 +20,30 @@ package net.openhft.saxophone.json;
 
 import com.google.gson.JsonElement;
 import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.NativeBytesStore;
 import net.openhft.saxophone.ParseException;
-import org.junit.Ignore;
+import net.openhft.saxophone.json.handler.JsonHandler;
+import net.openhft.saxophone.json.handler.KnownKeyHandler;
+import net.openhft.saxophone.json.handler.ObjectKeyHandler;
+import net.openhft.saxophone.json.handler.RawObjectKeyHandler;
+import net.openhft.saxophone.json.handler.RawStringValueHandler;
+import net.openhft.saxophone.json.handler.StringValueHandler;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public final class JsonParserTest {
 
@@ -39,36 +56,30 @@ public final class JsonParserTest {
     }
 
     @Test
-    @Ignore
     public void testInts() {
         test("{\"k1\": 1, \"k2\": 2}");
         test("[-1, 1, 0, -0]");
         test("[9223372036854775807, -9223372036854775808]");
     }
 
-    @Ignore
     @Test(expected = ParseException.class)
     public void testMaxLongOverflowSimple() {
         testSimple(BEYOND_MAX_LONG);
     }
-    @Ignore
     @Test(expected = ParseException.class)
     public void testMaxLongOverflowPull() {
         testPull(BEYOND_MAX_LONG);
     }
 
-    @Ignore
     @Test(expected = ParseException.class)
     public void testMinLongOverflowSimple() {
         testSimple(BEYOND_MIN_LONG);
     }
-    @Ignore
     @Test(expected = ParseException.class)
     public void testMinLongOverflowPull() {
         testPull(BEYOND_MIN_LONG);
     }
 
-    @Ignore
     @Test
     public void testDoubles() {
         test("{\"k1\": -1.0, \"k2\": 1.0}");
@@ -99,14 +110,12 @@ public final class JsonParserTest {
         test("\"\""); // empty
     }
 
-    @Ignore
     @Test
     public void testEscape() {
         test("\" \\n \\t \\\" \\f \\r \\/ \\\\ \\b \"");
     }
 
     @Test
-    @Ignore("TODO fix")
     public void testSurrogates() {
         test("{\"k1\":\"\\uD83D\\uDE03\"}");
     }
@@ -160,6 +169,647 @@ public final class JsonParserTest {
         test("{\"" + key + "\": \"" + value + "\"}");
     }
 
+    /** To test the word-at-a-time string scan: the string end at any offset in the word */
+    @Test
+    public void testStringsOfEveryLength() {
+        String value = "";
+        for (int i = 0; i < 40; i++) {
+            test("[\"" + value + "\", \"" + value + "\"]");
+            value += (char) ('a' + i % 26);
+        }
+    }
+
+    @Test
+    public void testControlCharAtEveryOffset() {
+        for (int i = 0; i < 20; i++) {
+            char[] value = new char[20];
+            java.util.Arrays.fill(value, 'v');
+            value[i] = '\t';
+            try {
+                testSimple("\"" + new String(value) + "\"");
+                throw new AssertionError("control char at " + i + " is not detected");
+            } catch (ParseException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testByteArrayByteBufferAndAddressInputs() {
+        String json = "{\"k1\": [1, -2.5, \"v1\"], \"k2\": {\"k3\": null, \"k4\": true}}";
+        String expected = write(json, JsonParser.builder());
+        byte[] bytes = ("  " + json + "  ").getBytes(StandardCharsets.UTF_8);
+        JsonParserBuilder builder = JsonParser.builder();
+
+        StringWriter arrayWriter = new StringWriter();
+        JsonParser p = builder.applyAdapter(new WriterAdapter(arrayWriter)).build();
+        // the same parser sees different arrays, and the same array with a different range
+        p.parse(new byte[] {'[', ']'}, 0, 2);
+        p.finish();
+        p.reset();
+        arrayWriter.getBuffer().setLength(0);
+        for (int i = 0; i < bytes.length; i += 7) {
+            p.parse(bytes, i, Math.min(7, bytes.length - i));
+        }
+        p.finish();
+        assertEquals(expected, arrayWriter.toString());
+
+        for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.wrap(bytes),
+                ByteBuffer.allocateDirect(bytes.length).put(bytes),
+                ByteBuffer.wrap(bytes).asReadOnlyBuffer()}) {
+            buffer.position(0);
+            StringWriter bufferWriter = new StringWriter();
+            p = builder.applyAdapter(new WriterAdapter(bufferWriter)).build();
+            // portions from non-zero positions
+            for (int limit = 7; buffer.position() < bytes.length; limit += 7) {
+                buffer.limit(Math.min(limit, bytes.length));
+                p.parse(buffer);
+            }
+            p.finish();
+            assertEquals(0, buffer.remaining());
+            assertEquals(expected, bufferWriter.toString());
+        }
+
+        NativeBytesStore store = NativeBytesStore.nativeStoreWithFixedCapacity(bytes.length);
+        try {
+            store.write(0, bytes);
+            StringWriter addressWriter = new StringWriter();
+            p = builder.applyAdapter(new WriterAdapter(addressWriter)).build();
+            p.parse(store.address(0), 10);
+            p.parse(store.address(10), bytes.length - 10);
+            p.finish();
+            assertEquals(expected, addressWriter.toString());
+        } finally {
+            store.release();
+        }
+    }
+
+    /** To test tokens carried over several chunks, including utf8 chars split */
+    @Test
+    public void testTokensSplitAcrossChunks() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            value.append(i % 7 == 0 ? "\u00e9\u20ac" :
+                    i % 5 == 0 ? "\\\\ \\\" \\u00e9\\ud83d\\ude03" : "abc");
+        }
+        String json = "{\"k\\u00e9y\": \"" + value + "\", \"n\": [12345678901, -1.5e-3, true]}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        StringWriter expectedWriter = new StringWriter();
+        JsonParser whole = JsonParser.builder()
+                .applyAdapter(new WriterAdapter(expectedWriter)).build();
+        whole.parse(bytes, 0, bytes.length);
+        whole.finish();
+        String expected = expectedWriter.toString();
+        for (int chunk = 1; chunk <= 9; chunk += 4) {
+            for (long retained : new long[] {0, Long.MAX_VALUE}) {
+                StringWriter stringWriter = new StringWriter();
+                JsonParser p = JsonParser.builder().carryOverRetainedCapacity(retained)
+                        .applyAdapter(new WriterAdapter(stringWriter)).build();
+                for (int round = 0; round < 2; round++) {
+                    stringWriter.getBuffer().setLength(0);
+                    for (int i = 0; i < bytes.length; i += chunk) {
+                        p.parse(bytes, i, Math.min(chunk, bytes.length - i));
+                    }
+                    p.finish();
+                    assertEquals(expected, stringWriter.toString());
+                    p.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testKnownKeys() {
+        final List<String> keys = new ArrayList<String>();
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i <= 20; i++) {
+            keys.add(key.toString());
+            key.append((char) ('a' + i));
+        }
+        keys.add("k\u00e9y");
+        StringBuilder json = new StringBuilder("{");
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            json.append('"').append(keys.get(i)).append("\": {\"x").append(keys.get(i))
+                    .append("\": 1, \"a\\u0062\": 2}, ");
+            expected.append(i).append(" x").append(keys.get(i)).append(" 2 ");
+        }
+        json.append("\"\\u0075nknown\": null}");
+        expected.append("unknown ");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        for (int chunk : new int[] {1, 5, bytes.length}) {
+            final StringBuilder actual = new StringBuilder();
+            JsonParser p = JsonParser.builder().eachTokenMustBeHandled(false).knownKeys(keys)
+                    .knownKeyHandler(new KnownKeyHandler() {
+                        @Override
+                        public boolean onKnownKey(int id) {
+                            actual.append(id).append(' ');
+                            return true;
+                        }
+
+                        @Override
+                        public boolean onUnknownKey(CharSequence key) {
+                            actual.append(key).append(' ');
+                            return true;
+                        }
+                    }).build();
+            for (int i = 0; i < bytes.length; i += chunk) {
+                p.parse(bytes, i, Math.min(chunk, bytes.length - i));
+            }
+            p.finish();
+            assertEquals(expected.toString(), actual.toString());
+        }
+    }
+
+    @Test
+    public void testRawStrings() {
+        String json = "{\"k\u00e9y\": [\"v1\", \"\", \"a\\\"b\"], \"k\\n\": \"" +
+                "0123456789abcdef\u20ac\"}";
+        String expected = "k\u00e9y: v1, , a\\\"b !, k\\n !: 0123456789abcdef\u20ac, ";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        for (int chunk : new int[] {1, 3, bytes.length}) {
+            final StringBuilder actual = new StringBuilder();
+            class RawHandler implements RawObjectKeyHandler, RawStringValueHandler {
+                private void append(BytesStore store, long offset, long length,
+                                    boolean hasEscapes) {
+                    byte[] raw = new byte[(int) length];
+                    for (int i = 0; i < length; i++) {
+                        raw[i] = store.readByte(offset + i);
+                    }
+                    actual.append(new String(raw, StandardCharsets.UTF_8))
+                            .append(hasEscapes ? " !" : "");
+                }
+
+                @Override
+                public boolean onRawObjectKey(BytesStore store, long offset, long length,
+                                              boolean hasEscapes) {
+                    append(store, offset, length, hasEscapes);
+                    actual.append(": ");
+                    return true;
+                }
+
+                @Override
+                public boolean onRawStringValue(BytesStore store, long offset, long length,
+                                                boolean hasEscapes) {
+                    append(store, offset, length, hasEscapes);
+                    actual.append(", ");
+                    return true;
+                }
+            }
+            JsonParser p = JsonParser.builder()
+                    .eachTokenMustBeHandled(false).applyAdapter(new RawHandler()).build();
+            for (int i = 0; i < bytes.length; i += chunk) {
+                p.parse(bytes, i, Math.min(chunk, bytes.length - i));
+            }
+            p.finish();
+            assertEquals(expected, actual.toString());
+        }
+    }
+
+    @Test
+    public void testNonAsciiStrings() {
+        String[] strings = {"plain ascii string", "caf\u00e9", "\u20ac 100",
+                "\ud83d\ude03 smile", "0123456789\u00e9\u00e90123456789\u4e2d\u6587abcdefgh"};
+        StringBuilder json = new StringBuilder("{");
+        StringBuilder expected = new StringBuilder();
+        for (String s : strings) {
+            json.append('"').append(s).append("\": [\"").append(s).append("\"], ");
+            expected.append(s).append(": ").append(s).append(", ");
+        }
+        json.append("\"\": \"\"}");
+        expected.append(": , ");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        for (int chunk : new int[] {1, 3, bytes.length}) {
+            assertEquals(expected.toString(),
+                    collectStrings(bytes, chunk, JsonParser.builder()));
+        }
+    }
+
+    @Test
+    public void testMalformedUtf8NotValidated() {
+        byte[] bytes = {'[', '"', 'a', (byte) 0xFF, 'b', (byte) 0x80, (byte) 0xE2, (byte) 0x82,
+                '"', ']'};
+        assertEquals("a\ufffdb\ufffd\ufffd\ufffd, ", collectStrings(bytes, bytes.length,
+                JsonParser.builder().options(JsonParserOption.DONT_VALIDATE_STRINGS)));
+    }
+
+    @Test
+    public void testSurrogatesAndOverlongFormsRejected() {
+        int[][] invalid = {{0xED, 0xA0, 0x80}, {0xC0, 0xAF}, {0xE0, 0x80, 0xAF},
+                {0xF0, 0x80, 0x80, 0xAF}, {0xF4, 0x90, 0x80, 0x80}, {0xF5, 0x80, 0x80, 0x80}};
+        for (int[] sequence : invalid) {
+            byte[] bytes = new byte[sequence.length + 4];
+            bytes[0] = '[';
+            bytes[1] = '"';
+            for (int i = 0; i < sequence.length; i++) {
+                bytes[i + 2] = (byte) sequence[i];
+            }
+            bytes[bytes.length - 2] = '"';
+            bytes[bytes.length - 1] = ']';
+            for (int chunk : new int[] {1, bytes.length}) {
+                try {
+                    collectStrings(bytes, chunk, JsonParser.builder());
+                    throw new AssertionError(Arrays.toString(sequence) + " is not rejected");
+                } catch (ParseException expected) {
+                    // expected
+                }
+            }
+        }
+        // the boundaries of the accepted ranges
+        String valid = "\u0080\u07ff\u0800\ud7ff\ue000\uffff\ud800\udc00\udbff\udfff";
+        byte[] bytes = ("[\"" + valid + "\"]").getBytes(StandardCharsets.UTF_8);
+        for (int chunk : new int[] {1, bytes.length}) {
+            assertEquals(valid + ", ", collectStrings(bytes, chunk, JsonParser.builder()));
+        }
+    }
+
+    private static String collectStrings(byte[] bytes, int chunk, JsonParserBuilder builder) {
+        final StringBuilder sb = new StringBuilder();
+        class Collector implements ObjectKeyHandler, StringValueHandler {
+            @Override
+            public boolean onObjectKey(CharSequence key) {
+                sb.append(key.toString()).append(": ");
+                return true;
+            }
+
+            @Override
+            public boolean onStringValue(CharSequence value) {
+                // char by char, to check charAt() against toString()
+                for (int i = 0; i < value.length(); i++) {
+                    sb.append(value.charAt(i));
+                }
+                assertEquals(value.toString(), value.subSequence(0, value.length()).toString());
+                sb.append(", ");
+                return true;
+            }
+        }
+        JsonParser p = builder.eachTokenMustBeHandled(false).applyAdapter(new Collector())
+                .build();
+        for (int i = 0; i < bytes.length; i += chunk) {
+            p.parse(bytes, i, Math.min(chunk, bytes.length - i));
+        }
+        p.finish();
+        return sb.toString();
+    }
+
+    @Test
+    public void testUnescaper() {
+        String escaped = "0123456789 \\\\ \\\" \\/ \\b\\f\\n\\r\\t \u00e9 \\u00e9 \\u20AC " +
+                "\\ud83d\\ude03 \\ud83d \\ude03 0123456789";
+        String expected = "0123456789 \\ \" / \b\f\n\r\t \u00e9 \u00e9 \u20ac " +
+                "\ud83d\ude03 \ud83d \ude03 0123456789";
+        byte[] bytes = ("xx" + escaped).getBytes(StandardCharsets.UTF_8);
+        Bytes src = Bytes.wrapForRead(bytes);
+        char[] chars = new char[bytes.length + 1];
+        int n = Unescaper.unescape(src, 2, bytes.length - 2, chars, 1);
+        assertEquals(expected, new String(chars, 1, n));
+
+        Bytes utf8 = Bytes.elasticByteBuffer();
+        long written = Unescaper.unescapeToUtf8(src, 2, bytes.length - 2, utf8);
+        byte[] decoded = new byte[(int) written];
+        utf8.read(decoded);
+        // lone surrogates can't be encoded in UTF-8
+        assertEquals(expected.replace("\ud83d ", "\ufffd ").replace(" \ude03", " \ufffd"),
+                new String(decoded, StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnescaperInvalidEscape() {
+        byte[] bytes = "ab\\u12".getBytes(StandardCharsets.UTF_8);
+        Unescaper.unescape(Bytes.wrapForRead(bytes), 0, bytes.length, new char[10], 0);
+    }
+
+    @Test
+    public void testJsonHandler() {
+        final StringBuilder sb = new StringBuilder();
+        JsonHandler handler = new JsonHandler() {
+            @Override
+            public boolean onObjectKey(CharSequence key) {
+                sb.append(key).append('=');
+                return true;
+            }
+
+            @Override
+            public boolean onInteger(long value) {
+                sb.append(value).append(' ');
+                return true;
+            }
+        };
+        JsonParserBuilder builder = JsonParser.builder().applyAdapter(handler);
+        assertEquals(handler, builder.objectKeyHandler());
+        assertEquals(handler, builder.integerHandler());
+        assertEquals(null, builder.stringValueHandler());
+        assertEquals(null, builder.numberHandler());
+        assertEquals(null, builder.resetHook());
+
+        JsonParser p = builder.eachTokenMustBeHandled(false).build();
+        p.parse(Bytes.from("{\"a\": 1, \"b\": [\"x\", 2.5, {\"c\": -3}]}"));
+        p.finish();
+        assertEquals("a=1 b=c=-3 ", sb.toString());
+
+        try {
+            JsonParser.builder().handler(new JsonHandler() {
+                @Override
+                public boolean onNumber(CharSequence number) {
+                    return true;
+                }
+
+                @Override
+                public boolean onFloating(double value) {
+                    return true;
+                }
+            });
+            throw new AssertionError("conflicting callbacks are not detected");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStringValueAndRawStringValueHandlersConflict() {
+        JsonParser.builder().applyAdapter(new WriterAdapter(new StringWriter()))
+                .rawStringValueHandler(new RawStringValueHandler() {
+                    @Override
+                    public boolean onRawStringValue(BytesStore store, long offset, long length,
+                                                    boolean hasEscapes) {
+                        return true;
+                    }
+                });
+    }
+
+    @Test
+    public void testProjection() {
+        String json = "{\"ts\": 123, \"skip\": {\"a\": \"x]}\\\"{[\", \"b\": [1, [2, " +
+                "{\"c\": \"\\\\\"}]], \"d\": -1.5e3}, \"data\": {\"bids\": [[1.5, 2], " +
+                "[1.25, 3]], \"asks\": [[2, 1]], \"n\": null}, \"orders\": [{\"px\": 10, " +
+                "\"qty\": 1, \"tags\": [\"a}\"]}, {\"qty\": 2}, {\"p\\u0078\": 11.5}, 7], " +
+                "\"data2\": [], \"ts2\": true}";
+        testProjection(json, "{\"ts\": 123, \"data\": {\"bids\": [[1.5, 2], [1.25, 3]]}, " +
+                        "\"orders\": [{\"px\": 10}, {}, {\"px\": 11.5}]}",
+                "$.data.bids", "$.ts", "$.orders[*].px");
+        testProjection(json, "{\"data\": {\"bids\": [[1.5, 2], [1.25, 3]], \"asks\": " +
+                "[[2, 1]], \"n\": null}, \"orders\": []}", "$.data", "$.data.bids", "$.orders.px");
+        testProjection("[1, {\"a\": [\"b\"]}, [2]]", "[1, {\"a\": [\"b\"]}, [2]]", "$[*]");
+        testProjection("[1, {\"a\": [\"b\"]}, [2]]", "[{}, []]", "$[*].b");
+        testProjection("[ ]", "[]", "$.a");
+        testProjection("[1 , \"x\", {\"a\": 2}]", "[]", "$.a");
+        // missing values are malformed, even if skipped
+        String[][] malformed = {
+                {"{\"skip\":,\"b\":1}", "$.b"},
+                {"{\"skip\": }", "$.b"},
+                {"[,1]", "$.a"},
+                {"[1,]", "$.a"},
+                {"[1, ,2]", "$.a"},
+                {"[,1]", "$[*].b"},
+        };
+        for (String[] jsonAndPath : malformed) {
+            for (String[] paths : new String[][] {{}, {jsonAndPath[1]}}) {
+                JsonParser p = JsonParser.builder().projection(paths)
+                        .applyAdapter(new WriterAdapter(new StringWriter())).build();
+                try {
+                    p.parse(stringToBytes(jsonAndPath[0]));
+                    p.finish();
+                    throw new AssertionError(jsonAndPath[0] + " is not rejected");
+                } catch (ParseException expected) {
+                    // expected
+                }
+            }
+        }
+        try {
+            JsonParser.builder().projection("$.data", "data.bids");
+            throw new AssertionError("malformed path is not detected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    private static void testProjection(String json, String expected, String... paths) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        com.google.gson.JsonParser referenceParser = new com.google.gson.JsonParser();
+        for (int chunk : new int[] {1, 3, bytes.length}) {
+            StringWriter stringWriter = new StringWriter();
+            JsonParser p = JsonParser.builder()
+                    .projection(paths).applyAdapter(new WriterAdapter(stringWriter)).build();
+            for (int i = 0; i < bytes.length; i += chunk) {
+                p.parse(bytes, i, Math.min(chunk, bytes.length - i));
+            }
+            p.finish();
+            assertEquals(referenceParser.parse(expected),
+                    referenceParser.parse(stringWriter.toString()));
+        }
+    }
+
+    @Test
+    public void testParseFile() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            sb.append(i > 0 ? ", " : "").append("{\"id\": ").append(i)
+                    .append(", \"name\": \"n\\u00e9\\\"").append(i).append("\", \"px\": ")
+                    .append(i * 0.001).append(", \"ok\": ").append(i % 2 == 0).append('}');
+        }
+        String json = sb.append(']').toString();
+        Path file = Files.createTempFile("saxophone", ".json");
+        try {
+            Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+            StringWriter stringWriter = new StringWriter();
+            JsonParser p = JsonParser.builder()
+                    .applyAdapter(new WriterAdapter(stringWriter)).build();
+            // the smallest chunks, so that many tokens span chunk borders
+            assertTrue(p.parseFile(file, 1));
+            com.google.gson.JsonParser referenceParser = new com.google.gson.JsonParser();
+            assertEquals(referenceParser.parse(json),
+                    referenceParser.parse(stringWriter.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPauseResume() {
+        String json = "{\"a\": [1, 2, {\"b\": 3}], \"c\": \"x\", \"d\": [4, 5]}";
+        // two documents interleaved on one thread, each pauses after every integer
+        StringBuilder sb = new StringBuilder();
+        JsonParser p1 = pausingParser(sb, "1:");
+        JsonParser p2 = pausingParser(sb, "2:");
+        Bytes b1 = stringToBytes(json);
+        Bytes b2 = stringToBytes(json);
+        assertTrue(p1.parse(b1));
+        assertTrue(p2.parse(b2));
+        int pauses = 0;
+        while (p1.isPaused() || p2.isPaused()) {
+            if (p1.isPaused())
+                assertTrue(p1.resume(b1));
+            if (p2.isPaused())
+                assertTrue(p2.resume(b2));
+            pauses++;
+        }
+        assertTrue(p1.finish());
+        assertTrue(p2.finish());
+        assertEquals(5, pauses);
+        assertEquals("1:a=1 2:a=1 1:2 2:2 1:b=3 2:b=3 1:c=x 1:d=4 2:c=x 2:d=4 " +
+                "1:5 2:5 ", sb.toString());
+
+        JsonParser p = pausingParser(new StringBuilder(), "");
+        p.parse(stringToBytes("[1, 2]"));
+        try {
+            p.parse(stringToBytes("[1, 2]"));
+            throw new AssertionError("parse() of a paused parser is not detected");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        p.reset();
+        assertTrue(!p.isPaused());
+        try {
+            p.resume(stringToBytes("[1, 2]"));
+            throw new AssertionError("resume() of a not paused parser is not detected");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPauseRejectedByDrivers() throws IOException {
+        Path file = Files.createTempFile("saxophone", ".json");
+        try {
+            Files.write(file, "[1, 2]".getBytes(StandardCharsets.UTF_8));
+            JsonParser p = pausingParser(new StringBuilder(), "");
+            assertPauseRejected(p, () -> {
+                try {
+                    p.parseFile(file);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            });
+        } finally {
+            Files.delete(file);
+        }
+        JsonParser p = pausingParser(new StringBuilder(), "");
+        assertPauseRejected(p, () -> p.asBytesSaxParser().parse(stringToBytes("[1, 2]")));
+    }
+
+    private static void assertPauseRejected(JsonParser p, Runnable driver) {
+        try {
+            driver.run();
+            throw new AssertionError("pause() in a driver is not detected");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("not supported"));
+        }
+        assertTrue(!p.isPaused());
+        try {
+            p.parse(stringToBytes("[3]"));
+            throw new AssertionError("parse() after the rejected pause is not detected");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("not supported"));
+        }
+    }
+
+    private static JsonParser pausingParser(final StringBuilder sb, final String prefix) {
+        final JsonParser[] parser = new JsonParser[1];
+        parser[0] = JsonParser.builder().eachTokenMustBeHandled(false).handler(new JsonHandler() {
+                    @Override
+                    public boolean onObjectKey(CharSequence key) {
+                        sb.append(prefix).append(key).append('=');
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onStringValue(CharSequence value) {
+                        sb.append(value).append(' ');
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onInteger(long value) {
+                        if (sb.length() == 0 || sb.charAt(sb.length() - 1) == ' ')
+                            sb.append(prefix);
+                        sb.append(value).append(' ');
+                        parser[0].pause();
+                        return true;
+                    }
+                }).build();
+        return parser[0];
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateKnownKeys() {
+        JsonParser.builder().knownKeys("a", "b", "a");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testByteArrayOutOfBounds() {
+        JsonParser.builder().applyAdapter(new WriterAdapter(new StringWriter())).build()
+                .parse(new byte[10], 5, 6);
+    }
+
+    @Test
+    public void testLimits() {
+        String nested = "[[{\"a\": [1]}]]";
+        assertLimit(null, nested, JsonParser.builder().maxDepth(4));
+        assertLimit(DepthLimitExceededException.class, nested, JsonParser.builder().maxDepth(3));
+
+        String tokens = "{\"s\": \"01234\\n6789\", \"n\": -123456789}";
+        assertLimit(null, tokens, JsonParser.builder().maxTokenLength(11));
+        assertLimit(TokenTooLongException.class, tokens, JsonParser.builder().maxTokenLength(10));
+        assertLimit(null, "[\"0123456789\"]", JsonParser.builder().maxTokenLength(10));
+        assertLimit(TokenTooLongException.class, "[\"0123456789\"]",
+                JsonParser.builder().maxTokenLength(9));
+        assertLimit(null, "1234567890", JsonParser.builder().maxTokenLength(10));
+        assertLimit(TokenTooLongException.class, "1234567890",
+                JsonParser.builder().maxTokenLength(9));
+
+        String values = "{\"a\": 1} {\"b\": 22} ";
+        JsonParserBuilder multiple = JsonParser.builder()
+                .topLevelStrategy(JsonParserTopLevelStrategy.ALLOW_MULTIPLE_VALUES);
+        assertLimit(null, values, multiple.maxValueSize(10));
+        assertLimit(ValueTooLargeException.class, values, multiple.maxValueSize(9));
+        assertLimit(null, "{\"a\": 1}", JsonParser.builder().maxValueSize(8));
+        assertLimit(ValueTooLargeException.class, "{\"a\": 1}",
+                JsonParser.builder().maxValueSize(7));
+    }
+
+    /** parses the JSON in chunks of different sizes */
+    private static void assertLimit(Class<? extends ParseException> expected, String json,
+                                    JsonParserBuilder builder) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        JsonParser p = builder.eachTokenMustBeHandled(false)
+                .handler(new JsonHandler() {
+                    @Override
+                    public boolean onObjectStart() {
+                        return true;
+                    }
+                }).build();
+        for (int chunk : new int[] {1, 3, bytes.length}) {
+            p.reset();
+            Class<?> thrown = null;
+            try {
+                for (int i = 0; i < bytes.length; i += chunk) {
+                    p.parse(bytes, i, Math.min(chunk, bytes.length - i));
+                }
+                p.finish();
+            } catch (ParseException e) {
+                thrown = e.getClass();
+            }
+            assertEquals(json + ", chunk " + chunk, expected, thrown);
+        }
+    }
+
+    @Test
+    public void testTokenLengthLimitBoundsCarryOver() {
+        JsonParser p = JsonParser.builder().maxTokenLength(100)
+                .applyAdapter(new WriterAdapter(new StringWriter())).build();
+        byte[] chunk = new byte[1024];
+        java.util.Arrays.fill(chunk, (byte) 'x');
+        chunk[0] = '[';
+        chunk[1] = '"';
+        try {
+            // the head of the string is not copied into the carry-over buffer
+            p.parse(chunk, 0, chunk.length);
+            fail("the carried over string head should be limited");
+        } catch (TokenTooLongException e) {
+            assertEquals(100, e.limit());
+        }
+    }
+
     private void test(String json) {
         testSimple(json);
         testPull(json);
@@ -176,6 +826,14 @@ public final class JsonParserTest {
         assertEquals(o1, o2);
     }
 
+    private static String write(String json, JsonParserBuilder builder) {
+        StringWriter stringWriter = new StringWriter();
+        JsonParser p = builder.applyAdapter(new WriterAdapter(stringWriter)).build();
+        p.parse(stringToBytes(json));
+        p.finish();
+        return stringWriter.toString();
+    }
+
     private void testPull(String json) {
         StringWriter stringWriter = new StringWriter();
         JsonParser p = JsonParser.builder().applyAdapter(new WriterAdapter(stringWriter)).build();
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.ParseException;
+import net.openhft.saxophone.json.handler.JsonHandler;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class JsonReaderTest {
+
+    private static final String JSON = "{\"id\": 12345678901, \"name\": \"n\\u00e9\\\"x\", " +
+            "\"px\": -1.5e-3, \"ok\": true, \"none\": null, \"e\": {}, \"a\": [], " +
+            "\"skip\": {\"x\": [1, \"]}\", {\"y\": [[]]}]}, \"nested\": [[1, 2.5], " +
+            "{\"k\": \"v\"}, false], \"last\": 0}";
+
+    private static Bytes bytes(String json) {
+        return Bytes.wrapForRead(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSameTokensAsParser() {
+        String expected = parserTrace(JSON);
+        byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        JsonReader reader = JsonParser.builder().buildReader();
+        for (int chunk : new int[] {1, 3, 7, bytes.length}) {
+            reader.reset();
+            assertEquals(expected, readerTrace(reader, bytes, chunk, false));
+        }
+    }
+
+    @Test
+    public void testSkipChildren() {
+        String expected = "{ id=12345678901 name=n\u00e9\"x px=-0.0015 ok=true none=null " +
+                "e={ } a=[ ] skip={ } nested=[ ] last=0 } ";
+        byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        for (JsonParserBuilder builder : new JsonParserBuilder[] {JsonParser.builder(),
+                JsonParser.builder().options(JsonParserOption.ALLOW_COMMENTS)}) {
+            JsonReader reader = builder.buildReader();
+            for (int chunk : new int[] {1, 3, 7, bytes.length}) {
+                reader.reset();
+                assertEquals(expected, readerTrace(reader, bytes, chunk, true));
+            }
+        }
+    }
+
+    @Test
+    public void testBinder() {
+        JsonReader reader = JsonParser.builder()
+                .topLevelStrategy(JsonParserTopLevelStrategy.ALLOW_MULTIPLE_VALUES)
+                .buildReader();
+        reader.feed(bytes("{\"qty\": 5, \"px\": 1.25, \"tags\": [\"a\"]}\n" +
+                "{\"px\": 2, \"other\": {\"qty\": 7}, \"qty\": 3}\n")).endOfInput();
+        double total = 0;
+        while (reader.nextToken() == JsonToken.START_OBJECT) {
+            double px = 0;
+            long qty = 0;
+            while (reader.nextToken() == JsonToken.KEY) {
+                if (reader.keyEquals("px")) {
+                    reader.nextToken();
+                    px = reader.doubleValue();
+                } else if (reader.keyEquals("qty")) {
+                    reader.nextToken();
+                    assertEquals(1, reader.depth());
+                    assertEquals("qty", reader.currentKey().toString());
+                    qty = reader.longValue();
+                } else {
+                    reader.nextToken();
+                    reader.skipChildren();
+                }
+            }
+            assertEquals(JsonToken.END_OBJECT, reader.currentToken());
+            total += px * qty;
+        }
+        assertEquals(JsonToken.END_OF_INPUT, reader.currentToken());
+        assertEquals(5 * 1.25 + 2 * 3, total, 0.0);
+    }
+
+    @Test
+    public void testIncompleteInput() {
+        JsonReader reader = JsonParser.builder().buildReader();
+        assertEquals(JsonToken.NEED_MORE_INPUT, reader.nextToken());
+        reader.feed(bytes("[12"));
+        assertEquals(JsonToken.START_ARRAY, reader.nextToken());
+        // the number might continue
+        assertEquals(JsonToken.NEED_MORE_INPUT, reader.nextToken());
+        reader.feed(bytes("3"));
+        assertEquals(JsonToken.NEED_MORE_INPUT, reader.nextToken());
+        reader.endOfInput();
+        assertEquals(JsonToken.INTEGER, reader.nextToken());
+        assertEquals(123L, reader.longValue());
+        try {
+            reader.nextToken();
+            throw new AssertionError("premature EOF is not detected");
+        } catch (ParseException expected) {
+            // expected
+        }
+
+        reader = JsonParser.builder().options(JsonParserOption.ALLOW_PARTIAL_VALUES)
+                .buildReader();
+        reader.feed(bytes("[1, ")).endOfInput();
+        assertEquals(JsonToken.START_ARRAY, reader.nextToken());
+        assertEquals(JsonToken.INTEGER, reader.nextToken());
+        assertEquals(JsonToken.END_OF_INPUT, reader.nextToken());
+    }
+
+    @Test
+    public void testErrors() {
+        JsonReader reader = JsonParser.builder().buildReader();
+        for (String json : new String[] {"{\"a\" 1}", "[1 2]", "{1: 2}", "[1, ]", "[tru]",
+                "1 2", "{\"a\": 1]"}) {
+            reader.reset();
+            reader.feed(bytes(json)).endOfInput();
+            try {
+                while (reader.nextToken() != JsonToken.END_OF_INPUT) {
+                    // read all the tokens
+                }
+                throw new AssertionError(json + " is not rejected");
+            } catch (ParseException expected) {
+                // expected
+            }
+        }
+        // skipped children should be present too
+        for (String json : new String[] {"[1, , 2]", "[,1]", "[1,]", "{\"a\":}",
+                "{\"a\": , \"b\": 1}"}) {
+            reader.reset();
+            reader.feed(bytes(json)).endOfInput();
+            reader.nextToken();
+            try {
+                reader.skipChildren();
+                throw new AssertionError(json + " is not rejected");
+            } catch (ParseException expected) {
+                // expected
+            }
+        }
+        reader.reset();
+        reader.feed(bytes("[99999999999999999999, \"s\"]")).endOfInput();
+        reader.nextToken();
+        reader.nextToken();
+        assertEquals(1e20, reader.doubleValue(), 0.0);
+        try {
+            reader.longValue();
+            throw new AssertionError("integer overflow is not detected");
+        } catch (NumberFormatException expected) {
+            // expected
+        }
+        reader.nextToken();
+        try {
+            reader.longValue();
+            throw new AssertionError("type mismatch is not detected");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLimits() {
+        String nested = "[[{\"a\": [1]}]]";
+        assertLimit(null, nested, JsonParser.builder().maxDepth(4), false);
+        assertLimit(DepthLimitExceededException.class, nested,
+                JsonParser.builder().maxDepth(3), false);
+
+        String tokens = "{\"s\": \"01234\\n6789\", \"n\": -123456789}";
+        assertLimit(null, tokens, JsonParser.builder().maxTokenLength(11), false);
+        assertLimit(TokenTooLongException.class, tokens,
+                JsonParser.builder().maxTokenLength(10), false);
+        assertLimit(null, "1234567890", JsonParser.builder().maxTokenLength(10), false);
+        assertLimit(TokenTooLongException.class, "1234567890",
+                JsonParser.builder().maxTokenLength(9), false);
+
+        String values = "{\"a\": 1} {\"b\": 22} ";
+        JsonParserBuilder multiple = JsonParser.builder()
+                .topLevelStrategy(JsonParserTopLevelStrategy.ALLOW_MULTIPLE_VALUES);
+        for (boolean skipChildren : new boolean[] {false, true}) {
+            assertLimit(null, values, multiple.maxValueSize(10), skipChildren);
+            assertLimit(ValueTooLargeException.class, values, multiple.maxValueSize(9),
+                    skipChildren);
+            assertLimit(null, "{\"a\": 1}", JsonParser.builder().maxValueSize(8),
+                    skipChildren);
+            assertLimit(ValueTooLargeException.class, "{\"a\": 1}",
+                    JsonParser.builder().maxValueSize(7), skipChildren);
+        }
+    }
+
+    /** reads the JSON in chunks of different sizes */
+    private static void assertLimit(Class<? extends ParseException> expected, String json,
+                                    JsonParserBuilder builder, boolean skipChildren) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        JsonReader reader = builder.buildReader();
+        for (int chunk : new int[] {1, 3, bytes.length}) {
+            reader.reset();
+            Class<?> thrown = null;
+            try {
+                readerTrace(reader, bytes, chunk, skipChildren);
+            } catch (ParseException e) {
+                thrown = e.getClass();
+            }
+            assertEquals(json + ", chunk " + chunk, expected, thrown);
+        }
+    }
+
+    private static String readerTrace(JsonReader reader, byte[] bytes, int chunk,
+                                      boolean skipChildren) {
+        StringBuilder sb = new StringBuilder();
+        int offset = 0;
+        JsonToken token;
+        while ((token = reader.nextToken()) != JsonToken.END_OF_INPUT) {
+            switch (token) {
+                case NEED_MORE_INPUT:
+                    offset = feed(reader, bytes, offset, chunk);
+                    break;
+                case START_OBJECT:
+                case START_ARRAY:
+                    sb.append(token == JsonToken.START_OBJECT ? "{ " : "[ ");
+                    if (skipChildren && reader.depth() == 1) {
+                        JsonToken end = reader.skipChildren();
+                        while (end == JsonToken.NEED_MORE_INPUT) {
+                            offset = feed(reader, bytes, offset, chunk);
+                            end = reader.nextToken();
+                        }
+                        sb.append(end == JsonToken.END_OBJECT ? "} " : "] ");
+                    }
+                    break;
+                case END_OBJECT:
+                    sb.append("} ");
+                    break;
+                case END_ARRAY:
+                    sb.append("] ");
+                    break;
+                case KEY:
+                    sb.append(reader.currentKey()).append('=');
+                    break;
+                case STRING:
+                    sb.append(reader.stringValue()).append(' ');
+                    break;
+                case INTEGER:
+                    sb.append(reader.longValue()).append(' ');
+                    break;
+                case FLOATING:
+                    sb.append(reader.doubleValue()).append(' ');
+                    break;
+                case BOOLEAN:
+                    sb.append(reader.booleanValue()).append(' ');
+                    break;
+                case NULL:
+                    sb.append("null ");
+                    break;
+                default:
+                    throw new AssertionError(token);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** feeds the next portion of the given size, or signals the end of input */
+    private static int feed(JsonReader reader, byte[] bytes, int offset, int chunk) {
+        if (offset == bytes.length) {
+            reader.endOfInput();
+            return offset;
+        }
+        int length = Math.min(chunk, bytes.length - offset);
+        Bytes portion = Bytes.wrapForRead(bytes);
+        portion.readLimit(offset + length);
+        portion.readPosition(offset);
+        reader.feed(portion);
+        return offset + length;
+    }
+
+    private static String parserTrace(String json) {
+        final StringBuilder sb = new StringBuilder();
+        JsonParser p = JsonParser.builder().handler(new JsonHandler() {
+            @Override
+            public boolean onObjectStart() {
+                sb.append("{ ");
+                return true;
+            }
+
+            @Override
+            public boolean onObjectEnd() {
+                sb.append("} ");
+                return true;
+            }
+
+            @Override
+            public boolean onArrayStart() {
+                sb.append("[ ");
+                return true;
+            }
+
+            @Override
+            public boolean onArrayEnd() {
+                sb.append("] ");
+                return true;
+            }
+
+            @Override
+            public boolean onBoolean(boolean value) {
+                sb.append(value).append(' ');
+                return true;
+            }
+
+            @Override
+            public boolean onNull() {
+                sb.append("null ");
+                return true;
+            }
+
+            @Override
+            public boolean onStringValue(CharSequence value) {
+                sb.append(value).append(' ');
+                return true;
+            }
+
+            @Override
+            public boolean onObjectKey(CharSequence key) {
+                sb.append(key).append('=');
+                return true;
+            }
+
+            @Override
+            public boolean onInteger(long value) {
+                sb.append(value).append(' ');
+                return true;
+            }
+
+            @Override
+            public boolean onFloating(double value) {
+                sb.append(value).append(' ');
+                return true;
+            }
+        }).build();
+        p.parse(bytes(json));
+        p.finish();
+        return sb.toString();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.ParseException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class JsonTapeTest {
+
+    private static final String JSON = "{\"ts\": 1500000000123, \"data\": {\"bids\": " +
+            "[[1.5, 2], [1.25, 3e2]], \"asks\": []}, \"n\\u0061me\": \"caf\u00e9 \\\"x\\\"\", " +
+            "\"flags\": [true, false, null, {}], \"big\": 12345678901234567890}";
+
+    @Test
+    public void testNavigation() {
+        Bytes json = Bytes.wrapForRead(JSON.getBytes(StandardCharsets.UTF_8));
+        try (JsonTape tape = JsonTape.build(json)) {
+            checkNavigation(tape);
+        }
+        assertEquals(0, json.readPosition());
+    }
+
+    @Test
+    public void testPersistedTape() {
+        Bytes json = Bytes.wrapForRead(JSON.getBytes(StandardCharsets.UTF_8));
+        byte[] persisted;
+        try (JsonTape tape = JsonTape.build(json)) {
+            persisted = tape.tape().toByteArray();
+        }
+        try (JsonTape tape = JsonTape.load(json, Bytes.wrapForRead(persisted))) {
+            checkNavigation(tape);
+        }
+        try {
+            JsonTape.load(Bytes.wrapForRead("{}".getBytes(StandardCharsets.UTF_8)),
+                    Bytes.wrapForRead(persisted));
+            throw new AssertionError("the tape of another document is loaded");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    private static void checkNavigation(JsonTape tape) {
+        int root = tape.root();
+        assertEquals(JsonValueType.OBJECT, tape.type(root));
+        assertEquals(5, tape.size(root));
+        assertEquals(JSON.getBytes(StandardCharsets.UTF_8).length, tape.length(root));
+        assertEquals(1500000000123L, tape.longValue(tape.field(root, "ts")));
+
+        int bids = tape.field(tape.field(root, "data"), "bids");
+        assertEquals(JsonValueType.ARRAY, tape.type(bids));
+        assertEquals(2, tape.size(bids));
+        assertEquals(1.25, tape.doubleValue(tape.element(tape.element(bids, 1), 0)), 0.0);
+        assertEquals(300.0, tape.doubleValue(tape.element(tape.element(bids, 1), 1)), 0.0);
+        assertEquals(-1, tape.element(bids, 2));
+        assertEquals(-1, tape.firstElement(tape.field(tape.field(root, "data"), "asks")));
+
+        int name = tape.field(root, "name");
+        assertEquals(JsonValueType.STRING, tape.type(name));
+        assertEquals("caf\u00e9 \"x\"", tape.stringValue(name).toString());
+
+        StringBuilder flags = new StringBuilder();
+        int array = tape.field(root, "flags");
+        for (int e = tape.firstElement(array); e >= 0; e = tape.nextElement(e)) {
+            flags.append(tape.type(e)).append(' ');
+        }
+        assertEquals("BOOLEAN BOOLEAN NULL OBJECT ", flags.toString());
+        assertTrue(tape.booleanValue(tape.element(array, 0)));
+        assertFalse(tape.booleanValue(tape.element(array, 1)));
+        assertEquals(-1, tape.firstField(tape.element(array, 3)));
+
+        StringBuilder keys = new StringBuilder();
+        for (int key = tape.firstField(root); key >= 0; key = tape.nextField(key)) {
+            keys.append(tape.key(key)).append(' ');
+        }
+        assertEquals("ts data name flags big ", keys.toString());
+        assertEquals(-1, tape.field(root, "absent"));
+
+        int big = tape.field(root, "big");
+        assertEquals(1.2345678901234567e19, tape.doubleValue(big), 0.0);
+        try {
+            tape.longValue(big);
+            throw new AssertionError("integer overflow is not detected");
+        } catch (NumberFormatException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNumbers() {
+        String[] numbers = {"0", "-0.0", "0.1", "1e10", "1e400", "-2.5E-3",
+                "9223372036854775807", "-9223372036854775808", "12345678901234567890123",
+                "3.14159265358979323846264338327950288", "4.9e-324"};
+        Bytes json = Bytes.from("[" + String.join(", ", numbers) + "]");
+        try (JsonTape tape = JsonTape.build(json)) {
+            int array = tape.root();
+            assertEquals(numbers.length, tape.size(array));
+            int e = tape.firstElement(array);
+            for (String number : numbers) {
+                assertEquals(number, Double.parseDouble(number), tape.doubleValue(e), 0.0);
+                // repeated access
+                assertEquals(number, Double.parseDouble(number), tape.doubleValue(e), 0.0);
+                e = tape.nextElement(e);
+            }
+            assertEquals(-1, e);
+            assertEquals(Long.MIN_VALUE, tape.longValue(tape.element(array, 7)));
+        }
+    }
+
+    @Test
+    public void testTopLevelScalar() {
+        try (JsonTape tape = JsonTape.build(Bytes.from("-42"))) {
+            // the number and its mantissa and exponent
+            assertEquals(2, tape.entries());
+            assertEquals(-42L, tape.longValue(tape.root()));
+            assertEquals(3, tape.length(tape.root()));
+        }
+    }
+
+    @Test
+    public void testMalformedDocuments() {
+        String[] malformed = {"", "{\"a\" 1}", "{\"a\": 1,}", "[1 2]", "[1}", "{\"a\": [}", "[1] 2",
+                "{1: 2}", "[\"abc", "[tru]"};
+        for (String json : malformed) {
+            try {
+                JsonTape.build(Bytes.from(json)).close();
+                throw new AssertionError("malformed JSON is not detected: " + json);
+            } catch (ParseException expected) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class JsonWriterTest {
+
+    private static final com.google.gson.JsonParser REFERENCE_PARSER =
+            new com.google.gson.JsonParser();
+
+    private final Bytes out = Bytes.allocateElasticDirect(256);
+    private final JsonWriter writer = new JsonWriter(out);
+
+    private String written() {
+        byte[] bytes = new byte[(int) out.readRemaining()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = out.readByte(out.readPosition() + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testStructure() {
+        writer.startObject()
+                .key("sym").value("EUR/USD")
+                .key("px").value(1.0845)
+                .key("qty").value(1000000L)
+                .key("live").value(true)
+                .key("note").value((CharSequence) null)
+                .key("levels").startArray()
+                .startArray().value(1.5).value(2L).endArray()
+                .startObject().endObject()
+                .startArray().endArray()
+                .endArray()
+                .endObject();
+        assertTrue(writer.isComplete());
+        assertEquals("{\"sym\":\"EUR/USD\",\"px\":1.0845,\"qty\":1000000,\"live\":true," +
+                "\"note\":null,\"levels\":[[1.5,2],{},[]]}", written());
+
+        out.clear();
+        writer.reset(out).value(1L).value("a").startArray().endArray();
+        assertEquals("1\n\"a\"\n[]", written());
+    }
+
+    @Test
+    public void testMisplacedTokens() {
+        Runnable[] misuses = {
+                () -> writer.reset(out).key("a"),
+                () -> writer.reset(out).startObject().value(1L),
+                () -> writer.reset(out).startObject().key("a").key("b"),
+                () -> writer.reset(out).startObject().key("a").endObject(),
+                () -> writer.reset(out).startObject().endArray(),
+                () -> writer.reset(out).startArray().key("a"),
+                () -> writer.reset(out).startArray().endObject(),
+                () -> writer.reset(out).endArray(),
+                () -> new JsonWriter().startObject(),
+                () -> new JsonWriter().value("a"),
+                () -> new JsonWriter().writePosition(),
+        };
+        for (Runnable misuse : misuses) {
+            try {
+                misuse.run();
+                throw new AssertionError("misplaced token is not detected");
+            } catch (IllegalStateException expected) {
+                // expected
+            }
+        }
+        writer.reset(out).startObject();
+        assertFalse(writer.isComplete());
+        try {
+            writer.key("a").value(Double.NaN);
+            throw new AssertionError("NaN is not rejected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        // the key still expects a value
+        writer.value(1L).endObject();
+        assertTrue(writer.isComplete());
+    }
+
+    @Test
+    public void testMisplacedEndAtTopLevel() {
+        assertMisplaced("end of object is not allowed here, a value is expected",
+                () -> writer.reset(out).endObject());
+        assertMisplaced("end of array is not allowed here, a value is expected",
+                () -> writer.reset(out).value(1L).endArray());
+        assertMisplaced("end of array is not allowed here, a value is expected",
+                () -> writer.reset(out).startObject().key("a").endArray());
+        assertMisplaced("end of object is not allowed here, a value or the end of array is " +
+                "expected", () -> writer.reset(out).startArray().endObject());
+    }
+
+    private static void assertMisplaced(String message, Runnable misuse) {
+        try {
+            misuse.run();
+            throw new AssertionError("misplaced token is not detected");
+        } catch (IllegalStateException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testStrings() {
+        String[] strings = {"", "a", "quote\" backslash\\ slash/", "\u0000\u0001\b\f\n\r\t\u001f",
+                "0123456789abcdef0123456789\"abcdef", "caf\u00e9 \u20ac \ud83d\ude00",
+                "tab\tin the middle of a longer string", "\u007f\u0080"};
+        for (String s : strings) {
+            out.clear();
+            writer.reset(out).value(s);
+            String expected = s;
+            assertEquals(expected, REFERENCE_PARSER.parse(written()).getAsString());
+
+            out.clear();
+            Bytes utf8 = Bytes.wrapForRead(expected.getBytes(StandardCharsets.UTF_8));
+            writer.reset(out).startObject().key(utf8, 0, utf8.readRemaining())
+                    .value(utf8, 0, utf8.readRemaining()).endObject();
+            assertEquals(expected, REFERENCE_PARSER.parse(written()).getAsJsonObject()
+                    .get(expected).getAsString());
+        }
+        out.clear();
+        // a lone surrogate is replaced, like by String.getBytes()
+        writer.reset(out).value("lone \ud83d surrogate");
+        assertEquals("\"lone ? surrogate\"", written());
+
+        out.clear();
+        writer.reset(out).value("\u0001\"\\");
+        assertEquals("\"\\u0001\\\"\\\\\"", written());
+    }
+
+    @Test
+    public void testNumbers() {
+        long[] longs = {0, 1, -1, 9, 10, 99, 100, -100, 12345678901L, Long.MAX_VALUE,
+                Long.MIN_VALUE, Long.MIN_VALUE + 1};
+        for (long l : longs) {
+            out.clear();
+            writer.reset(out).value(l);
+            assertEquals(Long.toString(l), written());
+        }
+        String[][] doubles = {{"0.0", "0.0"}, {"-0.0", "-0.0"}, {"1", "1.0"}, {"100", "100.0"},
+                {"0.001", "0.001"}, {"1e-4", "1.0E-4"}, {"1e7", "1.0E7"}, {"9999999", "9999999.0"},
+                {"1e23", "1.0E23"}, {"2e-3", "0.002"}, {"5e-324", "4.9E-324"},
+                {"1.7976931348623157e308", "1.7976931348623157E308"}, {"-1.5e-3", "-0.0015"},
+                {"0.1", "0.1"}, {"123456.789", "123456.789"}};
+        for (String[] d : doubles) {
+            out.clear();
+            writer.reset(out).value(Double.parseDouble(d[0]));
+            assertEquals(d[1], written());
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            double d = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(d) || Double.isInfinite(d))
+                continue;
+            out.clear();
+            writer.reset(out).value(d);
+            String s = written();
+            assertEquals(d, Double.parseDouble(s), 0.0);
+            // never longer than Double.toString(), which might be not the shortest in Java 8
+            assertTrue(s.length() <= Double.toString(d).length());
+        }
+    }
+
+    @Test
+    public void testPipeFromParser() {
+        String json = "{\"id\":12345678901,\"name\":\"n\\u00e9\\\"x\",\"px\":-1.5e-3," +
+                "\"big\":123456789012345678901234567890,\"ok\":true,\"none\":null,\"e\":{}," +
+                "\"a\":[],\"nested\":[[1,2.50],{\"k\\\\\":\"v\"},false],\"last\":0}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        for (int chunk : new int[] {1, 7, bytes.length}) {
+            out.clear();
+            writer.reset(out);
+            JsonParser parser = JsonParser.builder().handler(writer).build();
+            for (int i = 0; i < bytes.length; i += chunk) {
+                parser.parse(bytes, i, Math.min(chunk, bytes.length - i));
+            }
+            parser.finish();
+            // strings and numbers are copied as is
+            assertEquals(json, written());
+        }
+    }
+
+    @Test
+    public void testByteArrayOutput() {
+        byte[] array = new byte[32];
+        writer.reset(array, 4).startArray().value(-7L).value("x").endArray();
+        assertEquals(4 + 8, writer.writePosition());
+        assertEquals("[-7,\"x\"]", new String(array, 4, 8, StandardCharsets.UTF_8));
+        boolean overflow = false;
+        try {
+            writer.reset(new byte[4], 0).value("too long");
+        } catch (BufferOverflowException | AssertionError expected) {
+            // AssertionError if assertions are enabled
+            overflow = true;
+        }
+        assertTrue("array overflow is not detected", overflow);
+    }
+}
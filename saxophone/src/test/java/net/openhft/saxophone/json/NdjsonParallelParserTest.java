@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.ParseException;
+import net.openhft.saxophone.json.handler.JsonHandler;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class NdjsonParallelParserTest {
+
+    private static final int RECORDS = 50000;
+
+    static final class Counter implements JsonHandler {
+        long first = -1;
+        long last = -1;
+        long sum;
+        int count;
+
+        @Override
+        public boolean onInteger(long value) {
+            if (first < 0)
+                first = value;
+            last = value;
+            sum += value;
+            count++;
+            return true;
+        }
+
+        Counter merge(Counter next) {
+            // slices of parseFile() within a long record are empty
+            if (next.count == 0)
+                return this;
+            // slices are merged in the input order
+            assertEquals(last + 1, next.first);
+            last = next.last;
+            sum += next.sum;
+            count += next.count;
+            return this;
+        }
+    }
+
+    private static Bytes ndjson(int records, String malformed) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < records; i++) {
+            sb.append("{\"id\": ").append(i).append(", \"s\": \"x\\n}\"}\n");
+            if (i == records / 2)
+                sb.append(malformed);
+        }
+        return Bytes.wrapForRead(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSlicesInInputOrder() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            NdjsonParallelParser parser = new NdjsonParallelParser(pool,
+                    () -> JsonParser.builder().eachTokenMustBeHandled(false));
+            Bytes input = ndjson(RECORDS, "");
+            List<Counter> slices = parser.parse(input, Counter::new);
+            assertEquals(4, slices.size());
+            assertEquals(input.readLimit(), input.readPosition());
+
+            Counter total = parser.parse(ndjson(RECORDS, ""), Counter::new, Counter::merge);
+            assertEquals(0, total.first);
+            assertEquals(RECORDS - 1, total.last);
+            assertEquals(RECORDS, total.count);
+            assertEquals((long) RECORDS * (RECORDS - 1) / 2, total.sum);
+
+            assertEquals(3, parser.parse(ndjson(3, ""), Counter::new, Counter::merge).count);
+            assertTrue(parser.parse(ndjson(0, ""), Counter::new).isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = ParseException.class)
+    public void testMalformedRecord() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new NdjsonParallelParser(pool,
+                    () -> JsonParser.builder().eachTokenMustBeHandled(false))
+                    .parse(ndjson(RECORDS, "{\"id\": ]\n"), Counter::new);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseFile() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Path file = Files.createTempFile("saxophone", ".ndjson");
+        try {
+            NdjsonParallelParser parser = new NdjsonParallelParser(pool,
+                    () -> JsonParser.builder().eachTokenMustBeHandled(false));
+            Bytes input = ndjson(RECORDS, "");
+            byte[] bytes = new byte[(int) input.readRemaining()];
+            input.read(bytes);
+            // with and without the last newline, mapped by the smallest and the default chunks
+            for (int length : new int[] {bytes.length, bytes.length - 1}) {
+                Files.write(file, java.util.Arrays.copyOf(bytes, length));
+                for (long chunkSize : new long[] {1, 1 << 20}) {
+                    List<Counter> slices = parser.parseFile(file, chunkSize, Counter::new);
+                    assertEquals(4, slices.size());
+                    Counter total = slices.get(0);
+                    for (int i = 1; i < slices.size(); i++) {
+                        total = total.merge(slices.get(i));
+                    }
+                    assertEquals(RECORDS, total.count);
+                    assertEquals((long) RECORDS * (RECORDS - 1) / 2, total.sum);
+                }
+            }
+
+            // a record spanning whole slices
+            StringBuilder sb = new StringBuilder("{\"id\": 0}\n{\"id\": 1, \"s\": \"");
+            for (int i = 0; i < 300000; i++) {
+                sb.append('x');
+            }
+            sb.append("\"}\n{\"id\": 2}\n");
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            List<Counter> slices = parser.parseFile(file, 1, Counter::new);
+            assertEquals(4, slices.size());
+            assertEquals(0, slices.get(1).count);
+            assertEquals(3, parser.parseFile(file, Counter::new, Counter::merge).count);
+
+            Files.write(file, new byte[0]);
+            assertEquals(0, parser.parseFile(file, Counter::new, Counter::merge).count);
+
+            Files.write(file, "{\"id\": 0}\n{\"id\": ]\n".getBytes(StandardCharsets.UTF_8));
+            try {
+                parser.parseFile(file, Counter::new);
+                throw new AssertionError("malformed record is not detected");
+            } catch (ParseException expected) {
+                // expected
+            }
+        } finally {
+            Files.delete(file);
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2014 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.saxophone.json;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.saxophone.ParseException;
+import net.openhft.saxophone.json.handler.JsonHandler;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class TokenRecorderTest {
+
+    private static final String JSON = "{\"id\": 12345678901, \"name\": \"n\u00e9\\\"x\", " +
+            "\"px\": -1.5e-3, \"ok\": true, \"none\": null, \"e\": {}, \"a\": [], " +
+            "\"nested\": [[1, 2.5], {\"k\\u0065y\": \"v\"}, false], \"last\": -7}";
+
+    private static final com.google.gson.JsonParser REFERENCE_PARSER =
+            new com.google.gson.JsonParser();
+
+    @Test
+    public void testReplay() {
+        byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        // -1 stands for the source parsed as a whole, so that strings are referred to
+        for (int chunk : new int[] {1, 5, bytes.length, -1}) {
+            Bytes json = null;
+            Bytes recording = Bytes.allocateElasticDirect(64);
+            TokenRecorder recorder;
+            if (chunk < 0) {
+                json = Bytes.wrapForRead(bytes);
+                recorder = new TokenRecorder(recording, json);
+                JsonParser parser = JsonParser.builder().handler(recorder).build();
+                parser.parse(json);
+                parser.finish();
+            } else {
+                // without the source all the strings are copied into the recording
+                recorder = new TokenRecorder(recording);
+                JsonParser parser = JsonParser.builder().handler(recorder).build();
+                for (int i = 0; i < bytes.length; i += chunk) {
+                    parser.parse(bytes, i, Math.min(chunk, bytes.length - i));
+                }
+                parser.finish();
+            }
+            assertEquals(32, recorder.tokens());
+
+            // the same recording replayed twice
+            for (int i = 0; i < 2; i++) {
+                StringWriter stringWriter = new StringWriter();
+                TokenReplayer replayer = JsonParser.builder()
+                        .applyAdapter(new WriterAdapter(stringWriter)).buildReplayer();
+                assertTrue(replayer.replay(recording, json));
+                assertEquals(REFERENCE_PARSER.parse(JSON),
+                        REFERENCE_PARSER.parse(stringWriter.toString()));
+            }
+            recording.release();
+        }
+    }
+
+    @Test
+    public void testReplayToDifferentHandlers() {
+        Bytes json = Bytes.wrapForRead(JSON.getBytes(StandardCharsets.UTF_8));
+        Bytes recording = Bytes.allocateElasticDirect(64);
+        JsonParser parser = JsonParser.builder().handler(new TokenRecorder(recording, json))
+                .build();
+        parser.parse(json);
+        parser.finish();
+
+        final StringBuilder keys = new StringBuilder();
+        TokenReplayer replayer = JsonParser.builder().knownKeys("id", "key", "last")
+                .handler(new JsonHandler() {
+                    @Override
+                    public boolean onKnownKey(int id) {
+                        keys.append(id).append(' ');
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onUnknownKey(CharSequence key) {
+                        keys.append(key).append(' ');
+                        return true;
+                    }
+                }).buildReplayer();
+        assertTrue(replayer.replay(recording, json));
+        assertEquals("0 name px ok none e a nested 1 2 ", keys.toString());
+
+        final StringBuilder numbers = new StringBuilder();
+        replayer = JsonParser.builder().handler(new JsonHandler() {
+            @Override
+            public boolean onNumber(CharSequence number) {
+                numbers.append(number).append(' ');
+                // cancels the replay
+                return number.charAt(0) != '2';
+            }
+        }).buildReplayer();
+        assertFalse(replayer.replay(recording, json));
+        assertEquals("12345678901 -1.5e-3 1 2.5 ", numbers.toString());
+
+        try {
+            replayer.replay(recording);
+            throw new AssertionError("missing source is not detected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        recording.release();
+    }
+
+    @Test
+    public void testNumbersAreRecordedExactly() {
+        String numbers = "[1e10, 1e400, 123456789012345678901234567890, -0.10, 7]";
+        byte[] bytes = numbers.getBytes(StandardCharsets.UTF_8);
+        for (int chunk : new int[] {1, 4, -1}) {
+            Bytes json = null;
+            Bytes recording = Bytes.allocateElasticDirect(64);
+            JsonParser parser;
+            if (chunk < 0) {
+                json = Bytes.wrapForRead(bytes);
+                parser = JsonParser.builder().handler(new TokenRecorder(recording, json)).build();
+                parser.parse(json);
+            } else {
+                parser = JsonParser.builder().handler(new TokenRecorder(recording)).build();
+                for (int i = 0; i < bytes.length; i += chunk) {
+                    parser.parse(bytes, i, Math.min(chunk, bytes.length - i));
+                }
+            }
+            parser.finish();
+
+            final StringBuilder text = new StringBuilder();
+            assertTrue(JsonParser.builder().handler(new JsonHandler() {
+                @Override
+                public boolean onNumber(CharSequence number) {
+                    text.append(number).append(' ');
+                    return true;
+                }
+            }).buildReplayer().replay(recording, json));
+            assertEquals("1e10 1e400 123456789012345678901234567890 -0.10 7 ", text.toString());
+
+            final StringBuilder values = new StringBuilder();
+            TokenReplayer replayer = JsonParser.builder().handler(new JsonHandler() {
+                @Override
+                public boolean onInteger(long value) {
+                    values.append(value).append(' ');
+                    return true;
+                }
+
+                @Override
+                public boolean onFloating(double value) {
+                    values.append(value).append(' ');
+                    return true;
+                }
+            }).buildReplayer();
+            try {
+                replayer.replay(recording, json);
+                fail("integer overflow is not detected");
+            } catch (ParseException expected) {
+                // expected
+            }
+            assertEquals("1.0E10 Infinity ", values.toString());
+
+            values.setLength(0);
+            assertTrue(JsonParser.builder().floatingHandler(new JsonHandler() {
+                @Override
+                public boolean onFloating(double value) {
+                    values.append(value).append(' ');
+                    return true;
+                }
+            }).eachTokenMustBeHandled(false).buildReplayer().replay(recording, json));
+            assertEquals("1.0E10 Infinity -0.1 ", values.toString());
+            recording.release();
+        }
+    }
+
+    @Test
+    public void testNumbersGivenAsText() {
+        Bytes recording = Bytes.allocateElasticDirect(64);
+        TokenRecorder recorder = new TokenRecorder(recording);
+        recorder.onArrayStart();
+        recorder.onNumber("-2.5e3");
+        recorder.onNumber(new StringBuilder("42"));
+        recorder.onNumber("-0.1000000000000000000001");
+        recorder.onArrayEnd();
+        for (String notNumber : new String[] {"", "1.5x", "1 ", "--1", "\"1\""}) {
+            try {
+                recorder.onNumber(notNumber);
+                fail(notNumber + " is recorded as a number");
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+        assertEquals(5, recorder.tokens());
+
+        final StringBuilder text = new StringBuilder();
+        assertTrue(JsonParser.builder().handler(new JsonHandler() {
+            @Override
+            public boolean onNumber(CharSequence number) {
+                text.append(number).append(' ');
+                return true;
+            }
+        }).buildReplayer().replay(recording));
+        assertEquals("-2.5e3 42 -0.1000000000000000000001 ", text.toString());
+
+        final StringBuilder values = new StringBuilder();
+        assertTrue(JsonParser.builder().handler(new JsonHandler() {
+            @Override
+            public boolean onInteger(long value) {
+                values.append(value).append(' ');
+                return true;
+            }
+
+            @Override
+            public boolean onFloating(double value) {
+                values.append(value).append(' ');
+                return true;
+            }
+        }).eachTokenMustBeHandled(false).buildReplayer().replay(recording));
+        assertEquals("-2500.0 42 -0.1 ", values.toString());
+        recording.release();
+    }
+}